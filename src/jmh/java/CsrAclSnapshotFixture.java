@@ -0,0 +1,35 @@
+import benchmark.AccessCheckFixture;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+
+/**
+ * The load scenario exported to a CSR snapshot and checked without Gremlin.
+ */
+public class CsrAclSnapshotFixture implements AccessCheckFixture {
+
+    private CsrAclSnapshot.Evaluator evaluator;
+    private int resource;
+    private int user;
+    private String permission;
+
+    @Override
+    public void setup(String user, String hierarchy, String permission, String strategy) {
+        Graph graph = TinkerGraph.open();
+        PermissionTraverser.createIndexes(graph);
+        PermissionTraverserFixture.buildLoadScenario(new GraphBulkLoader(graph).withDeferredIndexes());
+        CsrAclSnapshot snapshot = CsrAclSnapshot.export(graph);
+        evaluator = snapshot.newEvaluator();
+        resource = snapshot.named(hierarchy.equals("deep") ? PermissionTraverserFixture.DEEP_LEAF : PermissionTraverserFixture.WIDE_LEAF)[0];
+        this.user = snapshot.user(PermissionTraverserFixture.UserScenario.valueOf(user).userId);
+        this.permission = permission;
+    }
+
+    @Override
+    public boolean hasAccess() {
+        return evaluator.hasAccess(resource, user, permission);
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,51 @@
+import benchmark.AccessCheckFixture;
+import com.orientechnologies.orient.core.db.ODatabaseSession;
+import com.orientechnologies.orient.core.db.ODatabaseType;
+import com.orientechnologies.orient.core.db.OrientDB;
+import com.orientechnologies.orient.core.db.OrientDBConfig;
+
+/**
+ * The load scenario in an embedded OrientDB, checked with the pushed-down query.
+ *
+ * Loading the scenario takes minutes and every trial runs in its own fork, so the database is kept as a plocal
+ * database under build/orientdb and only loaded by the first trial. Delete the directory to rebuild it.
+ */
+public class OrientAclStoreFixture implements AccessCheckFixture {
+
+    private static final String DATABASE = "load-scenario";
+
+    private OrientDB orient;
+    private ODatabaseSession db;
+    private OrientAclStore store;
+    private String resourceId;
+    private String userId;
+    private String permission;
+
+    @Override
+    public void setup(String user, String hierarchy, String permission, String strategy) {
+        orient = new OrientDB("plocal:build/orientdb", OrientDBConfig.defaultConfig());
+        if (!orient.exists(DATABASE)) {
+            orient.create(DATABASE, ODatabaseType.PLOCAL);
+            try (ODatabaseSession session = orient.open(DATABASE, "admin", "admin")) {
+                new OrientAclStore(session).createSchema();
+                PermissionTraverserFixture.buildLoadScenario(new OrientBulkLoader(session));
+            }
+        }
+        db = orient.open(DATABASE, "admin", "admin");
+        store = new OrientAclStore(db);
+        resourceId = hierarchy.equals("deep") ? PermissionTraverserFixture.DEEP_LEAF : PermissionTraverserFixture.WIDE_LEAF;
+        userId = PermissionTraverserFixture.UserScenario.valueOf(user).userId;
+        this.permission = permission;
+    }
+
+    @Override
+    public boolean hasAccess() {
+        return store.hasAccess(resourceId, userId, permission);
+    }
+
+    @Override
+    public void close() {
+        db.close();
+        orient.close();
+    }
+}
@@ -0,0 +1,68 @@
+import benchmark.AccessCheckFixture;
+import java.util.stream.IntStream;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+
+public class PermissionTraverserFixture implements AccessCheckFixture {
+
+    static final String DEEP_LEAF = "deep_0_0_0_0_1_0_0_2_1_1_3";
+    static final String WIDE_LEAF = "wide_5_9_5_6_1_9";
+
+    enum UserScenario {
+        DIRECT_USER("user 0"),
+        DEEP_NESTED_GROUP("user 200000"),
+        SHALLOW_BIG_GROUP("user 5000");
+
+        final String userId;
+
+        UserScenario(String userId) {
+            this.userId = userId;
+        }
+    }
+
+    private Graph graph;
+    private PermissionTraverser traverser;
+    private String resourceId;
+    private String userId;
+    private String permission;
+
+    static ACLLoadTest.LoadScenario buildLoadScenario(BulkLoader loader) {
+        ACLLoadTest.LoadScenario scenario = new ACLLoadTest.LoadScenario(loader);
+        scenario.buildGraph();
+        // the wide hierarchy gets the same ACL as the deep one so that only the shape differs
+        IntStream.range(0, scenario.config.aclsPerLevel).forEach(i -> scenario.addHasPermission(scenario.allUsers.get(i), scenario.wideRoot, "R"));
+        scenario.addHasPermission(scenario.allGroup, scenario.wideRoot, "R");
+        loader.close();
+        return scenario;
+    }
+
+    @Override
+    public void setup(String user, String hierarchy, String permission, String strategy) {
+        graph = TinkerGraph.open();
+        PermissionTraverser.createIndexes(graph);
+        buildLoadScenario(new GraphBulkLoader(graph).withDeferredIndexes());
+        traverser = new PermissionTraverser(PermissionTraverser.EvaluationStrategy.valueOf(strategy));
+        resourceId = hierarchy.equals("deep") ? DEEP_LEAF : WIDE_LEAF;
+        userId = UserScenario.valueOf(user).userId;
+        this.permission = permission;
+    }
+
+    @Override
+    public boolean hasAccess() throws Exception {
+        try (GraphTraversal<Vertex, Vertex> t = traverser.hasAccess(graph, resourceId, userId, permission)) {
+            return t.hasNext();
+        }
+    }
+
+    @Override
+    public boolean canAccess() {
+        return traverser.canAccess(graph, resourceId, userId, permission);
+    }
+
+    @Override
+    public void close() throws Exception {
+        graph.close();
+    }
+}
@@ -0,0 +1,22 @@
+package benchmark;
+
+/**
+ * JMH only accepts benchmarks in a named package, while PermissionTraverser and the GraphScenario generators live in
+ * the default package, which a named package cannot import. Fixtures are therefore written in the default package
+ * against this interface and loaded by name once per trial, outside the measured code.
+ */
+public interface AccessCheckFixture extends AutoCloseable {
+
+    static AccessCheckFixture load(String className) throws ReflectiveOperationException {
+        return (AccessCheckFixture) Class.forName(className).getDeclaredConstructor().newInstance();
+    }
+
+    void setup(String user, String hierarchy, String permission, String strategy);
+
+    boolean hasAccess() throws Exception;
+
+    // the same check without building a traversal per call, where the backend has such a path
+    default boolean canAccess() throws Exception {
+        return hasAccess();
+    }
+}
@@ -0,0 +1,59 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The same single access checks as PermissionTraverserBenchmark, on TinkerGraph with PermissionTraverser, on an
+ * embedded OrientDB with the pushed-down OrientAclStore query, and on a CSR snapshot of the same graph.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BackendBenchmark {
+
+    @Param({"PermissionTraverserFixture", "OrientAclStoreFixture", "CsrAclSnapshotFixture"})
+    public String backend;
+
+    @Param({"DIRECT_USER", "DEEP_NESTED_GROUP", "SHALLOW_BIG_GROUP"})
+    public String user;
+
+    @Param({"deep", "wide"})
+    public String hierarchy;
+
+    @Param({"R", "W"})
+    public String permission;
+
+    private AccessCheckFixture fixture;
+
+    @Setup(Level.Trial)
+    public void buildGraph() throws Exception {
+        fixture = AccessCheckFixture.load(backend);
+        fixture.setup(user, hierarchy, permission, "AUTO");
+    }
+
+    @TearDown(Level.Trial)
+    public void closeGraph() throws Exception {
+        fixture.close();
+    }
+
+    @Benchmark
+    public boolean hasAccess() throws Exception {
+        return fixture.hasAccess();
+    }
+}
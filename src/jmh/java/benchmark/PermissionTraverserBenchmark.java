@@ -0,0 +1,67 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single access checks against the ACLLoadTest graph, built once per trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PermissionTraverserBenchmark {
+
+    // DIRECT_USER holds a grant on the root, DEEP_NESTED_GROUP reaches all-0 through team -> director -> vp -> division,
+    // SHALLOW_BIG_GROUP is a direct member of the 200k member all-0 group
+    @Param({"DIRECT_USER", "DEEP_NESTED_GROUP", "SHALLOW_BIG_GROUP"})
+    public String user;
+
+    @Param({"deep", "wide"})
+    public String hierarchy;
+
+    // W has no grants anywhere, so it exercises the full deny path
+    @Param({"R", "W"})
+    public String permission;
+
+    @Param({"AUTO", "GROUPS_DOWNWARD"})
+    public String strategy;
+
+    private AccessCheckFixture fixture;
+
+    @Setup(Level.Trial)
+    public void buildGraph() throws Exception {
+        fixture = AccessCheckFixture.load("PermissionTraverserFixture");
+        fixture.setup(user, hierarchy, permission, strategy);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeGraph() throws Exception {
+        fixture.close();
+    }
+
+    @Benchmark
+    public boolean hasAccess() throws Exception {
+        return fixture.hasAccess();
+    }
+
+    // pooled precompiled traversals; compare allocations with -PjmhProfiler=gc
+    @Benchmark
+    public boolean canAccess() throws Exception {
+        return fixture.canAccess();
+    }
+}
@@ -0,0 +1,346 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+
+/**
+ * Exports which resources every user can access, for compliance audits over the whole graph.
+ *
+ * Everything that does not depend on the user is computed once: the compiled snapshot resolves container
+ * inheritance, the grants of every principal become ranges of resource positions (resources are numbered depth-first,
+ * so an inherited grant covers a subtree in one range), and every group gets the ranges of all its supergroups. A user
+ * is then a merge of a few range lists, which runs in chunks on a ForkJoinPool while finished chunks are streamed out
+ * in order.
+ *
+ * The export is tab-separated, one record per line:
+ * <pre>
+ * resource &lt;position&gt; &lt;name&gt;
+ * access &lt;user name&gt; &lt;permission&gt; &lt;from&gt;-&lt;to&gt;,&lt;position&gt;,...
+ * </pre>
+ * Users without access at a level get no access line for it.
+ */
+public class AccessAudit {
+
+    private static final long[] NONE = new long[0];
+    private static final int CHUNK_SIZE = 512;
+
+    private final List<String> resourceNames = new ArrayList<>();
+    private final List<Object> users = new ArrayList<>();
+    private final List<String> userNames = new ArrayList<>();
+    private final Map<Object, List<Object>> directGroups = new HashMap<>();
+    // per level: principal id -> ranges granted to that principal itself
+    private final List<Map<Object, long[]>> granted = new ArrayList<>();
+    // per level: user id -> ranges of resources (or their ACL containers) the user owns
+    private final List<Map<Object, long[]>> owned = new ArrayList<>();
+    // per level: group id -> ranges granted to the group or any of its supergroups
+    private final List<Map<Object, long[]>> groupGranted = new ArrayList<>();
+    private final List<long[]> publicRanges = new ArrayList<>();
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    public AccessAudit(Graph g) {
+        this(g, CompiledAclSnapshot.compile(g), MembershipClosureIndex.build(g));
+    }
+
+    public AccessAudit(Graph g, CompiledAclSnapshot acl, MembershipClosureIndex membership) {
+        int[] order = resourceOrder(g, acl);
+        for (int ordinal : order) {
+            Object id = acl.id(ordinal);
+            resourceNames.add(g.traversal().V(id).values("name").tryNext().map(String::valueOf).orElse(String.valueOf(id)));
+        }
+        g.traversal().V().hasLabel("User").forEachRemaining(user -> {
+            users.add(user.id());
+            userNames.add(user.value("name"));
+        });
+        g.traversal().E().hasLabel("MEMBER_OF").forEachRemaining(e ->
+                directGroups.computeIfAbsent(e.outVertex().id(), u -> new ArrayList<>()).add(e.inVertex().id()));
+
+        for (int level = 0; level < PermissionMask.LEVELS.size(); level++) {
+            compileLevel(acl, order, level);
+        }
+
+        Map<Object, List<Object>> supergroups = new HashMap<>();
+        directGroups.values().forEach(groups -> groups.forEach(group ->
+                supergroups.computeIfAbsent(group, k -> new ArrayList<>(membership.getPrincipalIds(k)))));
+        for (int level = 0; level < PermissionMask.LEVELS.size(); level++) {
+            Map<Object, long[]> levelGranted = granted.get(level);
+            Map<Object, long[]> levelGroupGranted = new HashMap<>();
+            supergroups.forEach((group, principals) -> {
+                List<long[]> ranges = new ArrayList<>();
+                principals.forEach(principal -> ranges.add(levelGranted.getOrDefault(principal, NONE)));
+                long[] merged = merge(ranges);
+                if (merged.length > 0) {
+                    levelGroupGranted.put(group, merged);
+                }
+            });
+            groupGranted.add(levelGroupGranted);
+        }
+    }
+
+    public AccessAudit withParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public long export(Path file, String... permissions) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            return export(out, permissions);
+        }
+    }
+
+    /**
+     * @return number of users audited
+     */
+    public long export(Writer out, String... permissions) throws IOException {
+        int[] levels = new int[permissions.length];
+        for (int i = 0; i < permissions.length; i++) {
+            levels[i] = PermissionMask.LEVELS.indexOf(permissions[i]);
+            if (levels[i] < 0) {
+                throw new IllegalArgumentException("Unknown permission " + permissions[i]);
+            }
+        }
+        for (int position = 0; position < resourceNames.size(); position++) {
+            out.write("resource\t" + position + "\t" + resourceNames.get(position) + "\n");
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            // a bounded window of chunks in flight keeps memory flat while the writer stays in user order
+            Deque<Future<String>> pending = new ArrayDeque<>();
+            for (int start = 0; start < users.size(); start += CHUNK_SIZE) {
+                int from = start;
+                int to = Math.min(start + CHUNK_SIZE, users.size());
+                pending.add(pool.submit(() -> auditUsers(from, to, permissions, levels)));
+                if (pending.size() >= parallelism * 2) {
+                    out.write(pending.poll().get());
+                }
+            }
+            while (!pending.isEmpty()) {
+                out.write(pending.poll().get());
+            }
+        } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Audit interrupted");
+        } catch (ExecutionException x) {
+            throw new RuntimeException(x.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return users.size();
+    }
+
+    private String auditUsers(int from, int to, String[] permissions, int[] levels) {
+        StringBuilder chunk = new StringBuilder();
+        List<long[]> ranges = new ArrayList<>();
+        for (int u = from; u < to; u++) {
+            Object user = users.get(u);
+            for (int i = 0; i < levels.length; i++) {
+                int level = levels[i];
+                ranges.clear();
+                ranges.add(granted.get(level).getOrDefault(user, NONE));
+                ranges.add(owned.get(level).getOrDefault(user, NONE));
+                ranges.add(publicRanges.get(level));
+                for (Object group : directGroups.getOrDefault(user, List.of())) {
+                    ranges.add(groupGranted.get(level).getOrDefault(group, NONE));
+                }
+                long[] merged = merge(ranges);
+                if (merged.length > 0) {
+                    chunk.append("access\t").append(userNames.get(u)).append('\t').append(permissions[i]).append('\t');
+                    appendRanges(chunk, merged);
+                    chunk.append('\n');
+                }
+            }
+        }
+        return chunk.toString();
+    }
+
+    private void compileLevel(CompiledAclSnapshot acl, int[] order, int level) {
+        // positions decided by each rule source, e.g. the subtree below a container with an explicit grant
+        RangeList[] bySource = new RangeList[acl.size()];
+        for (int position = 0; position < order.length; position++) {
+            for (int source : acl.ruleSources(order[position], level)) {
+                if (bySource[source] == null) {
+                    bySource[source] = new RangeList();
+                }
+                bySource[source].add(position);
+            }
+        }
+        Map<Object, RangeList> levelGranted = new HashMap<>();
+        Map<Object, RangeList> levelOwned = new HashMap<>();
+        RangeList levelPublic = new RangeList();
+        for (int source = 0; source < bySource.length; source++) {
+            if (bySource[source] == null) {
+                continue;
+            }
+            long[] ranges = bySource[source].toArray();
+            for (Object grantee : acl.grantees(source, level)) {
+                levelGranted.computeIfAbsent(grantee, k -> new RangeList()).addAll(ranges);
+            }
+            for (Object owner : acl.owners(source)) {
+                levelOwned.computeIfAbsent(owner, k -> new RangeList()).addAll(ranges);
+            }
+            // only consider public access if the request is for read
+            if (level == 0 && acl.isPublic(source)) {
+                levelPublic.addAll(ranges);
+            }
+        }
+        granted.add(normalize(levelGranted));
+        owned.add(normalize(levelOwned));
+        publicRanges.add(merge(List.of(levelPublic.toArray())));
+    }
+
+    // depth-first over IN_FOLDER so that every subtree gets consecutive positions, then everything else
+    private static int[] resourceOrder(Graph g, CompiledAclSnapshot acl) {
+        Map<Integer, List<Integer>> children = new HashMap<>();
+        BitSet hasParent = new BitSet();
+        g.traversal().E().hasLabel("IN_FOLDER").forEachRemaining(e -> {
+            Integer child = acl.ordinalOf(e.outVertex().id());
+            Integer parent = acl.ordinalOf(e.inVertex().id());
+            if (child != null && parent != null && acl.isContainer(child) && acl.isContainer(parent)) {
+                children.computeIfAbsent(parent, p -> new ArrayList<>()).add(child);
+                hasParent.set(child);
+            }
+        });
+        int[] order = new int[acl.size()];
+        int count = 0;
+        BitSet visited = new BitSet();
+        Deque<Integer> stack = new ArrayDeque<>();
+        for (int root = 0; root < acl.size(); root++) {
+            if (!acl.isContainer(root) || hasParent.get(root)) {
+                continue;
+            }
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                int container = stack.pop();
+                if (visited.get(container)) {
+                    continue;
+                }
+                visited.set(container);
+                order[count++] = container;
+                List<Integer> containerChildren = children.getOrDefault(container, List.of());
+                for (int i = containerChildren.size() - 1; i >= 0; i--) {
+                    stack.push(containerChildren.get(i));
+                }
+            }
+        }
+        // non-containers and containers only reachable through an IN_FOLDER cycle
+        for (int ordinal = 0; ordinal < acl.size(); ordinal++) {
+            if (!visited.get(ordinal)) {
+                order[count++] = ordinal;
+            }
+        }
+        return order;
+    }
+
+    private static Map<Object, long[]> normalize(Map<Object, RangeList> lists) {
+        Map<Object, long[]> ranges = new HashMap<>(lists.size() * 2);
+        lists.forEach((key, list) -> ranges.put(key, merge(List.of(list.toArray()))));
+        return ranges;
+    }
+
+    // a range is packed as from << 32 | to (exclusive), so sorting the longs sorts by start
+    private static long[] merge(List<long[]> rangeLists) {
+        int total = 0;
+        for (long[] ranges : rangeLists) {
+            total += ranges.length;
+        }
+        if (total == 0) {
+            return NONE;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (long[] ranges : rangeLists) {
+            System.arraycopy(ranges, 0, all, offset, ranges.length);
+            offset += ranges.length;
+        }
+        Arrays.sort(all);
+        int count = 0;
+        for (long range : all) {
+            if (count > 0 && from(range) <= to(all[count - 1])) {
+                long last = all[count - 1];
+                all[count - 1] = pack(from(last), Math.max(to(last), to(range)));
+            } else {
+                all[count++] = range;
+            }
+        }
+        return count == all.length ? all : Arrays.copyOf(all, count);
+    }
+
+    private static void appendRanges(StringBuilder out, long[] ranges) {
+        for (int i = 0; i < ranges.length; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            int from = from(ranges[i]);
+            int last = to(ranges[i]) - 1;
+            out.append(from);
+            if (last > from) {
+                out.append('-').append(last);
+            }
+        }
+    }
+
+    private static long pack(int from, int to) {
+        return (long) from << 32 | to;
+    }
+
+    private static int from(long range) {
+        return (int) (range >>> 32);
+    }
+
+    private static int to(long range) {
+        return (int) range;
+    }
+
+    private static final class RangeList {
+
+        private long[] ranges = new long[4];
+        private int size;
+
+        // positions are added in ascending order, so consecutive ones extend the last range
+        void add(int position) {
+            if (size > 0) {
+                int end = to(ranges[size - 1]);
+                if (position < end) {
+                    return;
+                }
+                if (position == end) {
+                    ranges[size - 1] = pack(from(ranges[size - 1]), end + 1);
+                    return;
+                }
+            }
+            append(pack(position, position + 1));
+        }
+
+        void addAll(long[] other) {
+            for (long range : other) {
+                append(range);
+            }
+        }
+
+        private void append(long range) {
+            if (size == ranges.length) {
+                ranges = Arrays.copyOf(ranges, size * 2);
+            }
+            ranges[size++] = range;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(ranges, size);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What one instrumented access check did: the outcome, which branch of the rule granted it and on which vertex, the
+ * vertices and edges each branch touched, how deep the repeats went, and how long each phase took.
+ *
+ * Vertices and edges are counted as the traversal steps emit them, not including the vertex a branch starts from.
+ */
+public class AccessCheckReport {
+
+    public enum Branch {
+        // resource is public (reads only)
+        PUBLIC,
+        // resource is owned by the user
+        OWNER,
+        // HAS_PERMISSION edge straight from the user
+        USER_GRANT,
+        // HAS_PERMISSION edge from one of the user's groups, direct or through supergroups
+        GROUP_GRANT,
+        // IN_FOLDER ascent from a container to the nearest containers with an explicit grant; never wins on its own
+        CONTAINER_ASCENT
+    }
+
+    public enum Phase {
+        USER_LOOKUP,
+        RESOURCE_LOOKUP,
+        // expanding the user's groups upward; zero when the hierarchy is walked down from the grants instead
+        PRINCIPAL_EXPANSION,
+        EVALUATION
+    }
+
+    public static class BranchStats {
+
+        long evaluations;
+        long hits;
+        long vertices;
+        long edges;
+        int maxDepth;
+        long pruned;
+        long nanos;
+
+        public long getEvaluations() {
+            return evaluations;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getVertices() {
+            return vertices;
+        }
+
+        public long getEdges() {
+            return edges;
+        }
+
+        // deepest repeat iteration reached, 0 for branches without a repeat
+        public int getMaxDepth() {
+            return maxDepth;
+        }
+
+        // vertices reached again over another path, or around a cycle, and not walked from a second time
+        public long getPruned() {
+            return pruned;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        void traversed(int depth) {
+            vertices++;
+            edges++;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        boolean firstVisit(Set<Object> visited, Object vertexId) {
+            if (visited.add(vertexId)) {
+                return true;
+            }
+            pruned++;
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("evaluations=%d hits=%d vertices=%d edges=%d depth=%d pruned=%d %dus", evaluations, hits, vertices, edges,
+                    maxDepth, pruned, nanos / 1000);
+        }
+    }
+
+    private final String resourceId;
+    private final String userId;
+    private final String permission;
+    private final Map<Branch, BranchStats> branches = new EnumMap<>(Branch.class);
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private Branch winningBranch;
+    private Object matchedVertexId;
+    private int principalCount = -1;
+
+    // how a container fared on its own rule versus through the ascent, for BranchPlanner
+    boolean container;
+    boolean directMatch;
+    boolean inheritedMatch;
+    boolean ascended;
+    long ruleNanos;
+    long ascentNanos;
+
+    AccessCheckReport(String resourceId, String userId, String permission) {
+        this.resourceId = resourceId;
+        this.userId = userId;
+        this.permission = permission;
+        for (Branch branch : Branch.values()) {
+            branches.put(branch, new BranchStats());
+        }
+    }
+
+    public String getResourceId() {
+        return resourceId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getPermission() {
+        return permission;
+    }
+
+    public boolean isAllowed() {
+        return winningBranch != null;
+    }
+
+    // null when access was denied
+    public Branch getWinningBranch() {
+        return winningBranch;
+    }
+
+    // the resource itself, or the container the access was inherited from; null when access was denied
+    public Object getMatchedVertexId() {
+        return matchedVertexId;
+    }
+
+    public BranchStats getBranch(Branch branch) {
+        return branches.get(branch);
+    }
+
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public long getTotalNanos() {
+        long total = 0;
+        for (long nanos : phaseNanos) {
+            total += nanos;
+        }
+        return total;
+    }
+
+    // number of principals the user expanded to, -1 when the hierarchy was walked down from the grants
+    public int getPrincipalCount() {
+        return principalCount;
+    }
+
+    void setPhaseNanos(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()] = nanos;
+    }
+
+    void setPrincipalCount(int principalCount) {
+        this.principalCount = principalCount;
+    }
+
+    void matched(Branch branch, Object vertexId) {
+        if (winningBranch != null) {
+            // exhaustive evaluation keeps going after the first match, which is the one that counts
+            return;
+        }
+        this.winningBranch = branch;
+        this.matchedVertexId = vertexId;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%s %s by %s: %s", permission, resourceId, userId,
+                isAllowed() ? "allowed by " + winningBranch + " on " + matchedVertexId : "denied"));
+        for (Phase phase : Phase.values()) {
+            report.append(String.format("%n  %-19s %dus", phase, getPhaseNanos(phase) / 1000));
+        }
+        branches.forEach((branch, stats) -> {
+            if (stats.evaluations > 0) {
+                report.append(String.format("%n  %-19s %s", branch, stats));
+            }
+        });
+        return report.toString();
+    }
+}
@@ -0,0 +1,303 @@
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.__;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Property;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.VertexProperty;
+
+/**
+ * Size-bounded LRU (and optionally TTL) cache of (resource, user, permission) decisions in front of a
+ * PermissionTraverser.
+ *
+ * Every decision records the vertices it depends on: the resource and its IN_FOLDER ancestors, and the user and the
+ * groups it expands to. Registered with an EventStrategy, the cache drops exactly the decisions whose dependencies are
+ * touched by a change to HAS_PERMISSION, OWNED_BY, MEMBER_OF, HAS_SUPERGROUP, IN_FOLDER or a vertex property such as
+ * public. A decision computed while a change was being applied is returned but not cached, so a revoke is never
+ * answered from a stale entry.
+ */
+public class AccessDecisionCache extends GraphChangeListener {
+
+    private final PermissionTraverser traverser;
+    private final int maxSize;
+    private final Duration ttl;
+    private final LinkedHashMap<DecisionKey, Decision> decisions;
+    // reverse indexes used for invalidation
+    private final Map<Object, Set<DecisionKey>> byVertex = new HashMap<>();
+    private final Map<String, Set<DecisionKey>> byName = new HashMap<>();
+
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public AccessDecisionCache(PermissionTraverser traverser, int maxSize) {
+        this(traverser, maxSize, null);
+    }
+
+    /**
+     * @param ttl how long a decision may be served; null to only rely on invalidation
+     */
+    public AccessDecisionCache(PermissionTraverser traverser, int maxSize, Duration ttl) {
+        this.traverser = traverser;
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.decisions = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public boolean hasAccess(Graph g, String resourceId, String userId, String permission) {
+        DecisionKey key = new DecisionKey(resourceId, userId, permission);
+        long startGeneration;
+        synchronized (this) {
+            Decision decision = decisions.get(key);
+            if (decision != null && decision.isExpired()) {
+                remove(key);
+                evictions++;
+                decision = null;
+            }
+            if (decision != null) {
+                hits++;
+                return decision.allowed;
+            }
+            misses++;
+            startGeneration = generation;
+        }
+
+        boolean allowed = traverser.canAccess(g, resourceId, userId, permission);
+        Set<Object> dependencies = dependencies(g, resourceId, userId);
+
+        synchronized (this) {
+            // something changed while the decision was computed, so it may already be stale
+            if (generation == startGeneration) {
+                put(key, new Decision(allowed, dependencies, ttl == null ? Long.MAX_VALUE : System.nanoTime() + ttl.toNanos()));
+            }
+        }
+        return allowed;
+    }
+
+    private Set<Object> dependencies(Graph g, String resourceId, String userId) {
+        Set<Object> dependencies = new HashSet<>();
+        // dedup() inside the repeats as well, so that shared ancestors are walked once and cycles end
+        g.traversal().V().has("name", resourceId).emit().repeat(__.out("IN_FOLDER").dedup()).dedup().id().forEachRemaining(dependencies::add);
+        g.traversal().V().hasLabel("User").has("name", userId).emit().repeat(__.out("MEMBER_OF", "HAS_SUPERGROUP").dedup()).dedup().id()
+                .forEachRemaining(dependencies::add);
+        return dependencies;
+    }
+
+    private void put(DecisionKey key, Decision decision) {
+        remove(key);
+        decisions.put(key, decision);
+        decision.dependencies.forEach(id -> byVertex.computeIfAbsent(id, k -> new HashSet<>()).add(key));
+        byName.computeIfAbsent(key.resourceId, k -> new HashSet<>()).add(key);
+        byName.computeIfAbsent(key.userId, k -> new HashSet<>()).add(key);
+        while (decisions.size() > maxSize) {
+            remove(decisions.keySet().iterator().next());
+            evictions++;
+        }
+    }
+
+    private void remove(DecisionKey key) {
+        Decision decision = decisions.remove(key);
+        if (decision == null) {
+            return;
+        }
+        decision.dependencies.forEach(id -> removeFrom(byVertex, id, key));
+        removeFrom(byName, key.resourceId, key);
+        removeFrom(byName, key.userId, key);
+    }
+
+    private static <K> void removeFrom(Map<K, Set<DecisionKey>> index, K indexKey, DecisionKey key) {
+        Set<DecisionKey> keys = index.get(indexKey);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                index.remove(indexKey);
+            }
+        }
+    }
+
+    private synchronized void invalidate(Map<?, Set<DecisionKey>> index, Object indexKey) {
+        generation++;
+        Set<DecisionKey> keys = index.get(indexKey);
+        if (keys == null) {
+            return;
+        }
+        for (Iterator<DecisionKey> it = new HashSet<>(keys).iterator(); it.hasNext(); ) {
+            remove(it.next());
+            invalidations++;
+        }
+    }
+
+    public void invalidateVertex(Object vertexId) {
+        invalidate(byVertex, vertexId);
+    }
+
+    public void invalidateName(String name) {
+        invalidate(byName, name);
+    }
+
+    public synchronized void clear() {
+        generation++;
+        invalidations += decisions.size();
+        decisions.clear();
+        byVertex.clear();
+        byName.clear();
+    }
+
+    public synchronized int size() {
+        return decisions.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    @Override
+    public void edgeAdded(Edge edge) {
+        invalidateEdge(edge);
+    }
+
+    @Override
+    public void edgeRemoved(Edge edge) {
+        invalidateEdge(edge);
+    }
+
+    @Override
+    public void edgePropertyChanged(Edge element, Property oldValue, Object setValue) {
+        invalidateEdge(element);
+    }
+
+    @Override
+    public void edgePropertyRemoved(Edge element, Property property) {
+        invalidateEdge(element);
+    }
+
+    private void invalidateEdge(Edge edge) {
+        Object vertexId = dependentVertex(edge);
+        if (vertexId != null) {
+            invalidateVertex(vertexId);
+        }
+    }
+
+    private static Object dependentVertex(Edge edge) {
+        switch (edge.label()) {
+            case "HAS_PERMISSION":
+                // the grant affects the resource and everything inheriting from it
+                return edge.inVertex().id();
+            case "OWNED_BY":
+            case "MEMBER_OF":
+            case "HAS_SUPERGROUP":
+            case "IN_FOLDER":
+                // the resource, member or subfolder side is the one whose decisions depend on the edge
+                return edge.outVertex().id();
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public void batchApplied(AclChangeSet changes) {
+        // each touched vertex once, all under one lock
+        Set<Object> vertexIds = new HashSet<>();
+        changes.getRemovedEdges().forEach(edge -> vertexIds.add(dependentVertex(edge)));
+        changes.getAddedEdges().forEach(edge -> vertexIds.add(dependentVertex(edge)));
+        changes.getPropertyChanges().forEach(change -> vertexIds.add(change.getVertex().id()));
+        vertexIds.remove(null);
+        synchronized (this) {
+            vertexIds.forEach(this::invalidateVertex);
+        }
+    }
+
+    @Override
+    public void vertexAdded(Vertex vertex) {
+        // a new vertex may share the name of a cached resource or user
+        VertexProperty<Object> name = vertex.property("name");
+        if (name.isPresent()) {
+            invalidateName(String.valueOf(name.value()));
+        }
+    }
+
+    @Override
+    public void vertexRemoved(Vertex vertex) {
+        invalidateVertex(vertex.id());
+    }
+
+    @Override
+    public void vertexPropertyChanged(Vertex element, VertexProperty oldValue, Object setValue, Object... vertexPropertyKeyValues) {
+        // covers public as well as renames, which can make another vertex match a cached id
+        invalidateVertex(element.id());
+        invalidateName(String.valueOf(setValue));
+    }
+
+    @Override
+    public void vertexPropertyRemoved(VertexProperty vertexProperty) {
+        invalidateVertex(vertexProperty.element().id());
+    }
+
+    private static final class DecisionKey {
+
+        final String resourceId;
+        final String userId;
+        final String permission;
+
+        DecisionKey(String resourceId, String userId, String permission) {
+            this.resourceId = resourceId;
+            this.userId = userId;
+            this.permission = permission;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DecisionKey)) {
+                return false;
+            }
+            DecisionKey other = (DecisionKey) o;
+            return resourceId.equals(other.resourceId) && userId.equals(other.userId) && permission.equals(other.permission);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(resourceId, userId, permission);
+        }
+    }
+
+    private static final class Decision {
+
+        final boolean allowed;
+        final Set<Object> dependencies;
+        final long expiresAt;
+
+        Decision(boolean allowed, Set<Object> dependencies, long expiresAt) {
+            this.allowed = allowed;
+            this.dependencies = dependencies;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return expiresAt != Long.MAX_VALUE && System.nanoTime() - expiresAt > 0;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * Receives the report of every instrumented access check, e.g. to forward counters and timers to a metrics system.
+ * Implementations are called on the checking thread and must be thread-safe.
+ */
+public interface AccessMetrics {
+
+    void record(AccessCheckReport report);
+}
@@ -0,0 +1,56 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+
+/**
+ * One page of resources accessible to a user, plus the opaque cursor to pass back for the next page (null when the
+ * enumeration is exhausted).
+ */
+public class AccessPage {
+
+    private final List<Vertex> resources;
+    private final String nextCursor;
+
+    AccessPage(List<Vertex> resources, String nextCursor) {
+        this.resources = Collections.unmodifiableList(resources);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Vertex> getResources() {
+        return resources;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+
+    // the cursor is the path of sort keys from a seed grant down to the last visited vertex
+    static String encodeCursor(List<String> path) {
+        StringBuilder cursor = new StringBuilder();
+        for (String key : path) {
+            if (cursor.length() > 0) {
+                cursor.append('.');
+            }
+            cursor.append(Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8)));
+        }
+        return cursor.toString();
+    }
+
+    static List<String> decodeCursor(String cursor) {
+        List<String> path = new ArrayList<>();
+        if (cursor == null || cursor.isEmpty()) {
+            return path;
+        }
+        for (String key : cursor.split("\\.")) {
+            path.add(new String(Base64.getUrlDecoder().decode(key), StandardCharsets.UTF_8));
+        }
+        return path;
+    }
+}
@@ -0,0 +1,135 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A batch of grants, revokes, membership changes, IN_FOLDER moves and public flags, applied together by an
+ * AclBatchWriter.
+ *
+ * Operations name vertices by id and are coalesced as they are added: for each grant (principal, resource), membership
+ * (member, group), moved resource or public flag only the last operation is kept, so a grant followed by a revoke is a
+ * revoke, and a grant of W replaces an earlier R in the same batch.
+ */
+public class AclBatch {
+
+    enum Kind {
+        GRANT,
+        REVOKE,
+        ADD_EDGE,
+        REMOVE_EDGE,
+        MOVE,
+        SET_PUBLIC
+    }
+
+    static final class Operation {
+
+        final Kind kind;
+        final String label;
+        final Object outId;
+        // null for SET_PUBLIC, and for a MOVE to the top level
+        final Object inId;
+        final String permission;
+        final boolean value;
+
+        Operation(Kind kind, String label, Object outId, Object inId, String permission, boolean value) {
+            this.kind = kind;
+            this.label = label;
+            this.outId = outId;
+            this.inId = inId;
+            this.permission = permission;
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return kind + " " + outId + (inId == null ? "" : " -" + label + "-> " + inId)
+                    + (permission == null ? "" : " " + permission) + (kind == Kind.SET_PUBLIC ? " " + value : "");
+        }
+    }
+
+    // coalescing key -> last operation for it, in the order the keys were last touched
+    private final Map<List<Object>, Operation> operations = new LinkedHashMap<>();
+    private int requested;
+
+    // replaces any grant the principal holds on the resource with one of the given permission
+    public AclBatch grant(Object principalId, Object resourceId, String permission) {
+        if (PermissionMask.impliedMask(permission) == 0) {
+            throw new IllegalArgumentException("Unknown permission " + permission);
+        }
+        return add(Arrays.asList("HAS_PERMISSION", principalId, resourceId),
+                new Operation(Kind.GRANT, "HAS_PERMISSION", principalId, resourceId, permission, true));
+    }
+
+    // removes every grant the principal holds on the resource
+    public AclBatch revoke(Object principalId, Object resourceId) {
+        return add(Arrays.asList("HAS_PERMISSION", principalId, resourceId),
+                new Operation(Kind.REVOKE, "HAS_PERMISSION", principalId, resourceId, null, false));
+    }
+
+    public AclBatch addMember(Object userId, Object groupId) {
+        return membership("MEMBER_OF", userId, groupId, true);
+    }
+
+    public AclBatch removeMember(Object userId, Object groupId) {
+        return membership("MEMBER_OF", userId, groupId, false);
+    }
+
+    public AclBatch addSupergroup(Object groupId, Object supergroupId) {
+        return membership("HAS_SUPERGROUP", groupId, supergroupId, true);
+    }
+
+    public AclBatch removeSupergroup(Object groupId, Object supergroupId) {
+        return membership("HAS_SUPERGROUP", groupId, supergroupId, false);
+    }
+
+    private AclBatch membership(String label, Object memberId, Object groupId, boolean add) {
+        return add(Arrays.asList(label, memberId, groupId),
+                new Operation(add ? Kind.ADD_EDGE : Kind.REMOVE_EDGE, label, memberId, groupId, null, add));
+    }
+
+    // makes the folder the only IN_FOLDER parent of the resource; a null folder makes it top level
+    public AclBatch move(Object resourceId, Object folderId) {
+        return add(Arrays.asList("IN_FOLDER", resourceId), new Operation(Kind.MOVE, "IN_FOLDER", resourceId, folderId, null, true));
+    }
+
+    public AclBatch setPublic(Object resourceId, boolean isPublic) {
+        return add(Arrays.asList("public", resourceId), new Operation(Kind.SET_PUBLIC, null, resourceId, null, null, isPublic));
+    }
+
+    private AclBatch add(List<Object> key, Operation operation) {
+        if (operation.outId == null) {
+            throw new IllegalArgumentException("No vertex id for " + operation.kind);
+        }
+        requested++;
+        // removed first, so that the key moves to the end like the operation that replaced it
+        operations.remove(key);
+        operations.put(key, operation);
+        return this;
+    }
+
+    // operations left after coalescing
+    public int size() {
+        return operations.size();
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    // operations added, including those coalesced away
+    public int getRequested() {
+        return requested;
+    }
+
+    Collection<Operation> operations() {
+        return new ArrayList<>(operations.values());
+    }
+
+    @Override
+    public String toString() {
+        return "AclBatch of " + operations.size() + " operations (" + requested + " requested)";
+    }
+}
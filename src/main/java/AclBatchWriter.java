@@ -0,0 +1,194 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.VertexProperty;
+import org.apache.tinkerpop.gremlin.structure.util.detached.DetachedFactory;
+import org.apache.tinkerpop.gremlin.structure.util.keyed.KeyedVertexProperty;
+
+/**
+ * Applies AclBatches to a graph as one unit: one transaction on graphs that support them, committed or rolled back as
+ * a whole. Without transactions, as on TinkerGraph, batches are only serialized against each other: AclBatchWriters of
+ * the same graph lock on it, but readers and other writers do not, and may see a batch half written.
+ *
+ * The vertices and the current edges of every principal, member and moved resource in the batch are read once up
+ * front, operations that find the graph already in the requested state are skipped, and the rest are written through
+ * the structure API. Listeners then get the whole batch as one AclChangeSet instead of an event per element; a
+ * listener that does not handle batches sees them replayed as single events (see GraphChangeListener).
+ */
+public class AclBatchWriter {
+
+    private final Graph graph;
+    private final boolean transactional;
+    private final List<GraphChangeListener> listeners = new ArrayList<>();
+
+    public AclBatchWriter(Graph graph) {
+        this.graph = graph;
+        this.transactional = graph.features().graph().supportsTransactions();
+    }
+
+    public AclBatchWriter withListener(GraphChangeListener listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * @return what the batch changed, after it was committed and every listener was notified
+     * @throws IllegalArgumentException if an operation names a vertex that does not exist, before anything is written
+     */
+    public AclChangeSet apply(AclBatch batch) {
+        synchronized (graph) {
+            AclChangeSet changes;
+            try {
+                changes = write(batch);
+                if (transactional) {
+                    graph.tx().commit();
+                }
+            } catch (RuntimeException x) {
+                if (transactional) {
+                    graph.tx().rollback();
+                }
+                throw x;
+            }
+            // still under the lock, so that listeners see batches in the order they were written
+            if (!changes.isEmpty()) {
+                listeners.forEach(listener -> listener.batchApplied(changes));
+            }
+            return changes;
+        }
+    }
+
+    private AclChangeSet write(AclBatch batch) {
+        Collection<AclBatch.Operation> operations = batch.operations();
+        Map<Object, Vertex> vertices = vertices(operations);
+        Map<List<Object>, List<Edge>> existing = existingEdges(operations, vertices);
+
+        List<Edge> added = new ArrayList<>();
+        List<Edge> removed = new ArrayList<>();
+        List<AclChangeSet.PropertyChange> propertyChanges = new ArrayList<>();
+        int skipped = 0;
+        for (AclBatch.Operation operation : operations) {
+            Vertex out = vertices.get(operation.outId);
+            Vertex in = operation.inId == null ? null : vertices.get(operation.inId);
+            List<Edge> current = operation.kind == AclBatch.Kind.SET_PUBLIC ? Collections.emptyList()
+                    : existing.getOrDefault(edgeKey(operation.label, out, operation.kind == AclBatch.Kind.MOVE ? null : in), Collections.emptyList());
+            switch (operation.kind) {
+                case GRANT:
+                    // the mask property itself, so that an edge with only the permission string is rewritten
+                    Object mask = current.size() == 1 ? current.get(0).property(PermissionMask.PROPERTY).orElse(null) : null;
+                    if (Integer.valueOf(PermissionMask.impliedMask(operation.permission)).equals(mask)) {
+                        skipped++;
+                    } else {
+                        remove(current, removed);
+                        added.add(out.addEdge(operation.label, in, PermissionMask.edgeProperties(operation.permission)));
+                    }
+                    break;
+                case ADD_EDGE:
+                    if (!current.isEmpty()) {
+                        skipped++;
+                    } else {
+                        added.add(out.addEdge(operation.label, in));
+                    }
+                    break;
+                case REVOKE:
+                case REMOVE_EDGE:
+                    if (current.isEmpty()) {
+                        skipped++;
+                    } else {
+                        remove(current, removed);
+                    }
+                    break;
+                case MOVE:
+                    if (in == null ? current.isEmpty() : current.size() == 1 && current.get(0).inVertex().id().equals(in.id())) {
+                        skipped++;
+                    } else {
+                        remove(current, removed);
+                        if (in != null) {
+                            added.add(out.addEdge(operation.label, in));
+                        }
+                    }
+                    break;
+                case SET_PUBLIC:
+                    VertexProperty<Object> property = out.property("public");
+                    if (Boolean.valueOf(operation.value).equals(property.orElse(false))) {
+                        skipped++;
+                    } else {
+                        VertexProperty<?> oldValue = property.isPresent() ? DetachedFactory.detach(property, true) : new KeyedVertexProperty<>("public");
+                        out.property("public", operation.value);
+                        propertyChanges.add(new AclChangeSet.PropertyChange(out, oldValue, operation.value));
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation " + operation);
+            }
+        }
+        return new AclChangeSet(added, removed, propertyChanges, batch.getRequested(), skipped);
+    }
+
+    private Map<Object, Vertex> vertices(Collection<AclBatch.Operation> operations) {
+        Set<Object> ids = new LinkedHashSet<>();
+        for (AclBatch.Operation operation : operations) {
+            ids.add(operation.outId);
+            if (operation.inId != null) {
+                ids.add(operation.inId);
+            }
+        }
+        Map<Object, Vertex> vertices = new HashMap<>();
+        if (!ids.isEmpty()) {
+            graph.vertices(ids.toArray()).forEachRemaining(v -> vertices.put(v.id(), v));
+        }
+        for (Object id : ids) {
+            if (!vertices.containsKey(id)) {
+                throw new IllegalArgumentException("No vertex with id " + id);
+            }
+        }
+        return vertices;
+    }
+
+    // the current edges of every out vertex in the batch, read once per vertex for all the labels it needs
+    private static Map<List<Object>, List<Edge>> existingEdges(Collection<AclBatch.Operation> operations, Map<Object, Vertex> vertices) {
+        Map<Object, Set<String>> labels = new HashMap<>();
+        Set<List<Object>> wanted = new HashSet<>();
+        for (AclBatch.Operation operation : operations) {
+            if (operation.kind != AclBatch.Kind.SET_PUBLIC) {
+                labels.computeIfAbsent(operation.outId, id -> new HashSet<>()).add(operation.label);
+                Vertex out = vertices.get(operation.outId);
+                wanted.add(edgeKey(operation.label, out, operation.kind == AclBatch.Kind.MOVE ? null : vertices.get(operation.inId)));
+            }
+        }
+        Map<List<Object>, List<Edge>> existing = new HashMap<>();
+        labels.forEach((id, edgeLabels) -> {
+            Vertex out = vertices.get(id);
+            out.edges(Direction.OUT, edgeLabels.toArray(new String[0])).forEachRemaining(e -> {
+                // moves replace every parent, so their edges are keyed without the folder
+                for (List<Object> key : Arrays.asList(edgeKey(e.label(), out, e.inVertex()), edgeKey(e.label(), out, null))) {
+                    if (wanted.contains(key)) {
+                        existing.computeIfAbsent(key, k -> new ArrayList<>()).add(e);
+                    }
+                }
+            });
+        });
+        return existing;
+    }
+
+    private static List<Object> edgeKey(String label, Vertex out, Vertex in) {
+        return Arrays.asList(label, out.id(), in == null ? null : in.id());
+    }
+
+    private static void remove(List<Edge> edges, List<Edge> removed) {
+        for (Edge edge : edges) {
+            removed.add(DetachedFactory.detach(edge, true));
+            edge.remove();
+        }
+    }
+}
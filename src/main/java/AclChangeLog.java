@@ -0,0 +1,190 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Property;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.VertexProperty;
+
+/**
+ * Numbers the ACL-relevant changes to a graph and keeps them, so that a CsrAclSnapshot written at one position can be
+ * brought up to date by replaying what came after it instead of being exported again.
+ *
+ * Register it with an EventStrategy and an AclBatchWriter (or call the listener methods) like the other listeners. It
+ * records the edges the rule follows with their grant masks, and the label, name and public flag of every vertex added
+ * or changed. Property events arrive before the change is applied, so the new value is taken from the event and the
+ * rest from the vertex.
+ */
+public class AclChangeLog extends GraphChangeListener {
+
+    static final List<String> EDGE_LABELS = Collections.unmodifiableList(Arrays.asList(
+            "HAS_PERMISSION", "IN_FOLDER", "OWNED_BY", "MEMBER_OF", "HAS_SUPERGROUP"));
+
+    private final Graph graph;
+    private final List<Change> changes = new ArrayList<>();
+    private long position;
+
+    public AclChangeLog(Graph graph) {
+        this(graph, 0);
+    }
+
+    // continues numbering after position, e.g. that of the snapshot the graph was loaded with
+    public AclChangeLog(Graph graph, long position) {
+        this.graph = graph;
+        this.position = position;
+    }
+
+    // position of the last recorded change
+    public synchronized long getPosition() {
+        return position;
+    }
+
+    // changes after the given position, oldest first
+    public synchronized List<Change> since(long position) {
+        List<Change> since = new ArrayList<>();
+        for (Change change : changes) {
+            if (change.position > position) {
+                since.add(change);
+            }
+        }
+        return since;
+    }
+
+    // forgets the changes up to the given position, once a snapshot that includes them is written
+    public synchronized void truncate(long position) {
+        changes.removeIf(change -> change.position <= position);
+    }
+
+    private synchronized void record(Change.Kind kind, Object id, String label, Object inId, int mask, String name, boolean isPublic) {
+        changes.add(new Change(++position, kind, id, label, inId, mask, name, isPublic));
+    }
+
+    private void recordVertex(Vertex vertex, String key, Object value, boolean removed) {
+        // the event's vertex is detached, read the properties that did not change from the graph
+        Vertex attached = graph.vertices(vertex.id()).next();
+        Object name = attached.property("name").orElse(null);
+        Object isPublic = attached.property("public").orElse(false);
+        if ("name".equals(key)) {
+            name = removed ? null : value;
+        } else if ("public".equals(key)) {
+            isPublic = removed ? false : value;
+        } else if (key != null) {
+            return;
+        }
+        record(Change.Kind.VERTEX, attached.id(), attached.label(), null, 0, name == null ? null : String.valueOf(name), Boolean.TRUE.equals(isPublic));
+    }
+
+    private void recordEdge(Change.Kind kind, Edge edge, int mask) {
+        record(kind, edge.outVertex().id(), edge.label(), edge.inVertex().id(), mask, null, false);
+    }
+
+    @Override
+    public void vertexAdded(Vertex vertex) {
+        recordVertex(vertex, null, null, false);
+    }
+
+    @Override
+    public void vertexRemoved(Vertex vertex) {
+        record(Change.Kind.VERTEX_REMOVED, vertex.id(), vertex.label(), null, 0, null, false);
+    }
+
+    @Override
+    public void vertexPropertyChanged(Vertex element, VertexProperty oldValue, Object setValue, Object... vertexPropertyKeyValues) {
+        recordVertex(element, oldValue.key(), setValue, false);
+    }
+
+    @Override
+    public void vertexPropertyRemoved(VertexProperty vertexProperty) {
+        recordVertex(vertexProperty.element(), vertexProperty.key(), null, true);
+    }
+
+    @Override
+    public void edgeAdded(Edge edge) {
+        if (EDGE_LABELS.contains(edge.label())) {
+            // the mask given with addE() is set by now; one set later arrives as a property change
+            Edge attached = graph.edges(edge.id()).next();
+            recordEdge(Change.Kind.EDGE_ADDED, attached, PermissionMask.of(attached));
+        }
+    }
+
+    @Override
+    public void edgeRemoved(Edge edge) {
+        if (EDGE_LABELS.contains(edge.label())) {
+            recordEdge(Change.Kind.EDGE_REMOVED, edge, PermissionMask.of(edge));
+        }
+    }
+
+    @Override
+    public void edgePropertyChanged(Edge element, Property oldValue, Object setValue) {
+        if (element.label().equals("HAS_PERMISSION") && oldValue.key().equals(PermissionMask.PROPERTY)) {
+            // a changed mask is the old grant revoked and the new one given
+            recordEdge(Change.Kind.EDGE_REMOVED, element, oldValue.isPresent() ? (Integer) oldValue.value() : 0);
+            recordEdge(Change.Kind.EDGE_ADDED, element, (Integer) setValue);
+        }
+    }
+
+    @Override
+    public void edgePropertyRemoved(Edge element, Property property) {
+        if (element.label().equals("HAS_PERMISSION") && property.key().equals(PermissionMask.PROPERTY)) {
+            recordEdge(Change.Kind.EDGE_REMOVED, element, (Integer) property.value());
+            recordEdge(Change.Kind.EDGE_ADDED, element, 0);
+        }
+    }
+
+    // the batch's changes get consecutive positions
+    @Override
+    public synchronized void batchApplied(AclChangeSet changes) {
+        super.batchApplied(changes);
+    }
+
+    /**
+     * One recorded change. For edges id is the out vertex and inId the in vertex; for vertices label, name and
+     * isPublic are the state after the change.
+     */
+    public static final class Change {
+
+        public enum Kind {
+            EDGE_ADDED,
+            EDGE_REMOVED,
+            VERTEX,
+            VERTEX_REMOVED
+        }
+
+        final long position;
+        final Kind kind;
+        final Object id;
+        final String label;
+        final Object inId;
+        final int mask;
+        final String name;
+        final boolean isPublic;
+
+        Change(long position, Kind kind, Object id, String label, Object inId, int mask, String name, boolean isPublic) {
+            this.position = position;
+            this.kind = kind;
+            this.id = id;
+            this.label = label;
+            this.inId = inId;
+            this.mask = mask;
+            this.name = name;
+            this.isPublic = isPublic;
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        @Override
+        public String toString() {
+            return kind == Kind.VERTEX || kind == Kind.VERTEX_REMOVED
+                    ? String.format("%d %s %s %s %s%s", position, kind, label, id, name, isPublic ? " public" : "")
+                    : String.format("%d %s %s -%s-> %s mask=%d", position, kind, id, label, inId, mask);
+        }
+    }
+}
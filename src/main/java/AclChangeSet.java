@@ -0,0 +1,86 @@
+import java.util.Collections;
+import java.util.List;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.VertexProperty;
+
+/**
+ * What an AclBatchWriter changed for one batch, handed to every listener as a single event once the batch is applied.
+ * Added edges are those of the graph; removed edges are detached copies with their properties, taken before removal.
+ */
+public class AclChangeSet {
+
+    private final List<Edge> addedEdges;
+    private final List<Edge> removedEdges;
+    private final List<PropertyChange> propertyChanges;
+    private final int requested;
+    private final int skipped;
+
+    AclChangeSet(List<Edge> addedEdges, List<Edge> removedEdges, List<PropertyChange> propertyChanges, int requested, int skipped) {
+        this.addedEdges = Collections.unmodifiableList(addedEdges);
+        this.removedEdges = Collections.unmodifiableList(removedEdges);
+        this.propertyChanges = Collections.unmodifiableList(propertyChanges);
+        this.requested = requested;
+        this.skipped = skipped;
+    }
+
+    public List<Edge> getAddedEdges() {
+        return addedEdges;
+    }
+
+    public List<Edge> getRemovedEdges() {
+        return removedEdges;
+    }
+
+    public List<PropertyChange> getPropertyChanges() {
+        return propertyChanges;
+    }
+
+    // operations added to the batch, including those coalesced away
+    public int getRequested() {
+        return requested;
+    }
+
+    // coalesced operations that found the graph already in the requested state
+    public int getSkipped() {
+        return skipped;
+    }
+
+    public boolean isEmpty() {
+        return addedEdges.isEmpty() && removedEdges.isEmpty() && propertyChanges.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d edges added, %d removed, %d properties changed for %d operations (%d already in place)",
+                addedEdges.size(), removedEdges.size(), propertyChanges.size(), requested, skipped);
+    }
+
+    /**
+     * A vertex property set by the batch, with the property as it was before (not present if it was not set).
+     */
+    public static final class PropertyChange {
+
+        private final Vertex vertex;
+        private final VertexProperty<?> oldValue;
+        private final Object value;
+
+        PropertyChange(Vertex vertex, VertexProperty<?> oldValue, Object value) {
+            this.vertex = vertex;
+            this.oldValue = oldValue;
+            this.value = value;
+        }
+
+        public Vertex getVertex() {
+            return vertex;
+        }
+
+        public VertexProperty<?> getOldValue() {
+            return oldValue;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+    }
+}
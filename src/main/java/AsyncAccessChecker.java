@@ -0,0 +1,174 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+
+/**
+ * Non-blocking access checks on top of a PermissionTraverser, coalescing work that is in flight at the same time.
+ *
+ * Concurrent checks for the same user share one user lookup and group expansion, and identical (resource, user,
+ * permission) checks share one evaluation. Nothing is kept once the last of them completes, so unlike
+ * AccessDecisionCache there is nothing to invalidate.
+ */
+public class AsyncAccessChecker implements AutoCloseable {
+
+    private final Graph graph;
+    private final PermissionTraverser traverser;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+
+    private final Map<CheckKey, CompletableFuture<Boolean>> inFlightChecks = new ConcurrentHashMap<>();
+    // guarded by itself
+    private final Map<String, PendingUser> inFlightUsers = new HashMap<>();
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder userResolutions = new LongAdder();
+
+    /**
+     * Runs checks on virtual threads where the runtime has them (Java 21+), otherwise on one thread per core.
+     */
+    public AsyncAccessChecker(Graph graph, PermissionTraverser traverser) {
+        this.graph = graph;
+        this.traverser = traverser;
+        this.ownedExecutor = defaultExecutor();
+        this.executor = ownedExecutor;
+    }
+
+    public AsyncAccessChecker(Graph graph, PermissionTraverser traverser, Executor executor) {
+        this.graph = graph;
+        this.traverser = traverser;
+        this.executor = executor;
+        this.ownedExecutor = null;
+    }
+
+    private static ExecutorService defaultExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException x) {
+            // checks against an in-memory graph are CPU bound, so more platform threads than cores would not help
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "access-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public CompletableFuture<Boolean> hasAccess(String resourceId, String userId, String permission) {
+        checks.increment();
+        CheckKey key = new CheckKey(resourceId, userId, permission);
+        CompletableFuture<Boolean> created = new CompletableFuture<>();
+        CompletableFuture<Boolean> shared = inFlightChecks.putIfAbsent(key, created);
+        if (shared != null) {
+            // a copy, so that one caller cancelling does not cancel the others
+            return shared.copy();
+        }
+        acquireUser(userId)
+                .thenApplyAsync(user -> evaluate(resourceId, user, permission), executor)
+                .whenComplete((allowed, error) -> {
+                    inFlightChecks.remove(key, created);
+                    releaseUser(userId);
+                    if (error != null) {
+                        created.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                    } else {
+                        created.complete(allowed);
+                    }
+                });
+        return created.copy();
+    }
+
+    private boolean evaluate(String resourceId, PermissionTraverser.ResolvedUser user, String permission) {
+        evaluations.increment();
+        return traverser.canAccess(graph, resourceId, user, permission);
+    }
+
+    private CompletableFuture<PermissionTraverser.ResolvedUser> acquireUser(String userId) {
+        synchronized (inFlightUsers) {
+            PendingUser pending = inFlightUsers.get(userId);
+            if (pending == null) {
+                userResolutions.increment();
+                pending = new PendingUser(CompletableFuture.supplyAsync(() -> traverser.resolveUser(graph, userId), executor));
+                inFlightUsers.put(userId, pending);
+            }
+            pending.checks++;
+            return pending.user;
+        }
+    }
+
+    private void releaseUser(String userId) {
+        synchronized (inFlightUsers) {
+            PendingUser pending = inFlightUsers.get(userId);
+            if (pending != null && --pending.checks == 0) {
+                inFlightUsers.remove(userId);
+            }
+        }
+    }
+
+    // checks requested, including the ones answered by another in-flight evaluation
+    public long getChecks() {
+        return checks.sum();
+    }
+
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    public long getUserResolutions() {
+        return userResolutions.sum();
+    }
+
+    @Override
+    public void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private static final class PendingUser {
+
+        final CompletableFuture<PermissionTraverser.ResolvedUser> user;
+        int checks;
+
+        PendingUser(CompletableFuture<PermissionTraverser.ResolvedUser> user) {
+            this.user = user;
+        }
+    }
+
+    private static final class CheckKey {
+
+        final String resourceId;
+        final String userId;
+        final String permission;
+
+        CheckKey(String resourceId, String userId, String permission) {
+            this.resourceId = resourceId;
+            this.userId = userId;
+            this.permission = permission;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CheckKey)) {
+                return false;
+            }
+            CheckKey other = (CheckKey) o;
+            return resourceId.equals(other.resourceId) && userId.equals(other.userId) && permission.equals(other.permission);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(resourceId, userId, permission);
+        }
+    }
+}
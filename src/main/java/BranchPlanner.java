@@ -0,0 +1,142 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cost-based ordering of the branches of the access rule, learned at runtime.
+ *
+ * A PermissionTraverser with a planner evaluates every sampleEvery-th check exhaustively, trying each branch and the
+ * IN_FOLDER ascent even after one of them matched, and feeds the report here. From those samples the planner keeps
+ * per-branch hit rates and mean costs, and orders the or() so that the branch with the lowest expected cost per grant
+ * comes first; for containers it likewise decides whether to try the resource's own rule or the ascent first. Since
+ * the branches are side-effect free, any order gives the same answers.
+ *
+ * Also usable as the traverser's AccessMetrics, so that explicit checkAccess calls feed it as well.
+ */
+public class BranchPlanner implements AccessMetrics {
+
+    static final List<AccessCheckReport.Branch> RULE_BRANCHES = Collections.unmodifiableList(Arrays.asList(
+            AccessCheckReport.Branch.PUBLIC, AccessCheckReport.Branch.OWNER, AccessCheckReport.Branch.USER_GRANT,
+            AccessCheckReport.Branch.GROUP_GRANT));
+
+    private final int sampleEvery;
+    private final int minSamples;
+    private final AtomicLong checks = new AtomicLong();
+
+    private final long[] evaluations = new long[AccessCheckReport.Branch.values().length];
+    private final long[] hits = new long[evaluations.length];
+    private final long[] nanos = new long[evaluations.length];
+    private long samples;
+    private long containerChecks;
+    private long directHits;
+    private long ruleNanos;
+    private long ascents;
+    private long inheritedHits;
+    private long ascentNanos;
+
+    private volatile List<AccessCheckReport.Branch> ruleOrder = RULE_BRANCHES;
+    private volatile boolean ascentFirst;
+
+    public BranchPlanner() {
+        this(100, 20);
+    }
+
+    /**
+     * @param sampleEvery evaluate one check in this many exhaustively to learn from it
+     * @param minSamples samples to collect before moving away from the default order
+     */
+    public BranchPlanner(int sampleEvery, int minSamples) {
+        this.sampleEvery = sampleEvery;
+        this.minSamples = minSamples;
+    }
+
+    boolean shouldSample() {
+        return checks.getAndIncrement() % sampleEvery == 0;
+    }
+
+    @Override
+    public synchronized void record(AccessCheckReport report) {
+        for (AccessCheckReport.Branch branch : RULE_BRANCHES) {
+            AccessCheckReport.BranchStats stats = report.getBranch(branch);
+            evaluations[branch.ordinal()] += stats.evaluations;
+            hits[branch.ordinal()] += stats.hits;
+            nanos[branch.ordinal()] += stats.nanos;
+        }
+        if (report.container) {
+            containerChecks++;
+            ruleNanos += report.ruleNanos;
+            if (report.directMatch) {
+                directHits++;
+            }
+            if (report.ascended) {
+                ascents++;
+                ascentNanos += report.ascentNanos;
+                if (report.inheritedMatch) {
+                    inheritedHits++;
+                }
+            }
+        }
+        if (++samples >= minSamples) {
+            replan();
+        }
+    }
+
+    private void replan() {
+        List<AccessCheckReport.Branch> order = new ArrayList<>(RULE_BRANCHES);
+        // stable, so branches without samples keep their default relative order
+        order.sort(Comparator.comparingDouble(this::costPerHit));
+        ruleOrder = Collections.unmodifiableList(order);
+
+        if (containerChecks > 0 && ascents > 0) {
+            // expected cost of trying one side first and the other only when the first fails
+            double direct = (double) ruleNanos / containerChecks;
+            double ascent = (double) ascentNanos / ascents;
+            double directRate = hitRate(directHits, containerChecks);
+            double inheritedRate = hitRate(inheritedHits, ascents);
+            ascentFirst = ascent + (1 - inheritedRate) * direct < direct + (1 - directRate) * ascent;
+        }
+    }
+
+    private double costPerHit(AccessCheckReport.Branch branch) {
+        long n = evaluations[branch.ordinal()];
+        if (n == 0) {
+            return Double.MAX_VALUE;
+        }
+        return (double) nanos[branch.ordinal()] / n / hitRate(hits[branch.ordinal()], n);
+    }
+
+    private static double hitRate(long hits, long evaluations) {
+        // smoothed, so that a branch that never matched so far still has a finite cost
+        return (hits + 1.0) / (evaluations + 2.0);
+    }
+
+    // order in which the or() of resourcePermissionedToUserTraversal tries its branches
+    public List<AccessCheckReport.Branch> getRuleOrder() {
+        return ruleOrder;
+    }
+
+    // whether containers try the inherited grants before their own
+    public boolean isAscentFirst() {
+        return ascentFirst;
+    }
+
+    public synchronized long getSamples() {
+        return samples;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder summary = new StringBuilder(String.format("%d samples, order %s, %s first", samples, ruleOrder,
+                ascentFirst ? "ascent" : "resource"));
+        for (AccessCheckReport.Branch branch : RULE_BRANCHES) {
+            long n = evaluations[branch.ordinal()];
+            summary.append(String.format("%n  %-11s evaluations=%d hits=%d mean=%dus", branch, n, hits[branch.ordinal()],
+                    n == 0 ? 0 : nanos[branch.ordinal()] / n / 1000));
+        }
+        summary.append(String.format("%n  containers  checks=%d own hits=%d inherited hits=%d", containerChecks, directHits, inheritedHits));
+        return summary.toString();
+    }
+}
@@ -0,0 +1,87 @@
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+
+/**
+ * Streams vertices and edges into a graph store in batches, for generated ACL scenarios as well as production imports.
+ *
+ * addVertex hands back a vertex to pass to addEdge: the stored vertex where the store is a TinkerPop graph, otherwise
+ * a detached copy carrying its id, label and properties, so that callers do not have to keep the store's own element
+ * objects alive. Writes are committed every batchSize elements and on flush(); the counters report the load rate.
+ */
+public abstract class BulkLoader implements AutoCloseable {
+
+    public static final int DEFAULT_BATCH_SIZE = 10000;
+
+    private final int batchSize;
+    private final long start = System.nanoTime();
+    private long vertices;
+    private long edges;
+    private long uncommitted;
+
+    protected BulkLoader(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Vertex addVertex(String label, Object... keyValues) {
+        Vertex vertex = writeVertex(label, keyValues);
+        vertices++;
+        written();
+        return vertex;
+    }
+
+    public void addEdge(Vertex out, String label, Vertex in, Object... keyValues) {
+        writeEdge(out, label, in, keyValues);
+        edges++;
+        written();
+    }
+
+    public void property(Vertex vertex, String key, Object value) {
+        writeProperty(vertex, key, value);
+        written();
+    }
+
+    /**
+     * Commits everything written so far and makes it fully queryable.
+     */
+    public void flush() {
+        commit();
+        uncommitted = 0;
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    public long getVertexCount() {
+        return vertices;
+    }
+
+    public long getEdgeCount() {
+        return edges;
+    }
+
+    public double getElementsPerSecond() {
+        return (vertices + edges) / ((System.nanoTime() - start) / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d vertices and %d edges in %.0f ms (%.0f elements/s)", vertices, edges,
+                (System.nanoTime() - start) / 1e6, getElementsPerSecond());
+    }
+
+    private void written() {
+        if (++uncommitted >= batchSize) {
+            commit();
+            uncommitted = 0;
+        }
+    }
+
+    protected abstract Vertex writeVertex(String label, Object... keyValues);
+
+    protected abstract void writeEdge(Vertex out, String label, Vertex in, Object... keyValues);
+
+    protected abstract void writeProperty(Vertex vertex, String key, Object value);
+
+    protected abstract void commit();
+}
@@ -0,0 +1,292 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+
+/**
+ * Read-optimized, precompiled form of the ACL inheritance rule.
+ *
+ * For every Folder and Term and every permission level it stores the nearest ancestor-or-self that carries an explicit
+ * HAS_PERMISSION edge for that level (where containerHierarchyHasPermission would stop ascending), and for every vertex
+ * with ACL data its effective grantees per level, its owners and its public flag. A check is then a lookup plus a
+ * membership test against the user's principals.
+ *
+ * Snapshots are immutable: compile a new one in the background when ACLs change and swap it in.
+ */
+public class CompiledAclSnapshot {
+
+    static final List<String> PERMISSIONS = PermissionMask.LEVELS;
+
+    private static final int[] NONE = new int[0];
+    private static final Object[] NOBODY = new Object[0];
+
+    private final Map<Object, Integer> ordinals = new HashMap<>();
+    private final List<Object> ids = new ArrayList<>();
+    private final boolean[] containers;
+    // [permission][ordinal] -> principal ids holding at least that permission
+    private final Object[][][] grantees;
+    private final Object[][] owners;
+    private final BitSet publicResources = new BitSet();
+    // [permission][ordinal] -> ordinals of the nearest containers with an explicit grant of exactly that permission
+    private final int[][][] aclContainers;
+
+    private CompiledAclSnapshot(Graph g) {
+        Map<Integer, List<List<Object>>> grants = new HashMap<>();
+        Map<Integer, BitSet> explicit = new HashMap<>();
+        Map<Integer, List<Object>> ownersByResource = new HashMap<>();
+        Map<Integer, List<Integer>> parents = new HashMap<>();
+
+        g.traversal().V().hasLabel("Folder", "Term").id().forEachRemaining(this::ordinal);
+        int numContainers = ids.size();
+
+        g.traversal().E().hasLabel("HAS_PERMISSION").forEachRemaining(e -> {
+            int resource = ordinal(e.inVertex().id());
+            int mask = PermissionMask.of(e);
+            List<List<Object>> resourceGrants = grants.computeIfAbsent(resource, r -> newGrantLists());
+            for (int level = 0; level < PERMISSIONS.size(); level++) {
+                if (PermissionMask.implies(mask, PERMISSIONS.get(level))) {
+                    resourceGrants.get(level).add(e.outVertex().id());
+                }
+                if (mask == PermissionMask.impliedMask(PERMISSIONS.get(level))) {
+                    explicit.computeIfAbsent(level, l -> new BitSet()).set(resource);
+                }
+            }
+        });
+        g.traversal().E().hasLabel("OWNED_BY").forEachRemaining(e ->
+                ownersByResource.computeIfAbsent(ordinal(e.outVertex().id()), r -> new ArrayList<>()).add(e.inVertex().id()));
+        g.traversal().V().has("public", true).id().forEachRemaining(id -> publicResources.set(ordinal(id)));
+        g.traversal().E().hasLabel("IN_FOLDER").forEachRemaining(e -> {
+            Integer child = ordinals.get(e.outVertex().id());
+            Integer parent = ordinals.get(e.inVertex().id());
+            if (child != null && parent != null && child < numContainers && parent < numContainers) {
+                parents.computeIfAbsent(child, c -> new ArrayList<>()).add(parent);
+            }
+        });
+
+        containers = new boolean[ids.size()];
+        Arrays.fill(containers, 0, numContainers, true);
+        grantees = new Object[PERMISSIONS.size()][ids.size()][];
+        owners = new Object[ids.size()][];
+        for (int resource = 0; resource < ids.size(); resource++) {
+            List<List<Object>> resourceGrants = grants.get(resource);
+            for (int level = 0; level < PERMISSIONS.size(); level++) {
+                grantees[level][resource] = resourceGrants == null || resourceGrants.get(level).isEmpty() ? NOBODY : resourceGrants.get(level).toArray();
+            }
+            List<Object> resourceOwners = ownersByResource.get(resource);
+            owners[resource] = resourceOwners == null ? NOBODY : resourceOwners.toArray();
+        }
+
+        aclContainers = new int[PERMISSIONS.size()][numContainers][];
+        for (int level = 0; level < PERMISSIONS.size(); level++) {
+            AclContainerResolver resolver = new AclContainerResolver(level, explicit.getOrDefault(level, new BitSet()), parents, numContainers);
+            for (int container = 0; container < numContainers; container++) {
+                resolver.resolve(container);
+            }
+        }
+    }
+
+    public static CompiledAclSnapshot compile(Graph g) {
+        return new CompiledAclSnapshot(g);
+    }
+
+    /**
+     * @param principalIds the user's own id plus the ids of all groups it belongs to, directly or through supergroups
+     */
+    public boolean hasAccess(Object resourceVertexId, Object userVertexId, Set<Object> principalIds, String permission) {
+        Integer resource = ordinals.get(resourceVertexId);
+        int level = PERMISSIONS.indexOf(permission);
+        if (resource == null || level < 0) {
+            return false;
+        }
+        if (ruleMatches(resource, level, userVertexId, principalIds)) {
+            return true;
+        }
+        if (!containers[resource]) {
+            return false;
+        }
+        for (int container : aclContainers[level][resource]) {
+            if (ruleMatches(container, level, userVertexId, principalIds)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    // raw access for AccessAudit, which evaluates all users at once instead of one check at a time
+
+    Object id(int ordinal) {
+        return ids.get(ordinal);
+    }
+
+    Integer ordinalOf(Object vertexId) {
+        return ordinals.get(vertexId);
+    }
+
+    boolean isContainer(int ordinal) {
+        return containers[ordinal];
+    }
+
+    /**
+     * @return the ordinals whose rule decides access to the given one at that level: itself and, for containers, its
+     * ACL containers
+     */
+    int[] ruleSources(int ordinal, int level) {
+        int[] stops = containers[ordinal] ? aclContainers[level][ordinal] : NONE;
+        if (stops.length == 0 || stops[0] == ordinal) {
+            // a container with an explicit grant is its own only stop
+            return new int[]{ordinal};
+        }
+        int[] sources = new int[stops.length + 1];
+        sources[0] = ordinal;
+        System.arraycopy(stops, 0, sources, 1, stops.length);
+        return sources;
+    }
+
+    Object[] grantees(int ordinal, int level) {
+        return grantees[level][ordinal];
+    }
+
+    Object[] owners(int ordinal) {
+        return owners[ordinal];
+    }
+
+    boolean isPublic(int ordinal) {
+        return publicResources.get(ordinal);
+    }
+
+    private boolean ruleMatches(int resource, int level, Object userVertexId, Set<Object> principalIds) {
+        // only consider public access if the request is for read
+        if (level == 0 && publicResources.get(resource)) {
+            return true;
+        }
+        for (Object owner : owners[resource]) {
+            if (owner.equals(userVertexId)) {
+                return true;
+            }
+        }
+        for (Object grantee : grantees[level][resource]) {
+            if (principalIds.contains(grantee)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Resolves the ACL containers of one level depth first, with Tarjan's strongly connected components: the containers
+     * of an IN_FOLDER cycle reach the same ancestors, so each cycle is resolved as one unit once all of it is known,
+     * rather than from the partial answer of whichever member was entered first.
+     */
+    private final class AclContainerResolver {
+
+        private final int level;
+        private final BitSet explicitAtLevel;
+        private final Map<Integer, List<Integer>> parents;
+        // visit order, 1-based so that 0 means not visited, and the lowest one reachable on the stack
+        private final int[] index;
+        private final int[] low;
+        private final BitSet onStack = new BitSet();
+        private final ArrayDeque<Integer> stack = new ArrayDeque<>();
+        private int visited;
+
+        AclContainerResolver(int level, BitSet explicitAtLevel, Map<Integer, List<Integer>> parents, int numContainers) {
+            this.level = level;
+            this.explicitAtLevel = explicitAtLevel;
+            this.parents = parents;
+            this.index = new int[numContainers];
+            this.low = new int[numContainers];
+        }
+
+        int[] resolve(int container) {
+            int[] resolved = aclContainers[level][container];
+            if (resolved != null) {
+                return resolved;
+            }
+            if (explicitAtLevel.get(container)) {
+                resolved = new int[]{container};
+                aclContainers[level][container] = resolved;
+                return resolved;
+            }
+            index[container] = low[container] = ++visited;
+            stack.push(container);
+            onStack.set(container);
+            for (int parent : parents.getOrDefault(container, Collections.emptyList())) {
+                if (aclContainers[level][parent] != null || explicitAtLevel.get(parent)) {
+                    continue;
+                }
+                if (index[parent] == 0) {
+                    resolve(parent);
+                    low[container] = Math.min(low[container], low[parent]);
+                } else if (onStack.get(parent)) {
+                    low[container] = Math.min(low[container], index[parent]);
+                }
+            }
+            if (low[container] == index[container]) {
+                resolveComponent(container);
+            }
+            // null while the container is part of a cycle that is still being resolved
+            return aclContainers[level][container];
+        }
+
+        private void resolveComponent(int root) {
+            // the component is the stack down to its root; parents still on the stack are part of it
+            List<Integer> component = new ArrayList<>();
+            for (Integer member : stack) {
+                component.add(member);
+                if (member == root) {
+                    break;
+                }
+            }
+            int[] resolved = NONE;
+            for (int member : component) {
+                for (int parent : parents.getOrDefault(member, Collections.emptyList())) {
+                    if (!onStack.get(parent)) {
+                        int[] inherited = resolve(parent);
+                        // single-parent chains share the ancestor's array instead of copying it
+                        resolved = resolved.length == 0 ? inherited : union(resolved, inherited);
+                    }
+                }
+            }
+            for (int member : component) {
+                stack.pop();
+                onStack.clear(member);
+                aclContainers[level][member] = resolved;
+            }
+        }
+    }
+
+    private static List<List<Object>> newGrantLists() {
+        List<List<Object>> lists = new ArrayList<>(PERMISSIONS.size());
+        for (int level = 0; level < PERMISSIONS.size(); level++) {
+            lists.add(new ArrayList<>());
+        }
+        return lists;
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        if (a == b) {
+            return a;
+        }
+        return Arrays.stream(new int[][]{a, b}).flatMapToInt(Arrays::stream).distinct().sorted().toArray();
+    }
+
+    private int ordinal(Object vertexId) {
+        Integer ordinal = ordinals.get(vertexId);
+        if (ordinal == null) {
+            ordinal = ids.size();
+            ordinals.put(vertexId, ordinal);
+            ids.add(vertexId);
+        }
+        return ordinal;
+    }
+}
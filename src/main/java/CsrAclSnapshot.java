@@ -0,0 +1,1167 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+import java.util.function.ObjIntConsumer;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+
+/**
+ * Read-only copy of the ACL subgraph in compressed sparse row arrays, evaluated without Gremlin.
+ *
+ * User, Group, Folder and Term vertices (and any other endpoint of an ACL edge) get int ordinals, and each relation the
+ * rule follows is a CSR pair: offsets[v]..offsets[v + 1] index the targets of v. HAS_PERMISSION keeps the grant masks
+ * alongside its targets. An Evaluator then applies the same rule as PermissionTraverser: the user's principals are
+ * marked by walking up once, and each rule check is a scan over a handful of ints.
+ *
+ * Snapshots are immutable and can be shared; evaluators hold the scratch state of one thread and allocate nothing per
+ * check. Export a new snapshot when ACLs change and swap it in.
+ *
+ * The reverse question, who can access a resource, is answered from the same rule sources: the users of every granted
+ * group are kept as a compressed OrdinalBitmap, built on first use, and the bitmaps of all groups reached downward from
+ * the grantees are unioned, so a user in several of them is counted once and no user vertex is read.
+ *
+ * A snapshot can be written to a file and mapped by a new process, which answers checks from the page cache without
+ * loading the graph: the arrays, ids and names stay in the file, and only evaluator marks and member bitmaps are kept
+ * on the heap. The file records the AclChangeLog position it reflects, and apply() replays the changes after it.
+ */
+public class CsrAclSnapshot {
+
+    static final byte USER = 0;
+    static final byte GROUP = 1;
+    static final byte FOLDER = 2;
+    static final byte TERM = 3;
+    static final byte OTHER = 4;
+    // flags hold the label in the low bits and this bit for public vertices
+    private static final byte LABEL = 7;
+    private static final byte PUBLIC = 8;
+
+    // "ACLS", followed by the format version so that an older or newer file is refused rather than misread
+    private static final int MAGIC = 0x41434c53;
+    static final int FORMAT_VERSION = 1;
+
+    private static final int[] NONE = new int[0];
+
+    private final long changePosition;
+    private final Directory directory;
+    private final ByteBuffer flags;
+
+    // resource -> principals holding a grant on it, with the grant's mask at the same index
+    private final Csr grants;
+    // container -> IN_FOLDER parents
+    private final Csr parents;
+    // resource -> OWNED_BY owners
+    private final Csr owners;
+    // principal -> groups it is a MEMBER_OF, and group -> supergroups
+    private final Csr groups;
+    // the reverse, group -> members and subgroups
+    private final Csr members;
+    private final OrdinalBitmap users = new OrdinalBitmap();
+    // group -> its direct members, split into users and groups still to be walked
+    private final Map<Integer, Members> groupMembers = new ConcurrentHashMap<>();
+
+    private CsrAclSnapshot(long changePosition, Directory directory, ByteBuffer flags, Csr grants, Csr parents, Csr owners, Csr groups,
+            Csr members) {
+        this.changePosition = changePosition;
+        this.directory = directory;
+        this.flags = flags;
+        this.grants = grants;
+        this.parents = parents;
+        this.owners = owners;
+        this.groups = groups;
+        this.members = members;
+        for (int ordinal = 0; ordinal < directory.size(); ordinal++) {
+            if (label(ordinal) == USER) {
+                users.add(ordinal);
+            }
+        }
+    }
+
+    public static CsrAclSnapshot export(Graph g) {
+        return export(g, 0);
+    }
+
+    // changePosition is the AclChangeLog position the graph reflects, for replaying later changes
+    public static CsrAclSnapshot export(Graph g, long changePosition) {
+        Map<Object, Integer> ordinals = new HashMap<>();
+        IntList edges = new IntList(4096);
+        g.traversal().V().hasLabel("User", "Group", "Folder", "Term").forEachRemaining(v -> ordinals.putIfAbsent(v.id(), ordinals.size()));
+        // endpoints of other labels, e.g. resources that are not containers, are added as their edges are read
+        g.traversal().E().hasLabel("HAS_PERMISSION", "IN_FOLDER", "OWNED_BY", "MEMBER_OF", "HAS_SUPERGROUP").forEachRemaining(e -> {
+            int out = ordinals.computeIfAbsent(e.outVertex().id(), id -> ordinals.size());
+            int in = ordinals.computeIfAbsent(e.inVertex().id(), id -> ordinals.size());
+            edges.add(relation(e.label()));
+            edges.add(out);
+            edges.add(in);
+            edges.add(e.label().equals("HAS_PERMISSION") ? PermissionMask.of(e) : 0);
+        });
+
+        int size = ordinals.size();
+        Object[] ids = new Object[size];
+        ordinals.forEach((id, ordinal) -> ids[ordinal] = id);
+        byte[] flags = new byte[size];
+        Map<String, int[]> names = new HashMap<>();
+        Object[] batch = new Object[1024];
+        for (int start = 0; start < size; start += batch.length) {
+            int count = Math.min(batch.length, size - start);
+            System.arraycopy(ids, start, batch, 0, count);
+            g.vertices(Arrays.copyOf(batch, count)).forEachRemaining(v -> {
+                int ordinal = ordinals.get(v.id());
+                flags[ordinal] = flags(label(v.label()), v.<Boolean>property("public").orElse(false));
+                v.<String>property("name").ifPresent(name -> names.merge(name, new int[]{ordinal}, CsrAclSnapshot::concat));
+            });
+        }
+        return build(changePosition, new HeapDirectory(ids, ordinals, names), flags, edges);
+    }
+
+    private static CsrAclSnapshot build(long changePosition, Directory directory, byte[] flags, IntList edges) {
+        int size = flags.length;
+        return new CsrAclSnapshot(changePosition, directory, ByteBuffer.wrap(flags),
+                // HAS_PERMISSION is read from the resource back to the principal
+                Csr.of(size, edges, 0, true, true),
+                Csr.of(size, edges, 1, false, false),
+                Csr.of(size, edges, 2, false, false),
+                Csr.of(size, edges, 3, false, false),
+                Csr.of(size, edges, 3, true, false));
+    }
+
+    private static int relation(String label) {
+        switch (label) {
+            case "HAS_PERMISSION":
+                return 0;
+            case "IN_FOLDER":
+                return 1;
+            case "OWNED_BY":
+                return 2;
+            default:
+                // MEMBER_OF and HAS_SUPERGROUP are walked alike
+                return 3;
+        }
+    }
+
+    private static byte label(String label) {
+        switch (label) {
+            case "User":
+                return USER;
+            case "Group":
+                return GROUP;
+            case "Folder":
+                return FOLDER;
+            case "Term":
+                return TERM;
+            default:
+                return OTHER;
+        }
+    }
+
+    private static byte flags(byte label, boolean isPublic) {
+        return isPublic ? (byte) (label | PUBLIC) : label;
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        int[] both = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, both, a.length, b.length);
+        return both;
+    }
+
+    /**
+     * Writes the snapshot to a file next to the given one and moves it into place, so that a process mapping the
+     * file sees either the old snapshot or the complete new one.
+     */
+    public void write(Path file) throws IOException {
+        StringTable ids = StringTable.of(size(), ordinal -> String.valueOf(id(ordinal)), ordinal -> ordinal);
+        List<String> nameList = new ArrayList<>();
+        IntList nameOrdinals = new IntList(1024);
+        directory.forEachName((name, ordinal) -> {
+            nameList.add(name);
+            nameOrdinals.add(ordinal);
+        });
+        StringTable names = StringTable.of(nameList.size(), nameList::get, entry -> nameOrdinals.values[entry]);
+        Csr[] relations = {grants, parents, owners, groups, members};
+
+        long length = 24 + bytesLength(flags.capacity()) + ids.length() + names.length();
+        for (Csr relation : relations) {
+            length += relation.length();
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("ACL snapshot of " + length + " bytes is too large to map");
+        }
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            out.order(ByteOrder.LITTLE_ENDIAN);
+            out.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(changePosition).putInt(size()).putInt(directory.numericIds() ? 1 : 0);
+            putBytes(out, flags);
+            for (Csr relation : relations) {
+                relation.write(out);
+            }
+            ids.write(out);
+            names.write(out);
+            out.force();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps a written snapshot; its pages are only read as checks touch them.
+     *
+     * @throws IOException when the file is not a snapshot or was written in another format version
+     */
+    public static CsrAclSnapshot map(Path file) throws IOException {
+        MappedByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        in.order(ByteOrder.LITTLE_ENDIAN);
+        if (in.remaining() < 24 || in.getInt() != MAGIC) {
+            throw new IOException("Not an ACL snapshot: " + file);
+        }
+        int version = in.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("ACL snapshot " + file + " has format version " + version + ", expected " + FORMAT_VERSION);
+        }
+        long changePosition = in.getLong();
+        int size = in.getInt();
+        boolean numericIds = in.getInt() != 0;
+        ByteBuffer flags = getBytes(in);
+        Csr grants = Csr.read(in);
+        Csr parents = Csr.read(in);
+        Csr owners = Csr.read(in);
+        Csr groups = Csr.read(in);
+        Csr members = Csr.read(in);
+        Directory directory = new MappedDirectory(size, numericIds, StringTable.read(in), StringTable.read(in));
+        return new CsrAclSnapshot(changePosition, directory, flags, grants, parents, owners, groups, members);
+    }
+
+    // byte sections are padded to whole ints, so that the int arrays after them stay aligned
+    private static long bytesLength(int bytes) {
+        return 4 + (bytes + 3L) / 4 * 4;
+    }
+
+    private static void putBytes(ByteBuffer out, ByteBuffer bytes) {
+        out.putInt(bytes.capacity());
+        for (int i = 0; i < bytes.capacity(); i++) {
+            out.put(bytes.get(i));
+        }
+        out.position(out.position() + (4 - bytes.capacity() % 4) % 4);
+    }
+
+    private static ByteBuffer getBytes(ByteBuffer in) {
+        int length = in.getInt();
+        ByteBuffer bytes = in.slice();
+        bytes.limit(length);
+        in.position(in.position() + (length + 3) / 4 * 4);
+        return bytes.slice();
+    }
+
+    private static void putInts(ByteBuffer out, IntBuffer ints) {
+        out.putInt(ints.limit());
+        for (int i = 0; i < ints.limit(); i++) {
+            out.putInt(ints.get(i));
+        }
+    }
+
+    private static IntBuffer getInts(ByteBuffer in) {
+        int length = in.getInt();
+        ByteBuffer bytes = in.slice().order(ByteOrder.LITTLE_ENDIAN);
+        bytes.limit(length * 4);
+        in.position(in.position() + length * 4);
+        return bytes.asIntBuffer();
+    }
+
+    /**
+     * A new snapshot with the changes after this one's position applied, answering as an export taken after them
+     * would. Removed vertices keep their ordinal, but lose their name, label and edges.
+     */
+    public CsrAclSnapshot apply(Collection<AclChangeLog.Change> changes) {
+        int size = size();
+        // vertices already in the snapshot are resolved by the directory they came with, which for a mapped snapshot
+        // matches ids by their string form; only vertices new to it get an ordinal here
+        Directory base = directory instanceof AppendedDirectory ? ((AppendedDirectory) directory).base : directory;
+        List<Object> ids = new ArrayList<>();
+        Map<Object, Integer> ordinals = new HashMap<>();
+        if (directory instanceof AppendedDirectory) {
+            ids.addAll(((AppendedDirectory) directory).ids);
+            ordinals.putAll(((AppendedDirectory) directory).ordinals);
+        }
+        List<String> names = new ArrayList<>(Arrays.asList(new String[size]));
+        directory.forEachName((name, ordinal) -> names.set(ordinal, name));
+        ByteList newFlags = new ByteList(size);
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            newFlags.add(flags.get(ordinal));
+        }
+        BitSet removed = new BitSet();
+        // edge -> copies added, negative when copies in this snapshot were removed
+        Map<EdgeKey, int[]> edgeChanges = new HashMap<>();
+
+        long position = changePosition;
+        for (AclChangeLog.Change change : changes) {
+            if (change.position <= changePosition) {
+                continue;
+            }
+            position = Math.max(position, change.position);
+            int ordinal = ordinal(change.id, base, ids, ordinals, names, newFlags);
+            switch (change.kind) {
+                case VERTEX:
+                    newFlags.values[ordinal] = flags(label(change.label), change.isPublic);
+                    names.set(ordinal, change.name);
+                    break;
+                case VERTEX_REMOVED:
+                    newFlags.values[ordinal] = OTHER;
+                    names.set(ordinal, null);
+                    removed.set(ordinal);
+                    break;
+                default:
+                    int in = ordinal(change.inId, base, ids, ordinals, names, newFlags);
+                    int mask = change.label.equals("HAS_PERMISSION") ? change.mask : 0;
+                    int[] net = edgeChanges.computeIfAbsent(new EdgeKey(relation(change.label), ordinal, in, mask), key -> new int[1]);
+                    net[0] += change.kind == AclChangeLog.Change.Kind.EDGE_ADDED ? 1 : -1;
+                    break;
+            }
+        }
+
+        IntList edges = new IntList(4096);
+        forEachEdge((relation, out, in, mask) -> {
+            int[] net = edgeChanges.get(new EdgeKey(relation, out, in, mask));
+            if (net != null && net[0] < 0) {
+                net[0]++;
+            } else {
+                addEdge(edges, removed, relation, out, in, mask);
+            }
+        });
+        edgeChanges.forEach((key, net) -> {
+            for (int copy = 0; copy < net[0]; copy++) {
+                addEdge(edges, removed, key.relation, key.out, key.in, key.mask);
+            }
+        });
+
+        Map<String, int[]> nameIndex = new HashMap<>();
+        for (int ordinal = 0; ordinal < names.size(); ordinal++) {
+            if (names.get(ordinal) != null) {
+                nameIndex.merge(names.get(ordinal), new int[]{ordinal}, CsrAclSnapshot::concat);
+            }
+        }
+        return build(position, new AppendedDirectory(base, ids, ordinals, nameIndex), Arrays.copyOf(newFlags.values, newFlags.size), edges);
+    }
+
+    private static int ordinal(Object id, Directory base, List<Object> ids, Map<Object, Integer> ordinals, List<String> names, ByteList flags) {
+        int existing = base.ordinal(id);
+        if (existing >= 0) {
+            return existing;
+        }
+        return ordinals.computeIfAbsent(id, added -> {
+            ids.add(added);
+            names.add(null);
+            flags.add(OTHER);
+            return base.size() + ids.size() - 1;
+        });
+    }
+
+    private static void addEdge(IntList edges, BitSet removed, int relation, int out, int in, int mask) {
+        if (!removed.get(out) && !removed.get(in)) {
+            edges.add(relation);
+            edges.add(out);
+            edges.add(in);
+            edges.add(mask);
+        }
+    }
+
+    private interface EdgeConsumer {
+        void accept(int relation, int out, int in, int mask);
+    }
+
+    // every edge in the direction export() read it, HAS_PERMISSION from principal to resource
+    private void forEachEdge(EdgeConsumer action) {
+        for (int ordinal = 0; ordinal < size(); ordinal++) {
+            for (int i = grants.start(ordinal); i < grants.end(ordinal); i++) {
+                action.accept(0, grants.target(i), ordinal, grants.value(i));
+            }
+            for (int i = parents.start(ordinal); i < parents.end(ordinal); i++) {
+                action.accept(1, ordinal, parents.target(i), 0);
+            }
+            for (int i = owners.start(ordinal); i < owners.end(ordinal); i++) {
+                action.accept(2, ordinal, owners.target(i), 0);
+            }
+            for (int i = groups.start(ordinal); i < groups.end(ordinal); i++) {
+                action.accept(3, ordinal, groups.target(i), 0);
+            }
+        }
+    }
+
+    public int size() {
+        return directory.size();
+    }
+
+    // the AclChangeLog position this snapshot reflects
+    public long getChangePosition() {
+        return changePosition;
+    }
+
+    // -1 when the vertex is not part of the snapshot
+    public int ordinal(Object vertexId) {
+        return directory.ordinal(vertexId);
+    }
+
+    // a mapped snapshot gives Long ids back as Long and any other id as its string form
+    public Object id(int ordinal) {
+        return directory.id(ordinal);
+    }
+
+    // ordinals of the vertices with that name, shared and not to be modified
+    public int[] named(String name) {
+        return directory.named(name);
+    }
+
+    // -1 when there is no user of that name
+    public int user(String name) {
+        for (int ordinal : named(name)) {
+            if (label(ordinal) == USER) {
+                return ordinal;
+            }
+        }
+        return -1;
+    }
+
+    private int label(int ordinal) {
+        return flags.get(ordinal) & LABEL;
+    }
+
+    private boolean isPublic(int ordinal) {
+        return (flags.get(ordinal) & PUBLIC) != 0;
+    }
+
+    boolean isContainer(int ordinal) {
+        int label = label(ordinal);
+        return label == FOLDER || label == TERM;
+    }
+
+    // number of edges per relation, in the order HAS_PERMISSION, IN_FOLDER, OWNED_BY, MEMBER_OF + HAS_SUPERGROUP
+    int[] edgeCounts() {
+        return new int[]{grants.count(), parents.count(), owners.count(), groups.count()};
+    }
+
+    // one evaluator per thread
+    public Evaluator newEvaluator() {
+        return new Evaluator();
+    }
+
+    /**
+     * Users that hold the permission on any resource of that name, as ordinals; the bitmap belongs to the caller.
+     */
+    public OrdinalBitmap accessors(String resourceName, String permission) {
+        OrdinalBitmap accessors = new OrdinalBitmap();
+        for (int resource : named(resourceName)) {
+            accessors.or(accessors(resource, permission));
+        }
+        return accessors;
+    }
+
+    public OrdinalBitmap accessors(int resource, String permission) {
+        int bit = PermissionMask.bit(permission);
+        int explicitMask = PermissionMask.impliedMask(permission);
+        // only consider public access if the request is for read
+        boolean read = permission.equals("R");
+        OrdinalBitmap accessors = new OrdinalBitmap();
+        BitSet visited = new BitSet();
+        IntList grantees = new IntList(16);
+        for (int source : ruleSources(resource, explicitMask)) {
+            if (read && isPublic(source)) {
+                return users.copy();
+            }
+            for (int i = owners.start(source); i < owners.end(source); i++) {
+                if (label(owners.target(i)) == USER) {
+                    accessors.add(owners.target(i));
+                }
+            }
+            for (int i = grants.start(source); i < grants.end(source); i++) {
+                if ((grants.value(i) & bit) != 0 && !visited.get(grants.target(i))) {
+                    visited.set(grants.target(i));
+                    grantees.add(grants.target(i));
+                }
+            }
+        }
+        // down through subgroups, each group once even where the hierarchy overlaps or loops
+        for (int next = 0; next < grantees.size; next++) {
+            int principal = grantees.values[next];
+            if (label(principal) == USER) {
+                accessors.add(principal);
+                continue;
+            }
+            Members direct = groupMembers.computeIfAbsent(principal, this::members);
+            accessors.or(direct.users);
+            for (int group : direct.groups) {
+                if (!visited.get(group)) {
+                    visited.set(group);
+                    grantees.add(group);
+                }
+            }
+        }
+        return accessors;
+    }
+
+    // ids of the users that hold the permission, streamed from the bitmap
+    public Iterator<Object> accessorIds(String resourceName, String permission) {
+        PrimitiveIterator.OfInt ordinals = accessors(resourceName, permission).iterator();
+        return new Iterator<Object>() {
+            @Override
+            public boolean hasNext() {
+                return ordinals.hasNext();
+            }
+
+            @Override
+            public Object next() {
+                return id(ordinals.nextInt());
+            }
+        };
+    }
+
+    public long countAccessors(String resourceName, String permission) {
+        return accessors(resourceName, permission).cardinality();
+    }
+
+    // the resource and, for containers, the nearest containers up IN_FOLDER with an explicit grant
+    private int[] ruleSources(int resource, int explicitMask) {
+        if (!isContainer(resource) || explicitMask == 0) {
+            return new int[]{resource};
+        }
+        IntList sources = new IntList(16);
+        sources.add(resource);
+        BitSet visited = new BitSet();
+        visited.set(resource);
+        IntList pending = new IntList(16);
+        pending.add(resource);
+        for (int next = 0; next < pending.size; next++) {
+            int container = pending.values[next];
+            if (hasExplicitGrant(container, explicitMask)) {
+                if (container != resource) {
+                    sources.add(container);
+                }
+                continue;
+            }
+            for (int i = parents.start(container); i < parents.end(container); i++) {
+                if (!visited.get(parents.target(i))) {
+                    visited.set(parents.target(i));
+                    pending.add(parents.target(i));
+                }
+            }
+        }
+        return Arrays.copyOf(sources.values, sources.size);
+    }
+
+    private boolean hasExplicitGrant(int container, int explicitMask) {
+        for (int i = grants.start(container); i < grants.end(container); i++) {
+            if (grants.value(i) == explicitMask) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Members members(int group) {
+        OrdinalBitmap memberUsers = new OrdinalBitmap();
+        IntList subgroups = new IntList(16);
+        for (int i = members.start(group); i < members.end(group); i++) {
+            if (label(members.target(i)) == USER) {
+                memberUsers.add(members.target(i));
+            } else {
+                subgroups.add(members.target(i));
+            }
+        }
+        return new Members(memberUsers, Arrays.copyOf(subgroups.values, subgroups.size));
+    }
+
+    /**
+     * Scratch state for checks on one thread: visited marks are stamped with an epoch instead of being cleared, and
+     * the principals of the last user stay marked until a check for another user.
+     */
+    public final class Evaluator {
+
+        private final int[] principalMarks = new int[size()];
+        private int principalEpoch;
+        private int markedUser = -1;
+        private final int[] visitMarks = new int[size()];
+        private int visitEpoch;
+        private int[] stack = new int[64];
+
+        private Evaluator() {
+        }
+
+        // false when the user or the resource is not in the snapshot
+        public boolean hasAccess(String resourceName, String userName, String permission) {
+            int user = user(userName);
+            if (user < 0) {
+                return false;
+            }
+            for (int resource : named(resourceName)) {
+                if (hasAccess(resource, user, permission)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public boolean hasAccess(int resource, int user, String permission) {
+            int bit = PermissionMask.bit(permission);
+            int explicitMask = PermissionMask.impliedMask(permission);
+            // only consider public access if the request is for read
+            boolean read = permission.equals("R");
+            markPrincipals(user);
+            if (ruleMatches(resource, user, bit, read)) {
+                return true;
+            }
+            return isContainer(resource) && explicitMask != 0 && inheritedAccess(resource, user, bit, explicitMask, read);
+        }
+
+        private boolean ruleMatches(int resource, int user, int bit, boolean read) {
+            if (read && isPublic(resource)) {
+                return true;
+            }
+            for (int i = owners.start(resource); i < owners.end(resource); i++) {
+                if (owners.target(i) == user) {
+                    return true;
+                }
+            }
+            for (int i = grants.start(resource); i < grants.end(resource); i++) {
+                if ((grants.value(i) & bit) != 0 && principalMarks[grants.target(i)] == principalEpoch) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean inheritedAccess(int resource, int user, int bit, int explicitMask, boolean read) {
+            // up IN_FOLDER to the nearest containers with an explicit grant, as containerHierarchyHasPermission stops
+            int top = 0;
+            int epoch = nextVisitEpoch();
+            visitMarks[resource] = epoch;
+            stack[top++] = resource;
+            while (top > 0) {
+                int container = stack[--top];
+                if (hasExplicitGrant(container, explicitMask)) {
+                    // the resource's own rule was evaluated already
+                    if (container != resource && ruleMatches(container, user, bit, read)) {
+                        return true;
+                    }
+                    continue;
+                }
+                for (int i = parents.start(container); i < parents.end(container); i++) {
+                    int parent = parents.target(i);
+                    if (visitMarks[parent] != epoch) {
+                        visitMarks[parent] = epoch;
+                        top = push(top, parent);
+                    }
+                }
+            }
+            return false;
+        }
+
+        private void markPrincipals(int user) {
+            // the user plus every group reachable by walking up membership and supergroup edges
+            if (user == markedUser) {
+                return;
+            }
+            if (++principalEpoch == 0) {
+                Arrays.fill(principalMarks, 0);
+                principalEpoch = 1;
+            }
+            markedUser = user;
+            int top = 0;
+            principalMarks[user] = principalEpoch;
+            stack[top++] = user;
+            while (top > 0) {
+                int principal = stack[--top];
+                for (int i = groups.start(principal); i < groups.end(principal); i++) {
+                    int group = groups.target(i);
+                    if (principalMarks[group] != principalEpoch) {
+                        principalMarks[group] = principalEpoch;
+                        top = push(top, group);
+                    }
+                }
+            }
+        }
+
+        private int nextVisitEpoch() {
+            if (++visitEpoch == 0) {
+                Arrays.fill(visitMarks, 0);
+                visitEpoch = 1;
+            }
+            return visitEpoch;
+        }
+
+        private int push(int top, int ordinal) {
+            if (top == stack.length) {
+                stack = Arrays.copyOf(stack, top * 2);
+            }
+            stack[top] = ordinal;
+            return top + 1;
+        }
+    }
+
+    /**
+     * One relation's rows, over int arrays on the heap or int views of the mapped file.
+     */
+    private static final class Csr {
+
+        final IntBuffer offsets;
+        final IntBuffer targets;
+        // per target, only kept for relations that have them
+        final IntBuffer values;
+
+        private Csr(IntBuffer offsets, IntBuffer targets, IntBuffer values) {
+            this.offsets = offsets;
+            this.targets = targets;
+            this.values = values;
+        }
+
+        int start(int row) {
+            return offsets.get(row);
+        }
+
+        int end(int row) {
+            return offsets.get(row + 1);
+        }
+
+        int target(int index) {
+            return targets.get(index);
+        }
+
+        int value(int index) {
+            return values.get(index);
+        }
+
+        int count() {
+            return targets.limit();
+        }
+
+        /**
+         * @param edges relation, out, in, value quadruples
+         * @param reverse key the rows by the in vertex instead of the out vertex
+         */
+        static Csr of(int size, IntList edges, int relation, boolean reverse, boolean withValues) {
+            int[] offsets = new int[size + 1];
+            for (int i = 0; i < edges.size; i += 4) {
+                if (edges.values[i] == relation) {
+                    offsets[edges.values[i + (reverse ? 2 : 1)] + 1]++;
+                }
+            }
+            for (int v = 0; v < size; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            int[] targets = new int[offsets[size]];
+            int[] values = withValues ? new int[targets.length] : null;
+            int[] next = Arrays.copyOf(offsets, size);
+            for (int i = 0; i < edges.size; i += 4) {
+                if (edges.values[i] == relation) {
+                    int row = next[edges.values[i + (reverse ? 2 : 1)]]++;
+                    targets[row] = edges.values[i + (reverse ? 1 : 2)];
+                    if (values != null) {
+                        values[row] = edges.values[i + 3];
+                    }
+                }
+            }
+            return new Csr(IntBuffer.wrap(offsets), IntBuffer.wrap(targets), values == null ? null : IntBuffer.wrap(values));
+        }
+
+        // offsets, targets and values, each length-prefixed; -1 in place of missing values
+        long length() {
+            return 12 + 4L * offsets.limit() + 4L * targets.limit() + (values == null ? 0 : 4L * values.limit());
+        }
+
+        void write(ByteBuffer out) {
+            putInts(out, offsets);
+            putInts(out, targets);
+            if (values == null) {
+                out.putInt(-1);
+            } else {
+                putInts(out, values);
+            }
+        }
+
+        static Csr read(ByteBuffer in) {
+            IntBuffer offsets = getInts(in);
+            IntBuffer targets = getInts(in);
+            if (in.getInt(in.position()) < 0) {
+                in.getInt();
+                return new Csr(offsets, targets, null);
+            }
+            return new Csr(offsets, targets, getInts(in));
+        }
+    }
+
+    // ids and names of the ordinals, in maps for exported snapshots and in hash tables for mapped ones
+    private interface Directory {
+
+        int size();
+
+        Object id(int ordinal);
+
+        int ordinal(Object id);
+
+        int[] named(String name);
+
+        void forEachName(ObjIntConsumer<String> action);
+
+        // every id is a Long, so that a mapped snapshot can give them back as such
+        boolean numericIds();
+    }
+
+    private static final class HeapDirectory implements Directory {
+
+        private final Object[] ids;
+        private final Map<Object, Integer> ordinals;
+        private final Map<String, int[]> names;
+
+        HeapDirectory(Object[] ids, Map<Object, Integer> ordinals, Map<String, int[]> names) {
+            this.ids = ids;
+            this.ordinals = ordinals;
+            this.names = names;
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+
+        @Override
+        public Object id(int ordinal) {
+            return ids[ordinal];
+        }
+
+        @Override
+        public int ordinal(Object id) {
+            Integer ordinal = ordinals.get(id);
+            return ordinal == null ? -1 : ordinal;
+        }
+
+        @Override
+        public int[] named(String name) {
+            return names.getOrDefault(name, NONE);
+        }
+
+        @Override
+        public void forEachName(ObjIntConsumer<String> action) {
+            names.forEach((name, named) -> {
+                for (int ordinal : named) {
+                    action.accept(name, ordinal);
+                }
+            });
+        }
+
+        @Override
+        public boolean numericIds() {
+            for (Object id : ids) {
+                if (!(id instanceof Long)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // the directory of an applied snapshot: the ordinals of the snapshot it was applied to, then those of new vertices
+    private static final class AppendedDirectory implements Directory {
+
+        // never an AppendedDirectory itself, so that snapshots applied one after the other do not stack up
+        private final Directory base;
+        private final List<Object> ids;
+        private final Map<Object, Integer> ordinals;
+        private final Map<String, int[]> names;
+
+        AppendedDirectory(Directory base, List<Object> ids, Map<Object, Integer> ordinals, Map<String, int[]> names) {
+            this.base = base;
+            this.ids = ids;
+            this.ordinals = ordinals;
+            this.names = names;
+        }
+
+        @Override
+        public int size() {
+            return base.size() + ids.size();
+        }
+
+        @Override
+        public Object id(int ordinal) {
+            return ordinal < base.size() ? base.id(ordinal) : ids.get(ordinal - base.size());
+        }
+
+        @Override
+        public int ordinal(Object id) {
+            int ordinal = base.ordinal(id);
+            if (ordinal >= 0) {
+                return ordinal;
+            }
+            Integer added = ordinals.get(id);
+            return added == null ? -1 : added;
+        }
+
+        @Override
+        public int[] named(String name) {
+            return names.getOrDefault(name, NONE);
+        }
+
+        @Override
+        public void forEachName(ObjIntConsumer<String> action) {
+            names.forEach((name, named) -> {
+                for (int ordinal : named) {
+                    action.accept(name, ordinal);
+                }
+            });
+        }
+
+        @Override
+        public boolean numericIds() {
+            if (!base.numericIds()) {
+                return false;
+            }
+            for (Object id : ids) {
+                if (!(id instanceof Long)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class MappedDirectory implements Directory {
+
+        private final int size;
+        private final boolean numericIds;
+        // string form of the id, per ordinal
+        private final StringTable ids;
+        // name, per named ordinal
+        private final StringTable names;
+
+        MappedDirectory(int size, boolean numericIds, StringTable ids, StringTable names) {
+            this.size = size;
+            this.numericIds = numericIds;
+            this.ids = ids;
+            this.names = names;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Object id(int ordinal) {
+            String id = ids.string(ordinal);
+            return numericIds ? (Object) Long.valueOf(id) : id;
+        }
+
+        @Override
+        public int ordinal(Object id) {
+            int[] ordinal = {-1};
+            ids.find(String.valueOf(id), found -> ordinal[0] = found);
+            return ordinal[0];
+        }
+
+        @Override
+        public int[] named(String name) {
+            IntList ordinals = new IntList(2);
+            names.find(name, ordinals::add);
+            return ordinals.size == 0 ? NONE : Arrays.copyOf(ordinals.values, ordinals.size);
+        }
+
+        @Override
+        public void forEachName(ObjIntConsumer<String> action) {
+            for (int entry = 0; entry < names.count; entry++) {
+                action.accept(names.string(entry), names.values.get(entry));
+            }
+        }
+
+        @Override
+        public boolean numericIds() {
+            return numericIds;
+        }
+    }
+
+    /**
+     * Strings with an int value each: UTF-8 bytes behind an offset array, and an open addressing table of entry + 1
+     * per slot, hashed with String.hashCode so that a lookup only decodes the entries it probes.
+     */
+    private static final class StringTable {
+
+        interface Strings {
+            String get(int entry);
+        }
+
+        interface Values {
+            int get(int entry);
+        }
+
+        final int count;
+        final IntBuffer values;
+        final IntBuffer offsets;
+        final IntBuffer slots;
+        final ByteBuffer bytes;
+
+        private StringTable(int count, IntBuffer values, IntBuffer offsets, IntBuffer slots, ByteBuffer bytes) {
+            this.count = count;
+            this.values = values;
+            this.offsets = offsets;
+            this.slots = slots;
+            this.bytes = bytes;
+        }
+
+        static StringTable of(int count, Strings strings, Values values) {
+            int[] valueArray = new int[count];
+            int[] offsetArray = new int[count + 1];
+            // at most half full
+            int[] slotArray = new int[Integer.highestOneBit(Math.max(count, 1)) * 4];
+            byte[][] encoded = new byte[count][];
+            for (int entry = 0; entry < count; entry++) {
+                String string = strings.get(entry);
+                encoded[entry] = string.getBytes(StandardCharsets.UTF_8);
+                valueArray[entry] = values.get(entry);
+                offsetArray[entry + 1] = offsetArray[entry] + encoded[entry].length;
+                int slot = slot(string, slotArray.length);
+                while (slotArray[slot] != 0) {
+                    slot = (slot + 1) & (slotArray.length - 1);
+                }
+                slotArray[slot] = entry + 1;
+            }
+            byte[] byteArray = new byte[offsetArray[count]];
+            for (int entry = 0; entry < count; entry++) {
+                System.arraycopy(encoded[entry], 0, byteArray, offsetArray[entry], encoded[entry].length);
+            }
+            return new StringTable(count, IntBuffer.wrap(valueArray), IntBuffer.wrap(offsetArray), IntBuffer.wrap(slotArray),
+                    ByteBuffer.wrap(byteArray));
+        }
+
+        private static int slot(String string, int slots) {
+            int hash = string.hashCode();
+            return (hash ^ hash >>> 16) & (slots - 1);
+        }
+
+        String string(int entry) {
+            int from = offsets.get(entry);
+            byte[] utf8 = new byte[offsets.get(entry + 1) - from];
+            for (int i = 0; i < utf8.length; i++) {
+                utf8[i] = bytes.get(from + i);
+            }
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        // passes the value of every entry equal to the key
+        void find(String key, IntConsumer action) {
+            int capacity = slots.limit();
+            for (int slot = slot(key, capacity); slots.get(slot) != 0; slot = (slot + 1) & (capacity - 1)) {
+                int entry = slots.get(slot) - 1;
+                if (string(entry).equals(key)) {
+                    action.accept(values.get(entry));
+                }
+            }
+        }
+
+        long length() {
+            return 16 + 4L * count + 4L * (count + 1) + 4L * slots.limit() + bytesLength(bytes.capacity());
+        }
+
+        void write(ByteBuffer out) {
+            out.putInt(count);
+            putInts(out, values);
+            putInts(out, offsets);
+            putInts(out, slots);
+            putBytes(out, bytes);
+        }
+
+        static StringTable read(ByteBuffer in) {
+            int count = in.getInt();
+            return new StringTable(count, getInts(in), getInts(in), getInts(in), getBytes(in));
+        }
+    }
+
+    private static final class EdgeKey {
+
+        final int relation;
+        final int out;
+        final int in;
+        final int mask;
+
+        EdgeKey(int relation, int out, int in, int mask) {
+            this.relation = relation;
+            this.out = out;
+            this.in = in;
+            this.mask = mask;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof EdgeKey)) {
+                return false;
+            }
+            EdgeKey other = (EdgeKey) o;
+            return relation == other.relation && out == other.out && in == other.in && mask == other.mask;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((relation * 31 + out) * 31 + in) * 31 + mask;
+        }
+    }
+
+    private static final class Members {
+
+        final OrdinalBitmap users;
+        final int[] groups;
+
+        Members(OrdinalBitmap users, int[] groups) {
+            this.users = users;
+            this.groups = groups;
+        }
+    }
+
+    private static final class IntList {
+
+        int[] values;
+        int size;
+
+        IntList(int capacity) {
+            values = new int[capacity];
+        }
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    private static final class ByteList {
+
+        byte[] values;
+        int size;
+
+        ByteList(int capacity) {
+            values = new byte[Math.max(capacity, 16)];
+        }
+
+        void add(byte value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+import java.util.HashSet;
+import java.util.Set;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+
+/**
+ * BulkLoader for a TinkerPop graph. Transactional graphs are committed once per batch instead of per element; on a
+ * TinkerGraph, withDeferredIndexes() drops the vertex indexes while loading and rebuilds each in one pass on flush().
+ */
+public class GraphBulkLoader extends BulkLoader {
+
+    private final Graph graph;
+    private final boolean transactional;
+    private final Set<String> deferredIndexes = new HashSet<>();
+
+    public GraphBulkLoader(Graph graph) {
+        this(graph, DEFAULT_BATCH_SIZE);
+    }
+
+    public GraphBulkLoader(Graph graph, int batchSize) {
+        super(batchSize);
+        this.graph = graph;
+        this.transactional = graph.features().graph().supportsTransactions();
+    }
+
+    public GraphBulkLoader withDeferredIndexes() {
+        if (graph instanceof TinkerGraph) {
+            TinkerGraph tinkerGraph = (TinkerGraph) graph;
+            for (String key : new HashSet<>(tinkerGraph.getIndexedKeys(Vertex.class))) {
+                tinkerGraph.dropIndex(key, Vertex.class);
+                deferredIndexes.add(key);
+            }
+        }
+        return this;
+    }
+
+    public Graph getGraph() {
+        return graph;
+    }
+
+    @Override
+    protected Vertex writeVertex(String label, Object... keyValues) {
+        Object[] labelAndKeyValues = new Object[keyValues.length + 2];
+        labelAndKeyValues[0] = T.label;
+        labelAndKeyValues[1] = label;
+        System.arraycopy(keyValues, 0, labelAndKeyValues, 2, keyValues.length);
+        return graph.addVertex(labelAndKeyValues);
+    }
+
+    @Override
+    protected void writeEdge(Vertex out, String label, Vertex in, Object... keyValues) {
+        out.addEdge(label, in, keyValues);
+    }
+
+    @Override
+    protected void writeProperty(Vertex vertex, String key, Object value) {
+        vertex.property(key, value);
+    }
+
+    @Override
+    public void flush() {
+        super.flush();
+        for (String key : deferredIndexes) {
+            ((TinkerGraph) graph).createIndex(key, Vertex.class);
+        }
+        deferredIndexes.clear();
+    }
+
+    @Override
+    protected void commit() {
+        if (transactional) {
+            graph.tx().commit();
+        }
+    }
+}
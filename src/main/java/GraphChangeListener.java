@@ -0,0 +1,63 @@
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.event.MutationListener;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Property;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.VertexProperty;
+
+/**
+ * MutationListener with no-op defaults, so that indexes and caches kept current through an EventStrategy only
+ * override the events they care about. Batches applied by an AclBatchWriter arrive as one batchApplied event, which
+ * by default is replayed as the single events it stands for.
+ */
+public abstract class GraphChangeListener implements MutationListener {
+
+    @Override
+    public void vertexAdded(Vertex vertex) {
+    }
+
+    @Override
+    public void vertexRemoved(Vertex vertex) {
+    }
+
+    @Override
+    public void vertexPropertyChanged(Vertex element, VertexProperty oldValue, Object setValue, Object... vertexPropertyKeyValues) {
+    }
+
+    @Override
+    public void vertexPropertyRemoved(VertexProperty vertexProperty) {
+    }
+
+    @Override
+    public void edgeAdded(Edge edge) {
+    }
+
+    @Override
+    public void edgeRemoved(Edge edge) {
+    }
+
+    @Override
+    public void edgePropertyChanged(Edge element, Property oldValue, Object setValue) {
+    }
+
+    @Override
+    public void edgePropertyRemoved(Edge element, Property property) {
+    }
+
+    @Override
+    public void vertexPropertyPropertyChanged(VertexProperty element, Property oldValue, Object setValue) {
+    }
+
+    @Override
+    public void vertexPropertyPropertyRemoved(VertexProperty element, Property property) {
+    }
+
+    /**
+     * Called once per applied batch, after it is written. Replays removals, then additions, then property changes;
+     * listeners that can do better with the whole batch at once override it.
+     */
+    public void batchApplied(AclChangeSet changes) {
+        changes.getRemovedEdges().forEach(this::edgeRemoved);
+        changes.getAddedEdges().forEach(this::edgeAdded);
+        changes.getPropertyChanges().forEach(change -> vertexPropertyChanged(change.getVertex(), change.getOldValue(), change.getValue()));
+    }
+}
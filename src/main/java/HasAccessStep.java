@@ -0,0 +1,124 @@
+import java.util.function.Predicate;
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+import org.apache.tinkerpop.gremlin.process.traversal.Traverser;
+import org.apache.tinkerpop.gremlin.process.traversal.step.filter.FilterStep;
+import org.apache.tinkerpop.gremlin.process.traversal.util.FastNoSuchElementException;
+import org.apache.tinkerpop.gremlin.process.traversal.util.TraversalHelper;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.util.StringFactory;
+
+/**
+ * Gremlin filter step keeping the vertices a user can access, so that the check can sit anywhere in a query, e.g.
+ * traverser.hasAccess(g.V().hasLabel("Term"), userId, "R").has("domain", "finance").limit(20).
+ *
+ * The user is resolved once per step, and rule and container answers are shared by all the vertices it tests. Works on
+ * its own; register HasAccessStrategy on the traversal source to also have it rewritten into its cheapest form.
+ */
+public class HasAccessStep<S> extends FilterStep<S> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final PermissionTraverser permissionTraverser;
+    private final String userId;
+    private final String permission;
+    private PermissionTraverser.ResolvedUser user;
+    private boolean containersPossible = true;
+    private Predicate<Vertex> accessible;
+    // set from a limit() right after the step: no need to test anything once that many elements passed
+    private long passLimit = -1;
+    private long passed;
+
+    public HasAccessStep(Traversal.Admin<?, ?> traversal, PermissionTraverser permissionTraverser, String userId, String permission) {
+        super(traversal);
+        this.permissionTraverser = permissionTraverser;
+        this.userId = userId;
+        this.permission = permission;
+    }
+
+    @Override
+    protected Traverser.Admin<S> processNextStart() {
+        if (passLimit >= 0 && passed >= passLimit) {
+            throw FastNoSuchElementException.instance();
+        }
+        return super.processNextStart();
+    }
+
+    @Override
+    protected boolean filter(Traverser.Admin<S> traverser) {
+        if (accessible == null) {
+            Graph g = getGraph();
+            accessible = permissionTraverser.accessPredicate(g, resolveUser(g), permission, containersPossible);
+        }
+        if (accessible.test((Vertex) traverser.get())) {
+            passed += traverser.bulk();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        // the predicate memoizes rule and container answers, which may be stale by the time the step runs again
+        accessible = null;
+        passed = 0;
+    }
+
+    private Graph getGraph() {
+        // also works when the step sits in a child traversal
+        return TraversalHelper.getRootTraversal(getTraversal()).getGraph()
+                .orElseThrow(() -> new IllegalStateException("hasAccess needs a traversal bound to a graph"));
+    }
+
+    PermissionTraverser.ResolvedUser resolveUser(Graph g) {
+        if (user == null) {
+            user = permissionTraverser.resolveUser(g, userId);
+        }
+        return user;
+    }
+
+    void resolveUser() {
+        resolveUser(getGraph());
+    }
+
+    void setContainersPossible(boolean containersPossible) {
+        this.containersPossible = containersPossible;
+        this.accessible = null;
+    }
+
+    void setPassLimit(long passLimit) {
+        this.passLimit = passLimit;
+    }
+
+    boolean isContainersPossible() {
+        return containersPossible;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getPermission() {
+        return permission;
+    }
+
+    @Override
+    public HasAccessStep<S> clone() {
+        // clones keep the resolved user but memoize on their own, as they may run on other threads
+        HasAccessStep<S> clone = (HasAccessStep<S>) super.clone();
+        clone.accessible = null;
+        clone.passed = 0;
+        return clone;
+    }
+
+    @Override
+    public String toString() {
+        return StringFactory.stepString(this, userId, permission);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode() ^ userId.hashCode() ^ permission.hashCode();
+    }
+}
@@ -0,0 +1,121 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.tinkerpop.gremlin.process.traversal.Compare;
+import org.apache.tinkerpop.gremlin.process.traversal.Contains;
+import org.apache.tinkerpop.gremlin.process.traversal.Step;
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+import org.apache.tinkerpop.gremlin.process.traversal.TraversalStrategy;
+import org.apache.tinkerpop.gremlin.process.traversal.step.HasContainerHolder;
+import org.apache.tinkerpop.gremlin.process.traversal.step.filter.HasStep;
+import org.apache.tinkerpop.gremlin.process.traversal.step.filter.RangeGlobalStep;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
+import org.apache.tinkerpop.gremlin.process.traversal.strategy.AbstractTraversalStrategy;
+import org.apache.tinkerpop.gremlin.process.traversal.strategy.optimization.FilterRankingStrategy;
+import org.apache.tinkerpop.gremlin.process.traversal.strategy.optimization.InlineFilterStrategy;
+import org.apache.tinkerpop.gremlin.structure.T;
+
+/**
+ * Rewrites HasAccessStep into its cheapest form:
+ *
+ * - has() filters right after an access check are moved in front of it and merged with a has() before, so
+ * that elements they discard are never checked; right after V() TinkerGraph then serves them from an index. Combined with a limit() after
+ * the check, a page is filled without evaluating anything beyond it: the step stops pulling once limit() has all it
+ * needs, instead of checking one more element before the limit notices.
+ * - hasLabel() before the check tells it whether folders or terms can reach it at all; if not, it skips the IN_FOLDER
+ * ascent and the label test.
+ * - the user is resolved here, once, rather than when the first element arrives.
+ *
+ * Register with g.withStrategies(HasAccessStrategy.instance()).
+ */
+public final class HasAccessStrategy extends AbstractTraversalStrategy<TraversalStrategy.OptimizationStrategy>
+        implements TraversalStrategy.OptimizationStrategy {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final HasAccessStrategy INSTANCE = new HasAccessStrategy();
+
+    private static final Set<String> CONTAINER_LABELS = new HashSet<>(Arrays.asList("Folder", "Term"));
+
+    private HasAccessStrategy() {
+    }
+
+    public static HasAccessStrategy instance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public Set<Class<? extends OptimizationStrategy>> applyPrior() {
+        // FilterRankingStrategy does not know this step and may put it before the has() filters
+        return new HashSet<>(Arrays.asList(InlineFilterStrategy.class, FilterRankingStrategy.class));
+    }
+
+    @Override
+    public void apply(Traversal.Admin<?, ?> traversal) {
+        List<HasAccessStep<?>> steps = traversal.getSteps().stream()
+                .filter(step -> step instanceof HasAccessStep).map(step -> (HasAccessStep<?>) step).collect(Collectors.toList());
+        // last first, so that a has() after several checks moves in front of all of them
+        Collections.reverse(steps);
+        for (HasAccessStep<?> step : steps) {
+            hoistFilters(traversal, step);
+            if (step.getNextStep() instanceof RangeGlobalStep) {
+                // otherwise the range only notices the page is full when the next element passes the check
+                long high = ((RangeGlobalStep<?>) step.getNextStep()).getHighRange();
+                step.setPassLimit(high);
+            }
+            step.setContainersPossible(containersPossible(step));
+            try {
+                step.resolveUser();
+            } catch (IllegalStateException x) {
+                // not bound to a graph yet; the step resolves the user on first use instead
+            }
+        }
+    }
+
+    private static void hoistFilters(Traversal.Admin<?, ?> traversal, HasAccessStep<?> step) {
+        if (!step.getLabels().isEmpty()) {
+            // a labeled check may be referenced by a later select() or path(), so keep the elements it saw
+            return;
+        }
+        while (step.getNextStep() instanceof HasStep && step.getNextStep().getLabels().isEmpty()) {
+            HasStep<?> has = (HasStep<?>) step.getNextStep();
+            traversal.removeStep(has);
+            Step<?, ?> previous = step.getPreviousStep();
+            if (previous instanceof HasStep && previous.getLabels().isEmpty()) {
+                has.getHasContainers().forEach(((HasStep<?>) previous)::addHasContainer);
+            } else {
+                traversal.addStep(traversal.getSteps().indexOf(step), has);
+            }
+        }
+    }
+
+    private static boolean containersPossible(HasAccessStep<?> step) {
+        // the label filters right before the step, back to the previous step that can change the element
+        for (Step<?, ?> previous = step.getPreviousStep(); previous instanceof HasContainerHolder; previous = previous.getPreviousStep()) {
+            for (HasContainer container : ((HasContainerHolder) previous).getHasContainers()) {
+                Collection<?> labels = labels(container);
+                if (labels != null && Collections.disjoint(labels, CONTAINER_LABELS)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Collection<?> labels(HasContainer container) {
+        if (!T.label.getAccessor().equals(container.getKey())) {
+            return null;
+        }
+        if (container.getBiPredicate() == Compare.eq) {
+            return Collections.singleton(container.getValue());
+        }
+        if (container.getBiPredicate() == Contains.within && container.getValue() instanceof Collection) {
+            return (Collection<?>) container.getValue();
+        }
+        return null;
+    }
+}
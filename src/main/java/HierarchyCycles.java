@@ -0,0 +1,110 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+
+/**
+ * Finds cycles in the group and folder hierarchies. PermissionTraverser's walks visit every vertex at most once per
+ * check, so a cycle no longer keeps a check from terminating, but it is almost always a data error (a group that is its
+ * own supergroup, a folder inside itself) that should be reported and fixed rather than silently pruned.
+ *
+ * Each cycle is reported once as a strongly connected component over the given edge labels, walking them outward.
+ */
+public class HierarchyCycles {
+
+    private HierarchyCycles() {
+    }
+
+    // MEMBER_OF and HAS_SUPERGROUP, as the principal expansion walks them
+    public static List<List<Object>> membership(Graph g) {
+        return find(g, "Group", "MEMBER_OF", "HAS_SUPERGROUP");
+    }
+
+    // IN_FOLDER, as the container ascent walks it
+    public static List<List<Object>> containment(Graph g) {
+        return find(g, null, "IN_FOLDER");
+    }
+
+    /**
+     * @param label only start from vertices with this label, or from every vertex when null; users can't be on a
+     *              membership cycle, since nothing is a member of a user
+     * @return ids of the vertices on each cycle
+     */
+    public static List<List<Object>> find(Graph g, String label, String... edgeLabels) {
+        // Tarjan's algorithm with an explicit stack, since hierarchies can be deeper than the call stack
+        Map<Object, int[]> indexes = new HashMap<>();
+        Deque<Vertex> component = new ArrayDeque<>();
+        List<List<Object>> cycles = new ArrayList<>();
+        Iterator<Vertex> roots = label != null ? g.traversal().V().hasLabel(label) : g.vertices();
+        while (roots.hasNext()) {
+            Vertex root = roots.next();
+            if (indexes.containsKey(root.id())) {
+                continue;
+            }
+            Deque<Frame> stack = new ArrayDeque<>();
+            stack.push(visit(root, indexes, component, edgeLabels));
+            while (!stack.isEmpty()) {
+                Frame frame = stack.peek();
+                if (frame.next.hasNext()) {
+                    Vertex child = frame.next.next();
+                    int[] childIndex = indexes.get(child.id());
+                    if (childIndex == null) {
+                        stack.push(visit(child, indexes, component, edgeLabels));
+                    } else if (childIndex[2] == 1) {
+                        frame.index[1] = Math.min(frame.index[1], childIndex[0]);
+                    }
+                    if (child.id().equals(frame.vertex.id())) {
+                        frame.selfLoop = true;
+                    }
+                    continue;
+                }
+                stack.pop();
+                if (!stack.isEmpty()) {
+                    int[] parentIndex = stack.peek().index;
+                    parentIndex[1] = Math.min(parentIndex[1], frame.index[1]);
+                }
+                if (frame.index[1] == frame.index[0]) {
+                    List<Object> members = new ArrayList<>();
+                    Vertex member;
+                    do {
+                        member = component.pop();
+                        indexes.get(member.id())[2] = 0;
+                        members.add(member.id());
+                    } while (!member.id().equals(frame.vertex.id()));
+                    if (members.size() > 1 || frame.selfLoop) {
+                        cycles.add(members);
+                    }
+                }
+            }
+        }
+        return cycles;
+    }
+
+    private static Frame visit(Vertex vertex, Map<Object, int[]> indexes, Deque<Vertex> component, String[] edgeLabels) {
+        // index, lowest index reachable, and whether the vertex is still on the component stack
+        int[] index = {indexes.size(), indexes.size(), 1};
+        indexes.put(vertex.id(), index);
+        component.push(vertex);
+        return new Frame(vertex, index, vertex.vertices(Direction.OUT, edgeLabels));
+    }
+
+    private static final class Frame {
+
+        final Vertex vertex;
+        final int[] index;
+        final Iterator<Vertex> next;
+        boolean selfLoop;
+
+        Frame(Vertex vertex, int[] index, Iterator<Vertex> next) {
+            this.vertex = vertex;
+            this.index = index;
+            this.next = next;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Drives a weighted mix of read and write operations from a number of threads, for a fixed duration or a fixed number
+ * of operations per thread, and reports throughput and latency percentiles per scenario class.
+ *
+ * Each thread draws its operations, and the operations draw their parameters, from a Random seeded from the
+ * generator's seed and the thread's index, so a run with the same seed replays the same operations on every thread.
+ * Writes exclude reads through a read-write lock, since TinkerGraph is not safe for concurrent mutation; the latencies
+ * include the time spent waiting for it, as a caller would see them.
+ */
+public class LoadGenerator {
+
+    public interface Operation {
+
+        void run(Random random) throws Exception;
+    }
+
+    private final long seed;
+    private final List<ScenarioClass> classes = new ArrayList<>();
+    private int totalWeight;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private Duration warmup = Duration.ZERO;
+    private Duration duration = Duration.ofSeconds(10);
+    private long operationsPerThread;
+
+    public LoadGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public LoadGenerator withThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    // operations run during the warmup are not recorded
+    public LoadGenerator withWarmup(Duration warmup) {
+        this.warmup = warmup;
+        return this;
+    }
+
+    public LoadGenerator withDuration(Duration duration) {
+        this.duration = duration;
+        return this;
+    }
+
+    // stops each thread after this many recorded operations instead of after the duration
+    public LoadGenerator withOperationsPerThread(long operationsPerThread) {
+        this.operationsPerThread = operationsPerThread;
+        return this;
+    }
+
+    public LoadGenerator withRead(String name, int weight, Operation operation) {
+        return withOperation(name, weight, false, operation);
+    }
+
+    public LoadGenerator withWrite(String name, int weight, Operation operation) {
+        return withOperation(name, weight, true, operation);
+    }
+
+    private LoadGenerator withOperation(String name, int weight, boolean write, Operation operation) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("Weight of " + name + " must be positive");
+        }
+        classes.add(new ScenarioClass(name, weight, write, operation));
+        totalWeight += weight;
+        return this;
+    }
+
+    public Result run() {
+        if (classes.isEmpty()) {
+            throw new IllegalStateException("No operations to run");
+        }
+        Map<String, ClassStats> stats = new LinkedHashMap<>();
+        classes.forEach(scenarioClass -> stats.put(scenarioClass.name, new ClassStats()));
+        ReadWriteLock lock = new ReentrantReadWriteLock();
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long measureUntil = operationsPerThread > 0 ? Long.MAX_VALUE : measureFrom + duration.toNanos();
+
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Random random = new Random(seed * 1_000_003 + i);
+            Thread worker = new Thread(() -> {
+                long recorded = 0;
+                while (operationsPerThread <= 0 || recorded < operationsPerThread) {
+                    ScenarioClass scenarioClass = pick(random.nextInt(totalWeight));
+                    Lock held = scenarioClass.write ? lock.writeLock() : lock.readLock();
+                    long start = System.nanoTime();
+                    if (start >= measureUntil) {
+                        break;
+                    }
+                    boolean failed = false;
+                    held.lock();
+                    try {
+                        scenarioClass.operation.run(random);
+                    } catch (Exception x) {
+                        failed = true;
+                    } finally {
+                        held.unlock();
+                    }
+                    if (start >= measureFrom) {
+                        stats.get(scenarioClass.name).record(System.nanoTime() - start, failed);
+                        recorded++;
+                    }
+                }
+            }, "load-generator-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException x) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(x);
+            }
+        }
+        return new Result(threads, System.nanoTime() - measureFrom, stats);
+    }
+
+    private ScenarioClass pick(int ticket) {
+        for (ScenarioClass scenarioClass : classes) {
+            ticket -= scenarioClass.weight;
+            if (ticket < 0) {
+                return scenarioClass;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    public static class Result {
+
+        private final int threads;
+        private final long elapsedNanos;
+        private final Map<String, ClassStats> classes;
+
+        Result(int threads, long elapsedNanos, Map<String, ClassStats> classes) {
+            this.threads = threads;
+            this.elapsedNanos = elapsedNanos;
+            this.classes = classes;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        // from the end of the warmup until the last thread finished
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public List<String> getScenarioClasses() {
+            return new ArrayList<>(classes.keySet());
+        }
+
+        // recorded operations, including failed ones
+        public long getOperations() {
+            return classes.values().stream().mapToLong(stats -> stats.latency.getCount()).sum();
+        }
+
+        public long getOperations(String scenarioClass) {
+            return classes.get(scenarioClass).latency.getCount();
+        }
+
+        public long getErrors() {
+            return classes.values().stream().mapToLong(stats -> stats.errors.sum()).sum();
+        }
+
+        public long getErrors(String scenarioClass) {
+            return classes.get(scenarioClass).errors.sum();
+        }
+
+        public double getThroughput() {
+            return getOperations() * 1e9 / elapsedNanos;
+        }
+
+        public double getThroughput(String scenarioClass) {
+            return getOperations(scenarioClass) * 1e9 / elapsedNanos;
+        }
+
+        public HistogramAccessMetrics.LatencyHistogram getLatency(String scenarioClass) {
+            return classes.get(scenarioClass).latency;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder summary = new StringBuilder(String.format("%d operations on %d threads in %.1f s, %.0f ops/s, %d errors",
+                    getOperations(), threads, elapsedNanos / 1e9, getThroughput(), getErrors()));
+            summary.append(String.format("%n  %-20s %10s %10s %10s %10s %10s %10s %8s", "class", "ops", "ops/s", "mean us", "p50 us",
+                    "p99 us", "p999 us", "errors"));
+            classes.forEach((name, stats) -> summary.append(String.format("%n  %-20s %10d %10.0f %10d %10d %10d %10d %8d", name,
+                    stats.latency.getCount(), getThroughput(name), stats.latency.getMeanNanos() / 1000,
+                    stats.latency.getPercentileNanos(50) / 1000, stats.latency.getPercentileNanos(99) / 1000,
+                    stats.latency.getPercentileNanos(99.9) / 1000, stats.errors.sum())));
+            return summary.toString();
+        }
+    }
+
+    private static final class ScenarioClass {
+
+        final String name;
+        final int weight;
+        final boolean write;
+        final Operation operation;
+
+        ScenarioClass(String name, int weight, boolean write, Operation operation) {
+            this.name = name;
+            this.weight = weight;
+            this.write = write;
+            this.operation = operation;
+        }
+    }
+
+    private static final class ClassStats {
+
+        final HistogramAccessMetrics.LatencyHistogram latency = new HistogramAccessMetrics.LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+
+        void record(long nanos, boolean failed) {
+            latency.record(nanos);
+            if (failed) {
+                errors.increment();
+            }
+        }
+    }
+}
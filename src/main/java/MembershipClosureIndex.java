@@ -0,0 +1,360 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+
+/**
+ * Transitive closure of MEMBER_OF + HAS_SUPERGROUP for every principal, so that the user's groups can be read
+ * instead of re-derived with repeat() on every check.
+ *
+ * Vertices are mapped to int ordinals and each closure is kept as a sorted int[] of group ordinals, which keeps
+ * the per-user cost to a handful of ints. Register it with an EventStrategy (or call edgeAdded/edgeRemoved) to keep
+ * it current: a change only recomputes the closures of the vertices below the changed edge.
+ */
+public class MembershipClosureIndex extends GraphChangeListener {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final Map<Object, Integer> ordinals = new HashMap<>();
+    private Object[] ids = new Object[1024];
+    private int[][] parents = new int[1024][];
+    private int[][] children = new int[1024][];
+    private int[][] closures = new int[1024][];
+    private int size;
+    // (member << 32 | group) -> edges beyond the first between the pair, so that removing a parallel MEMBER_OF or
+    // HAS_SUPERGROUP edge keeps the link while another edge still connects them
+    private final Map<Long, Integer> extraEdges = new HashMap<>();
+
+    // visited marks for the closure walks, stamped with an epoch instead of being cleared
+    private int[] marks = new int[1024];
+    private int epoch;
+
+    public static MembershipClosureIndex build(Graph g) {
+        MembershipClosureIndex index = new MembershipClosureIndex();
+        // collect all edges first so that large groups get their member arrays sorted once instead of per insert
+        int[][] edges = {new int[1024], new int[1024]};
+        int[] count = {0};
+        g.traversal().E().hasLabel("MEMBER_OF", "HAS_SUPERGROUP").forEachRemaining(e -> {
+            if (count[0] == edges[0].length) {
+                edges[0] = Arrays.copyOf(edges[0], count[0] * 2);
+                edges[1] = Arrays.copyOf(edges[1], count[0] * 2);
+            }
+            edges[0][count[0]] = index.ordinal(e.outVertex().id());
+            edges[1][count[0]] = index.ordinal(e.inVertex().id());
+            count[0]++;
+        });
+        int[] parentCounts = new int[index.size];
+        int[] childCounts = new int[index.size];
+        for (int i = 0; i < count[0]; i++) {
+            parentCounts[edges[0][i]]++;
+            childCounts[edges[1][i]]++;
+        }
+        for (int i = 0; i < index.size; i++) {
+            index.parents[i] = parentCounts[i] == 0 ? EMPTY : new int[parentCounts[i]];
+            index.children[i] = childCounts[i] == 0 ? EMPTY : new int[childCounts[i]];
+        }
+        Arrays.fill(parentCounts, 0);
+        Arrays.fill(childCounts, 0);
+        for (int i = 0; i < count[0]; i++) {
+            int child = edges[0][i];
+            int parent = edges[1][i];
+            index.parents[child][parentCounts[child]++] = parent;
+            index.children[parent][childCounts[parent]++] = child;
+        }
+        for (int i = 0; i < index.size; i++) {
+            Arrays.sort(index.parents[i]);
+            for (int j = 1; j < index.parents[i].length; j++) {
+                if (index.parents[i][j] == index.parents[i][j - 1]) {
+                    index.extraEdges.merge(pair(i, index.parents[i][j]), 1, Integer::sum);
+                }
+            }
+            index.parents[i] = distinctSorted(index.parents[i]);
+            index.children[i] = distinctSorted(index.children[i]);
+        }
+        for (int i = 0; i < index.size; i++) {
+            index.closures[i] = index.computeClosure(i);
+        }
+        return index;
+    }
+
+    /**
+     * @return the ids of the given principal and of every group it reaches through MEMBER_OF and HAS_SUPERGROUP
+     */
+    public synchronized Set<Object> getPrincipalIds(Object vertexId) {
+        Integer ordinal = ordinals.get(vertexId);
+        int[] closure = ordinal == null ? EMPTY : closures[ordinal];
+        Set<Object> principalIds = new HashSet<>(closure.length * 2 + 2);
+        principalIds.add(vertexId);
+        for (int group : closure) {
+            principalIds.add(ids[group]);
+        }
+        return principalIds;
+    }
+
+    public synchronized boolean isMemberOf(Object vertexId, Object groupId) {
+        Integer ordinal = ordinals.get(vertexId);
+        Integer group = ordinals.get(groupId);
+        return ordinal != null && group != null && Arrays.binarySearch(closures[ordinal], group) >= 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // one MEMBER_OF or HAS_SUPERGROUP edge added between the two
+    public synchronized void addMembership(Object memberId, Object groupId) {
+        int member = ordinal(memberId);
+        if (link(member, ordinal(groupId))) {
+            recomputeFrom(member);
+        }
+    }
+
+    // one MEMBER_OF or HAS_SUPERGROUP edge removed between the two; they stay linked while another one is left
+    public synchronized void removeMembership(Object memberId, Object groupId) {
+        Integer member = ordinals.get(memberId);
+        Integer group = ordinals.get(groupId);
+        if (member != null && group != null && unlink(member, group)) {
+            recomputeFrom(member);
+        }
+    }
+
+    public synchronized void removeVertex(Object vertexId) {
+        Integer ordinal = ordinals.get(vertexId);
+        if (ordinal == null) {
+            return;
+        }
+        for (int parent : parents[ordinal]) {
+            children[parent] = without(children[parent], ordinal);
+        }
+        int[] orphans = children[ordinal];
+        for (int child : orphans) {
+            parents[child] = without(parents[child], ordinal);
+        }
+        parents[ordinal] = EMPTY;
+        children[ordinal] = EMPTY;
+        closures[ordinal] = EMPTY;
+        if (!extraEdges.isEmpty()) {
+            int removed = ordinal;
+            extraEdges.keySet().removeIf(key -> (int) (key >>> 32) == removed || key.intValue() == removed);
+        }
+        for (int child : orphans) {
+            recomputeFrom(child);
+        }
+    }
+
+    // links and unlinks the whole batch first, then recomputes everything below the changed members in one pass
+    @Override
+    public synchronized void batchApplied(AclChangeSet changes) {
+        Set<Integer> changed = new HashSet<>();
+        for (Edge edge : changes.getRemovedEdges()) {
+            Integer member = ordinals.get(edge.outVertex().id());
+            Integer group = ordinals.get(edge.inVertex().id());
+            if (isMembershipEdge(edge) && member != null && group != null && unlink(member, group)) {
+                changed.add(member);
+            }
+        }
+        for (Edge edge : changes.getAddedEdges()) {
+            if (isMembershipEdge(edge)) {
+                int member = ordinal(edge.outVertex().id());
+                if (link(member, ordinal(edge.inVertex().id()))) {
+                    changed.add(member);
+                }
+            }
+        }
+        if (!changed.isEmpty()) {
+            recomputeFrom(changed.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    private boolean isMembershipEdge(Edge edge) {
+        return edge.label().equals("MEMBER_OF") || edge.label().equals("HAS_SUPERGROUP");
+    }
+
+    @Override
+    public void edgeAdded(Edge edge) {
+        if (isMembershipEdge(edge)) {
+            addMembership(edge.outVertex().id(), edge.inVertex().id());
+        }
+    }
+
+    @Override
+    public void edgeRemoved(Edge edge) {
+        if (isMembershipEdge(edge)) {
+            removeMembership(edge.outVertex().id(), edge.inVertex().id());
+        }
+    }
+
+    @Override
+    public void vertexRemoved(Vertex vertex) {
+        removeVertex(vertex.id());
+    }
+
+    private int ordinal(Object vertexId) {
+        Integer ordinal = ordinals.get(vertexId);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            children = Arrays.copyOf(children, capacity);
+            closures = Arrays.copyOf(closures, capacity);
+            marks = Arrays.copyOf(marks, capacity);
+        }
+        ids[size] = vertexId;
+        parents[size] = EMPTY;
+        children[size] = EMPTY;
+        closures[size] = EMPTY;
+        ordinals.put(vertexId, size);
+        return size++;
+    }
+
+    // false when the pair was linked already and the edge only counts as another one between them
+    private boolean link(int child, int parent) {
+        if (Arrays.binarySearch(parents[child], parent) >= 0) {
+            extraEdges.merge(pair(child, parent), 1, Integer::sum);
+            return false;
+        }
+        parents[child] = with(parents[child], parent);
+        children[parent] = with(children[parent], child);
+        return true;
+    }
+
+    // false while another edge still links the pair, or when it was not linked
+    private boolean unlink(int child, int parent) {
+        long key = pair(child, parent);
+        Integer extra = extraEdges.get(key);
+        if (extra != null) {
+            if (extra == 1) {
+                extraEdges.remove(key);
+            } else {
+                extraEdges.put(key, extra - 1);
+            }
+            return false;
+        }
+        if (Arrays.binarySearch(parents[child], parent) < 0) {
+            return false;
+        }
+        parents[child] = without(parents[child], parent);
+        children[parent] = without(children[parent], child);
+        return true;
+    }
+
+    private static long pair(int child, int parent) {
+        return (long) child << 32 | (parent & 0xffffffffL);
+    }
+
+    private void recomputeFrom(int... changed) {
+        // only the changed vertices and everything below them can see a different set of groups
+        int[] affected = new int[Math.max(16, changed.length)];
+        int count = 0;
+        int visit = nextEpoch();
+        for (int vertex : changed) {
+            if (marks[vertex] != visit) {
+                marks[vertex] = visit;
+                affected[count++] = vertex;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            for (int child : children[affected[i]]) {
+                if (marks[child] != visit) {
+                    marks[child] = visit;
+                    if (count == affected.length) {
+                        affected = Arrays.copyOf(affected, count * 2);
+                    }
+                    affected[count++] = child;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            closures[affected[i]] = computeClosure(affected[i]);
+        }
+    }
+
+    private int[] computeClosure(int start) {
+        if (parents[start].length == 0) {
+            return EMPTY;
+        }
+        int[] reached = new int[8];
+        int count = 0;
+        int visit = nextEpoch();
+        marks[start] = visit;
+        for (int parent : parents[start]) {
+            if (marks[parent] != visit) {
+                marks[parent] = visit;
+                if (count == reached.length) {
+                    reached = Arrays.copyOf(reached, count * 2);
+                }
+                reached[count++] = parent;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            for (int parent : parents[reached[i]]) {
+                if (marks[parent] != visit) {
+                    marks[parent] = visit;
+                    if (count == reached.length) {
+                        reached = Arrays.copyOf(reached, count * 2);
+                    }
+                    reached[count++] = parent;
+                }
+            }
+        }
+        int[] closure = Arrays.copyOf(reached, count);
+        Arrays.sort(closure);
+        return closure;
+    }
+
+    private int nextEpoch() {
+        if (++epoch == 0) {
+            Arrays.fill(marks, 0);
+            epoch = 1;
+        }
+        return epoch;
+    }
+
+    private static int[] distinctSorted(int[] values) {
+        if (values.length < 2) {
+            return values;
+        }
+        Arrays.sort(values);
+        int count = 1;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] != values[count - 1]) {
+                values[count++] = values[i];
+            }
+        }
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+    private static int[] with(int[] sorted, int value) {
+        int index = Arrays.binarySearch(sorted, value);
+        if (index >= 0) {
+            return sorted;
+        }
+        int insertAt = -index - 1;
+        int[] result = new int[sorted.length + 1];
+        System.arraycopy(sorted, 0, result, 0, insertAt);
+        result[insertAt] = value;
+        System.arraycopy(sorted, insertAt, result, insertAt + 1, sorted.length - insertAt);
+        return result;
+    }
+
+    private static int[] without(int[] sorted, int value) {
+        int index = Arrays.binarySearch(sorted, value);
+        if (index < 0) {
+            return sorted;
+        }
+        if (sorted.length == 1) {
+            return EMPTY;
+        }
+        int[] result = new int[sorted.length - 1];
+        System.arraycopy(sorted, 0, result, 0, index);
+        System.arraycopy(sorted, index + 1, result, index, sorted.length - index - 1);
+        return result;
+    }
+}
@@ -0,0 +1,253 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Compressed set of non-negative ints, laid out like a roaring bitmap: values are split by their high 16 bits into
+ * chunks, and a chunk keeps the low 16 bits as a sorted char[] while it holds at most 4096 values and as a 65536 bit
+ * long[] beyond that, whichever is smaller. A union merges chunk by chunk, so overlapping sets cost a pass over their
+ * chunks, and over words once they are dense, rather than a probe per value.
+ *
+ * Not thread-safe while it is being modified; or() copies what it takes from the other bitmap, so a shared bitmap can be
+ * unioned into many others.
+ */
+public final class OrdinalBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1 << 10;
+
+    // high 16 bits, sorted, and the chunk at the same index
+    private int[] keys = new int[4];
+    private Chunk[] chunks = new Chunk[4];
+    private int size;
+
+    public boolean add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value " + value);
+        }
+        return chunk(value >>> 16).add((char) value);
+    }
+
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = Arrays.binarySearch(keys, 0, size, value >>> 16);
+        return index >= 0 && chunks[index].contains((char) value);
+    }
+
+    // adds every value of other to this one
+    public OrdinalBitmap or(OrdinalBitmap other) {
+        for (int i = 0; i < other.size; i++) {
+            int index = Arrays.binarySearch(keys, 0, size, other.keys[i]);
+            if (index >= 0) {
+                chunks[index].or(other.chunks[i]);
+            } else {
+                insert(-index - 1, other.keys[i], other.chunks[i].copy());
+            }
+        }
+        return this;
+    }
+
+    public long cardinality() {
+        long cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += chunks[i].cardinality;
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public OrdinalBitmap copy() {
+        OrdinalBitmap copy = new OrdinalBitmap();
+        return copy.or(this);
+    }
+
+    // number of chunks that switched to a bit array, for tests and sizing
+    int denseChunks() {
+        int dense = 0;
+        for (int i = 0; i < size; i++) {
+            if (chunks[i].bits != null) {
+                dense++;
+            }
+        }
+        return dense;
+    }
+
+    // values in ascending order; the bitmap must not be modified while iterating
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+
+            private int chunk;
+            // position in a sparse chunk, or the index of the current word in a dense one
+            private int position;
+            private long word = size > 0 && chunks[0].bits != null ? chunks[0].bits[0] : 0;
+
+            @Override
+            public boolean hasNext() {
+                while (chunk < size) {
+                    Chunk current = chunks[chunk];
+                    if (current.bits == null) {
+                        if (position < current.cardinality) {
+                            return true;
+                        }
+                    } else {
+                        while (word == 0 && position + 1 < WORDS) {
+                            word = current.bits[++position];
+                        }
+                        if (word != 0) {
+                            return true;
+                        }
+                    }
+                    chunk++;
+                    position = 0;
+                    word = chunk < size && chunks[chunk].bits != null ? chunks[chunk].bits[0] : 0;
+                }
+                return false;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Chunk current = chunks[chunk];
+                int high = keys[chunk] << 16;
+                if (current.bits == null) {
+                    return high | current.values[position++];
+                }
+                int bit = Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                return high | position << 6 | bit;
+            }
+        };
+    }
+
+    private Chunk chunk(int key) {
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        if (index >= 0) {
+            return chunks[index];
+        }
+        Chunk chunk = new Chunk();
+        insert(-index - 1, key, chunk);
+        return chunk;
+    }
+
+    private void insert(int index, int key, Chunk chunk) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            chunks = Arrays.copyOf(chunks, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(chunks, index, chunks, index + 1, size - index);
+        keys[index] = key;
+        chunks[index] = chunk;
+        size++;
+    }
+
+    private static final class Chunk {
+
+        // sorted low bits while sparse, null once dense
+        char[] values = new char[4];
+        // null while sparse
+        long[] bits;
+        int cardinality;
+
+        boolean contains(char low) {
+            if (bits != null) {
+                return (bits[low >>> 6] & 1L << low) != 0;
+            }
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        boolean add(char low) {
+            if (bits != null) {
+                long before = bits[low >>> 6];
+                bits[low >>> 6] = before | 1L << low;
+                if (before == bits[low >>> 6]) {
+                    return false;
+                }
+                cardinality++;
+                return true;
+            }
+            int index = Arrays.binarySearch(values, 0, cardinality, low);
+            if (index >= 0) {
+                return false;
+            }
+            if (cardinality == ARRAY_MAX) {
+                toBits();
+                return add(low);
+            }
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(cardinality * 2, ARRAY_MAX));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = low;
+            cardinality++;
+            return true;
+        }
+
+        void or(Chunk other) {
+            if (other.bits != null) {
+                if (bits == null) {
+                    toBits();
+                }
+                cardinality = 0;
+                for (int i = 0; i < WORDS; i++) {
+                    bits[i] |= other.bits[i];
+                    cardinality += Long.bitCount(bits[i]);
+                }
+            } else if (bits != null) {
+                for (int i = 0; i < other.cardinality; i++) {
+                    add(other.values[i]);
+                }
+            } else {
+                mergeValues(other);
+            }
+        }
+
+        private void mergeValues(Chunk other) {
+            char[] merged = new char[cardinality + other.cardinality];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < other.cardinality) {
+                char next;
+                if (j == other.cardinality || i < cardinality && values[i] < other.values[j]) {
+                    next = values[i++];
+                } else if (i == cardinality || other.values[j] < values[i]) {
+                    next = other.values[j++];
+                } else {
+                    next = values[i++];
+                    j++;
+                }
+                merged[count++] = next;
+            }
+            values = merged;
+            cardinality = count;
+            if (count > ARRAY_MAX) {
+                toBits();
+            }
+        }
+
+        private void toBits() {
+            bits = new long[WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                bits[values[i] >>> 6] |= 1L << values[i];
+            }
+            values = null;
+        }
+
+        Chunk copy() {
+            Chunk copy = new Chunk();
+            copy.cardinality = cardinality;
+            copy.values = values == null ? null : Arrays.copyOf(values, Math.max(cardinality, 1));
+            copy.bits = bits == null ? null : bits.clone();
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+import com.orientechnologies.orient.core.db.ODatabaseSession;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.exception.ORecordNotFoundException;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OSchema;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.ODirection;
+import com.orientechnologies.orient.core.record.OEdge;
+import com.orientechnologies.orient.core.record.OElement;
+import com.orientechnologies.orient.core.record.OVertex;
+import com.orientechnologies.orient.core.sql.executor.OResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.tinkerpop.gremlin.structure.Element;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+
+/**
+ * Access checks against an OrientDB database, with the whole check pushed down into one query.
+ *
+ * The query walks up IN_FOLDER from the resource until the nearest containers with an explicit grant of exactly the
+ * requested level (a MATCH with while:), expands the user's groups once (TRAVERSE over MEMBER_OF and HAS_SUPERGROUP) and
+ * applies the public / owner / grant rule to the resource and those containers, so a check is one round trip however
+ * deep the hierarchies are. Works the same on an embedded memory: or plocal: database and on a remote server.
+ */
+public class OrientAclStore {
+
+    static final String[] VERTEX_CLASSES = {"User", "Group", "Folder", "Term"};
+    static final String[] EDGE_CLASSES = {"HAS_PERMISSION", "MEMBER_OF", "HAS_SUPERGROUP", "IN_FOLDER", "OWNED_BY"};
+
+    static final String HAS_ACCESS_QUERY = ""
+            + "SELECT count(*) AS granted FROM ("
+            + "  MATCH {class: V, where: (name = :resource)}"
+            + "    .out('IN_FOLDER'){while: (@class IN ['Folder', 'Term'] AND inE('HAS_PERMISSION')[permissionMask = :mask].size() = 0),"
+            + "                      where: ($depth = 0 OR inE('HAS_PERMISSION')[permissionMask = :mask].size() > 0), as: source}"
+            + "  RETURN expand(source))"
+            + " LET $principals = (TRAVERSE out('MEMBER_OF', 'HAS_SUPERGROUP') FROM (SELECT FROM User WHERE name = :user))"
+            // only consider public access if the request is for read
+            + " WHERE (:read = true AND public = true)"
+            + "    OR out('OWNED_BY')[@class = 'User' AND name = :user].size() > 0"
+            + "    OR inE('HAS_PERMISSION')[(permissionMask & :bit) > 0].outV().@rid CONTAINSANY $principals.@rid";
+
+    private final ODatabaseSession db;
+
+    public OrientAclStore(ODatabaseSession db) {
+        this.db = db;
+    }
+
+    /**
+     * Creates the vertex and edge classes and the indexes the access query relies on, and migrates grants that
+     * predate the permission mask. Safe to call on an existing database.
+     */
+    public void createSchema() {
+        OSchema schema = db.getMetadata().getSchema();
+        OClass v = schema.getClass("V");
+        if (v.getProperty("name") == null) {
+            v.createProperty("name", OType.STRING);
+            v.createIndex("V.name", OClass.INDEX_TYPE.NOTUNIQUE, "name");
+        }
+        for (String name : VERTEX_CLASSES) {
+            if (!schema.existsClass(name)) {
+                db.createVertexClass(name);
+            }
+        }
+        for (String name : EDGE_CLASSES) {
+            if (!schema.existsClass(name)) {
+                db.createEdgeClass(name);
+            }
+        }
+        migrateMasks(db);
+    }
+
+    /**
+     * The SQL counterpart of PermissionMask.migrate: writes the mask onto HAS_PERMISSION edges that only carry the
+     * permission string, which the access query would otherwise read as granting nothing.
+     *
+     * @return number of edges migrated
+     */
+    static long migrateMasks(ODatabaseDocument db) {
+        if (!db.getMetadata().getSchema().existsClass("HAS_PERMISSION")) {
+            return 0;
+        }
+        long migrated = 0;
+        for (String permission : PermissionMask.LEVELS) {
+            try (OResultSet result = db.command("UPDATE HAS_PERMISSION SET " + PermissionMask.PROPERTY + " = ?"
+                    + " WHERE " + PermissionMask.PROPERTY + " IS NULL AND permission = ?", PermissionMask.impliedMask(permission), permission)) {
+                migrated += result.hasNext() ? result.next().<Number>getProperty("count").longValue() : 0;
+            }
+        }
+        return migrated;
+    }
+
+    /**
+     * Copies every vertex and edge of the given graph, with their properties, into the database.
+     *
+     * @return number of vertices imported
+     */
+    public long importGraph(Graph g) {
+        // the loader creates any class the graph uses before its first batch begins
+        Set<String> vertexClasses = g.traversal().V().label().toSet();
+        Set<String> edgeClasses = g.traversal().E().label().toSet();
+        try (OrientBulkLoader loader = new OrientBulkLoader(db, BulkLoader.DEFAULT_BATCH_SIZE, vertexClasses, edgeClasses)) {
+            Map<Object, Vertex> handles = new HashMap<>();
+            g.vertices().forEachRemaining(vertex -> handles.put(vertex.id(), loader.addVertex(vertex.label(), keyValues(vertex))));
+            g.edges().forEachRemaining(edge ->
+                    loader.addEdge(handles.get(edge.outVertex().id()), edge.label(), handles.get(edge.inVertex().id()), keyValues(edge)));
+            return loader.getVertexCount();
+        }
+    }
+
+    private static Object[] keyValues(Element element) {
+        List<Object> keyValues = new ArrayList<>();
+        element.properties().forEachRemaining(p -> {
+            keyValues.add(p.key());
+            keyValues.add(p.value());
+        });
+        return keyValues.toArray();
+    }
+
+    /**
+     * Applies a batch in one transaction, with vertices named by record id (an ORID or its string form). Operations
+     * that find the database already in the requested state are skipped; any failure, such as an id that names no
+     * vertex, rolls the whole batch back.
+     *
+     * @return number of operations that changed the database
+     */
+    public int apply(AclBatch batch) {
+        db.begin();
+        try {
+            // the out edges of each vertex and label, read once however many operations start at the vertex
+            Map<List<Object>, List<OEdge>> edges = new HashMap<>();
+            int changed = 0;
+            for (AclBatch.Operation operation : batch.operations()) {
+                if (apply(operation, edges)) {
+                    changed++;
+                }
+            }
+            db.commit();
+            return changed;
+        } catch (RuntimeException x) {
+            db.rollback();
+            throw x;
+        }
+    }
+
+    private boolean apply(AclBatch.Operation operation, Map<List<Object>, List<OEdge>> edges) {
+        OVertex out = vertex(operation.outId);
+        OVertex in = operation.inId == null ? null : vertex(operation.inId);
+        if (operation.kind == AclBatch.Kind.SET_PUBLIC) {
+            if (Boolean.valueOf(operation.value).equals(out.getProperty("public"))
+                    || !operation.value && out.getProperty("public") == null) {
+                return false;
+            }
+            out.setProperty("public", operation.value);
+            out.save();
+            return true;
+        }
+        List<OEdge> current = new ArrayList<>();
+        for (OEdge edge : edges.computeIfAbsent(Arrays.asList(out.getIdentity(), operation.label), key -> {
+            List<OEdge> loaded = new ArrayList<>();
+            out.getEdges(ODirection.OUT, operation.label).forEach(loaded::add);
+            return loaded;
+        })) {
+            // moves replace every parent
+            if (operation.kind == AclBatch.Kind.MOVE || edge.getTo().getIdentity().equals(in.getIdentity())) {
+                current.add(edge);
+            }
+        }
+        switch (operation.kind) {
+            case GRANT:
+                int mask = PermissionMask.impliedMask(operation.permission);
+                if (current.size() == 1 && Integer.valueOf(mask).equals(current.get(0).getProperty(PermissionMask.PROPERTY))) {
+                    return false;
+                }
+                current.forEach(OEdge::delete);
+                OEdge grant = out.addEdge(in, operation.label);
+                grant.setProperty("permission", operation.permission);
+                grant.setProperty(PermissionMask.PROPERTY, mask);
+                grant.save();
+                return true;
+            case ADD_EDGE:
+                if (!current.isEmpty()) {
+                    return false;
+                }
+                out.addEdge(in, operation.label).save();
+                return true;
+            case MOVE:
+                if (in == null ? current.isEmpty() : current.size() == 1 && current.get(0).getTo().getIdentity().equals(in.getIdentity())) {
+                    return false;
+                }
+                current.forEach(OEdge::delete);
+                if (in != null) {
+                    out.addEdge(in, operation.label).save();
+                }
+                return true;
+            default:
+                // REVOKE and REMOVE_EDGE
+                current.forEach(OEdge::delete);
+                return !current.isEmpty();
+        }
+    }
+
+    private OVertex vertex(Object id) {
+        ORID rid = id instanceof ORID ? (ORID) id : new ORecordId(String.valueOf(id));
+        OElement record;
+        try {
+            record = rid.isValid() ? db.load(rid) : null;
+        } catch (ORecordNotFoundException x) {
+            record = null;
+        }
+        if (record == null || !record.isVertex()) {
+            throw new IllegalArgumentException("No vertex with id " + id);
+        }
+        return record.asVertex().get();
+    }
+
+    public boolean hasAccess(String resourceId, String userId, String permission) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("resource", resourceId);
+        params.put("user", userId);
+        params.put("mask", PermissionMask.impliedMask(permission));
+        params.put("bit", PermissionMask.bit(permission));
+        params.put("read", "R".equals(permission));
+        try (OResultSet result = db.query(HAS_ACCESS_QUERY, params)) {
+            return result.hasNext() && result.next().<Number>getProperty("granted").longValue() > 0;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+import com.orientechnologies.orient.core.db.ODatabaseSession;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.metadata.schema.OSchema;
+import com.orientechnologies.orient.core.record.OEdge;
+import com.orientechnologies.orient.core.record.OVertex;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.util.detached.DetachedVertex;
+import org.apache.tinkerpop.gremlin.structure.util.detached.DetachedVertexProperty;
+
+/**
+ * BulkLoader for an OrientDB database, writing through the native API in one transaction per batch.
+ *
+ * Vertices are handed back as DetachedVertex with the record id as id. Record ids are temporary until their batch is
+ * committed and OrientDB then updates them in place, so the handles stay valid across batches. Schema changes are not
+ * allowed inside a transaction, so the vertex and edge classes are declared up front and created before the first
+ * batch begins; writing an undeclared class fails rather than committing the open batch early.
+ */
+public class OrientBulkLoader extends BulkLoader {
+
+    private final ODatabaseSession db;
+    private final Set<String> vertexClasses;
+    private final Set<String> edgeClasses;
+
+    public OrientBulkLoader(ODatabaseSession db) {
+        this(db, DEFAULT_BATCH_SIZE);
+    }
+
+    // the ACL classes of OrientAclStore
+    public OrientBulkLoader(ODatabaseSession db, int batchSize) {
+        this(db, batchSize, Arrays.asList(OrientAclStore.VERTEX_CLASSES), Arrays.asList(OrientAclStore.EDGE_CLASSES));
+    }
+
+    public OrientBulkLoader(ODatabaseSession db, int batchSize, Collection<String> vertexClasses, Collection<String> edgeClasses) {
+        super(batchSize);
+        this.db = db;
+        this.vertexClasses = new HashSet<>(vertexClasses);
+        this.edgeClasses = new HashSet<>(edgeClasses);
+        OSchema schema = db.getMetadata().getSchema();
+        this.vertexClasses.stream().filter(name -> !schema.existsClass(name)).forEach(db::createVertexClass);
+        this.edgeClasses.stream().filter(name -> !schema.existsClass(name)).forEach(db::createEdgeClass);
+        db.begin();
+    }
+
+    @Override
+    protected Vertex writeVertex(String label, Object... keyValues) {
+        checkDeclared(vertexClasses, label);
+        OVertex vertex = db.newVertex(label);
+        DetachedVertex.Builder handle = DetachedVertex.build().setLabel(label);
+        for (int i = 0; i < keyValues.length; i += 2) {
+            String key = (String) keyValues[i];
+            vertex.setProperty(key, keyValues[i + 1]);
+            handle.addProperty(DetachedVertexProperty.build().setId(key).setLabel(key).setValue(keyValues[i + 1]).create());
+        }
+        vertex.save();
+        return handle.setId(vertex.getIdentity()).create();
+    }
+
+    @Override
+    protected void writeEdge(Vertex out, String label, Vertex in, Object... keyValues) {
+        checkDeclared(edgeClasses, label);
+        OEdge edge = load(out).addEdge(load(in), label);
+        for (int i = 0; i < keyValues.length; i += 2) {
+            edge.setProperty((String) keyValues[i], keyValues[i + 1]);
+        }
+        edge.save();
+    }
+
+    @Override
+    protected void writeProperty(Vertex vertex, String key, Object value) {
+        OVertex record = load(vertex);
+        record.setProperty(key, value);
+        record.save();
+    }
+
+    @Override
+    protected void commit() {
+        db.commit();
+        db.begin();
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        db.commit();
+    }
+
+    private OVertex load(Vertex vertex) {
+        return db.load((ORID) vertex.id());
+    }
+
+    private static void checkDeclared(Set<String> classes, String name) {
+        if (!classes.contains(name)) {
+            throw new IllegalArgumentException("Class " + name + " was not declared when the loader was created");
+        }
+    }
+}
@@ -0,0 +1,305 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.__;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Property;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+
+/**
+ * Access checks over several graphs that each hold part of the resources.
+ *
+ * Resources are sharded by containment: a top-level container and everything below it over IN_FOLDER, with its
+ * grants and owners, live in one partition, so the ascent to inherited grants never leaves it. Users, groups and their
+ * membership are replicated to every partition, so each partition is evaluated by its own PermissionTraverser exactly
+ * as a single graph would be. Checks go to the partitions that hold a resource of that name; listings run on every
+ * partition in parallel and are merged into pages, with a cursor that keeps each partition's position.
+ */
+public class PartitionedAcl implements AutoCloseable {
+
+    private final List<Graph> partitions;
+    private final List<PermissionTraverser> traversers = new ArrayList<>();
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    // resource name -> partitions holding a vertex of that name, looked up on first use
+    private final Map<String, int[]> routes = new ConcurrentHashMap<>();
+
+    public PartitionedAcl(List<Graph> partitions) {
+        this(partitions, g -> new PermissionTraverser());
+    }
+
+    /**
+     * Runs partitions on one thread each, up to one per core.
+     *
+     * @param traversers creates the traverser of each partition; traversers compile and cache against their graph,
+     *                   so they are not shared
+     */
+    public PartitionedAcl(List<Graph> partitions, Function<Graph, PermissionTraverser> traversers) {
+        this(partitions, traversers, null);
+    }
+
+    public PartitionedAcl(List<Graph> partitions, Function<Graph, PermissionTraverser> traversers, Executor executor) {
+        this.partitions = new ArrayList<>(partitions);
+        partitions.forEach(g -> this.traversers.add(traversers.apply(g)));
+        this.ownedExecutor = executor == null ? defaultExecutor(partitions.size()) : null;
+        this.executor = executor == null ? ownedExecutor : executor;
+    }
+
+    private static ExecutorService defaultExecutor(int partitions) {
+        return Executors.newFixedThreadPool(Math.max(1, Math.min(partitions, Runtime.getRuntime().availableProcessors())), runnable -> {
+            Thread thread = new Thread(runnable, "acl-partition");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Copies a graph into partitions: users, groups and the edges between them into each, every IN_FOLDER connected
+     * set of other vertices into the partition with the fewest vertices so far, largest sets first. HAS_PERMISSION
+     * and OWNED_BY go with their resource; other edges between resources in different partitions are not copied.
+     * The loaders are flushed but not closed.
+     *
+     * @return number of resources copied to each partition
+     */
+    public static long[] split(Graph source, List<? extends BulkLoader> partitions) {
+        // union-find over containment, with the smaller id string as the root so that the split is deterministic
+        Map<Object, Object> roots = new HashMap<>();
+        source.traversal().V().not(__.hasLabel("User", "Group")).id().forEachRemaining(id -> roots.put(id, id));
+        source.traversal().E().hasLabel("IN_FOLDER").forEachRemaining(e -> {
+            if (roots.containsKey(e.outVertex().id()) && roots.containsKey(e.inVertex().id())) {
+                Object a = root(roots, e.outVertex().id());
+                Object b = root(roots, e.inVertex().id());
+                if (!a.equals(b)) {
+                    boolean aFirst = String.valueOf(a).compareTo(String.valueOf(b)) < 0;
+                    roots.put(aFirst ? b : a, aFirst ? a : b);
+                }
+            }
+        });
+        Map<Object, List<Object>> components = new HashMap<>();
+        roots.keySet().forEach(id -> components.computeIfAbsent(root(roots, id), root -> new ArrayList<>()).add(id));
+        List<List<Object>> bySize = new ArrayList<>(components.values());
+        bySize.sort(Comparator.<List<Object>>comparingInt(List::size).reversed()
+                .thenComparing(component -> String.valueOf(root(roots, component.get(0)))));
+
+        Map<Object, Integer> owners = new HashMap<>();
+        long[] sizes = new long[partitions.size()];
+        for (List<Object> component : bySize) {
+            int smallest = 0;
+            for (int p = 1; p < sizes.length; p++) {
+                if (sizes[p] < sizes[smallest]) {
+                    smallest = p;
+                }
+            }
+            sizes[smallest] += component.size();
+            for (Object id : component) {
+                owners.put(id, smallest);
+            }
+        }
+
+        List<Map<Object, Vertex>> copies = new ArrayList<>();
+        partitions.forEach(loader -> copies.add(new HashMap<>()));
+        source.vertices().forEachRemaining(v -> {
+            Integer owner = owners.get(v.id());
+            Object[] keyValues = keyValues(v.properties());
+            for (int p = 0; p < partitions.size(); p++) {
+                if (owner == null || owner == p) {
+                    copies.get(p).put(v.id(), partitions.get(p).addVertex(v.label(), keyValues));
+                }
+            }
+        });
+        source.edges().forEachRemaining(e -> {
+            Integer outOwner = owners.get(e.outVertex().id());
+            Integer inOwner = owners.get(e.inVertex().id());
+            if (outOwner != null && inOwner != null && !outOwner.equals(inOwner)) {
+                return;
+            }
+            Integer owner = outOwner != null ? outOwner : inOwner;
+            Object[] keyValues = keyValues(e.properties());
+            for (int p = 0; p < partitions.size(); p++) {
+                if (owner == null || owner == p) {
+                    partitions.get(p).addEdge(copies.get(p).get(e.outVertex().id()), e.label(), copies.get(p).get(e.inVertex().id()), keyValues);
+                }
+            }
+        });
+        partitions.forEach(BulkLoader::flush);
+        return sizes;
+    }
+
+    private static Object root(Map<Object, Object> roots, Object id) {
+        Object root = id;
+        while (!roots.get(root).equals(root)) {
+            root = roots.get(root);
+        }
+        // path compression, so that long containment chains are only walked once
+        while (!roots.get(id).equals(root)) {
+            Object next = roots.get(id);
+            roots.put(id, root);
+            id = next;
+        }
+        return root;
+    }
+
+    private static Object[] keyValues(Iterator<? extends Property<?>> properties) {
+        List<Object> keyValues = new ArrayList<>();
+        properties.forEachRemaining(property -> {
+            keyValues.add(property.key());
+            keyValues.add(property.value());
+        });
+        return keyValues.toArray();
+    }
+
+    public int size() {
+        return partitions.size();
+    }
+
+    public Graph getPartition(int partition) {
+        return partitions.get(partition);
+    }
+
+    // partitions holding a vertex of that name; names not found yet are looked up again next time
+    int[] route(String resourceId) {
+        int[] route = routes.get(resourceId);
+        if (route != null) {
+            return route;
+        }
+        route = new int[0];
+        for (int p = 0; p < partitions.size(); p++) {
+            if (partitions.get(p).traversal().V().has("name", resourceId).hasNext()) {
+                route = Arrays.copyOf(route, route.length + 1);
+                route[route.length - 1] = p;
+            }
+        }
+        if (route.length > 0) {
+            routes.put(resourceId, route);
+        }
+        return route;
+    }
+
+    // single check entry point - false when no partition holds the resource
+    public boolean canAccess(String resourceId, String userId, String permission) {
+        for (int p : route(resourceId)) {
+            if (traversers.get(p).canAccess(partitions.get(p), resourceId, userId, permission)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // batch entry point - each partition checks its share of the resources, all partitions at once
+    public Map<String, Boolean> hasAccess(Collection<String> resourceIds, String userId, String permission) {
+        Map<String, Boolean> results = new LinkedHashMap<>();
+        Map<Integer, List<String>> byPartition = new HashMap<>();
+        for (String resourceId : resourceIds) {
+            results.put(resourceId, false);
+            for (int p : route(resourceId)) {
+                byPartition.computeIfAbsent(p, key -> new ArrayList<>()).add(resourceId);
+            }
+        }
+        List<CompletableFuture<Map<String, Boolean>>> scattered = new ArrayList<>();
+        byPartition.forEach((p, ids) -> scattered.add(CompletableFuture.supplyAsync(
+                () -> traversers.get(p).hasAccess(partitions.get(p), ids, userId, permission), executor)));
+        for (CompletableFuture<Map<String, Boolean>> partial : scattered) {
+            join(partial).forEach((resourceId, allowed) -> results.merge(resourceId, allowed, Boolean::logicalOr));
+        }
+        return results;
+    }
+
+    /**
+     * Listing entry point - a page of at most limit resources from all partitions, optionally restricted to one label.
+     *
+     * Each round asks every partition that is not exhausted for an equal share of what the page still needs, all at
+     * once, and takes everything they return, so that each partition's cursor is exact; a partition that runs short
+     * leaves its share to the others in the next round. Pages hold the resources of each round in partition order.
+     */
+    public AccessPage listAccessible(String userId, String permission, String label, int limit, String cursor) {
+        List<String> positions = decodeCursor(cursor);
+        List<Vertex> page = new ArrayList<>();
+        int pageSize = limit > 0 ? limit : Integer.MAX_VALUE;
+        while (page.size() < pageSize) {
+            List<Integer> active = new ArrayList<>();
+            for (int p = 0; p < positions.size(); p++) {
+                if (positions.get(p) != null) {
+                    active.add(p);
+                }
+            }
+            if (active.isEmpty()) {
+                break;
+            }
+            int remaining = pageSize - page.size();
+            List<CompletableFuture<AccessPage>> scattered = new ArrayList<>();
+            for (int i = 0; i < active.size(); i++) {
+                int p = active.get(i);
+                // unlimited stays unlimited; otherwise shares add up to exactly what the page still needs
+                int share = limit > 0 ? remaining / active.size() + (i < remaining % active.size() ? 1 : 0) : 0;
+                String position = positions.get(p).isEmpty() ? null : positions.get(p);
+                scattered.add(limit > 0 && share == 0 ? null : CompletableFuture.supplyAsync(
+                        () -> traversers.get(p).listAccessible(partitions.get(p), userId, permission, label, share, position), executor));
+            }
+            for (int i = 0; i < active.size(); i++) {
+                if (scattered.get(i) != null) {
+                    AccessPage partial = join(scattered.get(i));
+                    page.addAll(partial.getResources());
+                    positions.set(active.get(i), partial.getNextCursor());
+                }
+            }
+        }
+        return new AccessPage(page, encodeCursor(positions));
+    }
+
+    // one entry per partition: "x" when it is exhausted, otherwise "c" and its cursor, empty before its first page
+    private List<String> decodeCursor(String cursor) {
+        List<String> positions = new ArrayList<>();
+        if (cursor == null || cursor.isEmpty()) {
+            partitions.forEach(g -> positions.add(""));
+            return positions;
+        }
+        for (String entry : AccessPage.decodeCursor(cursor)) {
+            positions.add(entry.startsWith("c") ? entry.substring(1) : null);
+        }
+        if (positions.size() != partitions.size()) {
+            throw new IllegalArgumentException("Cursor for " + positions.size() + " partitions, not " + partitions.size());
+        }
+        return positions;
+    }
+
+    private static String encodeCursor(List<String> positions) {
+        if (positions.stream().allMatch(position -> position == null)) {
+            return null;
+        }
+        List<String> entries = new ArrayList<>();
+        positions.forEach(position -> entries.add(position == null ? "x" : "c" + position));
+        return AccessPage.encodeCursor(entries);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException x) {
+            // the partition's own exception, as a single graph would have thrown it
+            if (x.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) x.getCause();
+            }
+            throw x;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+}
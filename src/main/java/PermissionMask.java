@@ -0,0 +1,105 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiPredicate;
+import org.apache.tinkerpop.gremlin.process.traversal.P;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+
+/**
+ * Bitmask encoding of the permission on HAS_PERMISSION edges.
+ *
+ * Every level gets one bit, and an edge stores the mask of everything its permission implies (A = A|W|R, W = W|R,
+ * R = R), so "does this grant cover R" is a single bitwise test instead of an or() over strings. A new level only
+ * needs a bit and its implied levels here. The "permission" string stays on the edge for readability.
+ *
+ * Every evaluator reads the mask alone: an edge that only carries the string grants nothing until migrate() has run,
+ * which PermissionTraverser.createIndexes and OrientAclStore.createSchema do as part of store setup.
+ */
+public final class PermissionMask {
+
+    public static final String PROPERTY = "permissionMask";
+
+    // ordered from weakest to strongest; the index of a level is its bit
+    public static final List<String> LEVELS = Collections.unmodifiableList(Arrays.asList("R", "W", "A"));
+
+    // implied levels per level, in LEVELS order
+    private static final String[][] IMPLIES = {
+            {"R"},
+            {"R", "W"},
+            {"R", "W", "A"}
+    };
+
+    private PermissionMask() {
+    }
+
+    public static int bit(String permission) {
+        int level = LEVELS.indexOf(permission);
+        return level < 0 ? 0 : 1 << level;
+    }
+
+    public static int impliedMask(String permission) {
+        int level = LEVELS.indexOf(permission);
+        if (level < 0) {
+            return 0;
+        }
+        int mask = 0;
+        for (String implied : IMPLIES[level]) {
+            mask |= bit(implied);
+        }
+        return mask;
+    }
+
+    public static boolean implies(int mask, String permission) {
+        return (mask & bit(permission)) != 0;
+    }
+
+    /**
+     * @return predicate on PROPERTY matching every grant that covers the given permission
+     */
+    public static P<Integer> covers(String permission) {
+        return new P<>(Bitwise.ANY_OF, bit(permission));
+    }
+
+    /**
+     * @return the mask of an edge, 0 (covering and equal to no permission) if it has not been migrated
+     */
+    public static int of(Edge hasPermission) {
+        return hasPermission.<Integer>property(PROPERTY).orElse(0);
+    }
+
+    public static Edge addHasPermission(Vertex principal, Vertex resource, String permission) {
+        return principal.addEdge("HAS_PERMISSION", resource, edgeProperties(permission));
+    }
+
+    /**
+     * @return the key/value pairs of a HAS_PERMISSION edge granting the given permission
+     */
+    public static Object[] edgeProperties(String permission) {
+        return new Object[]{"permission", permission, PROPERTY, impliedMask(permission)};
+    }
+
+    /**
+     * Writes the mask onto HAS_PERMISSION edges that only carry the permission string.
+     *
+     * @return number of edges migrated
+     */
+    public static long migrate(Graph g) {
+        long migrated = 0;
+        for (Edge edge : g.traversal().E().hasLabel("HAS_PERMISSION").hasNot(PROPERTY).has("permission").toList()) {
+            edge.property(PROPERTY, impliedMask(edge.value("permission")));
+            migrated++;
+        }
+        return migrated;
+    }
+
+    enum Bitwise implements BiPredicate<Integer, Integer> {
+        ANY_OF {
+            @Override
+            public boolean test(Integer mask, Integer bits) {
+                return mask != null && (mask & bits) != 0;
+            }
+        }
+    }
+}
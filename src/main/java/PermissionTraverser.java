@@ -1,76 +1,320 @@
 import static org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.__.or;
 
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.tinkerpop.gremlin.orientdb.OrientGraph;
+import org.apache.tinkerpop.gremlin.process.traversal.P;
 import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
 import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
 import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.__;
 import org.apache.tinkerpop.gremlin.process.traversal.step.TraversalOptionParent.Pick;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Edge;
 import org.apache.tinkerpop.gremlin.structure.Graph;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
 
 public class PermissionTraverser {
 
+    // above this many principals the upward strategy's within() list costs more than walking down from the grants
+    static final int AUTO_MAX_UPWARD_PRINCIPALS = 1000;
+
+    public enum EvaluationStrategy {
+        // start at every principal holding a HAS_PERMISSION edge and walk down to subgroups and members
+        GROUPS_DOWNWARD,
+        // expand the user's groups once by walking up, then match HAS_PERMISSION holders against that set
+        USER_UPWARD,
+        // upward, unless the user expands to more than AUTO_MAX_UPWARD_PRINCIPALS principals
+        AUTO
+    }
+
+    private final EvaluationStrategy strategy;
+
+    private MembershipClosureIndex membershipIndex;
+
+    private CompiledAclSnapshot compiledAcl;
+
+    private VertexIdCache vertexIdCache;
+
+    private AccessMetrics metrics;
+
+    private BranchPlanner planner;
+
+    private SupernodeMembership supernodeMembership;
+
+    // per permission, pools of compiled checks for: other resources, containers, and both again with upward principals
+    private final Map<String, List<Queue<AccessTemplate>>> templates = new ConcurrentHashMap<>();
+    private final AtomicInteger compiledTemplates = new AtomicInteger();
+
+    public PermissionTraverser() {
+        this(EvaluationStrategy.AUTO);
+    }
+
+    public PermissionTraverser(EvaluationStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    // consult a precomputed membership closure instead of walking up the group hierarchy on every call
+    public PermissionTraverser withMembershipIndex(MembershipClosureIndex membershipIndex) {
+        this.membershipIndex = membershipIndex;
+        return this;
+    }
+
+    // answer checks from a precompiled ACL snapshot; the user's principals are always expanded upward in this mode
+    public PermissionTraverser withCompiledAcl(CompiledAclSnapshot compiledAcl) {
+        this.compiledAcl = compiledAcl;
+        return this;
+    }
+
+    // resolve user and resource ids through a shared cache of vertex ids
+    public PermissionTraverser withVertexIdCache(VertexIdCache vertexIdCache) {
+        this.vertexIdCache = vertexIdCache;
+        return this;
+    }
+
+    // publish the report of every checkAccess call; hasAccess and the other entry points are never instrumented
+    public PermissionTraverser withMetrics(AccessMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    // order rule branches by their observed cost per grant, learning from a sample of exhaustively evaluated checks
+    public PermissionTraverser withBranchPlanner(BranchPlanner planner) {
+        this.planner = planner;
+        return this;
+    }
+
+    // probe compressed member sets of very large groups instead of walking their MEMBER_OF edges downward
+    public PermissionTraverser withSupernodeMembership(SupernodeMembership supernodeMembership) {
+        this.supernodeMembership = supernodeMembership;
+        return this;
+    }
+
+    // index the id properties used to resolve users and resources, so lookups don't scan every vertex, and migrate
+    // grants that predate the permission mask, which every evaluator would otherwise read as granting nothing
+    public static void createIndexes(Graph g) {
+        if (g instanceof TinkerGraph) {
+            TinkerGraph tinkerGraph = (TinkerGraph) g;
+            for (String key : Arrays.asList("name", "public")) {
+                if (!tinkerGraph.getIndexedKeys(Vertex.class).contains(key)) {
+                    tinkerGraph.createIndex(key, Vertex.class);
+                }
+            }
+        } else if (g instanceof OrientGraph) {
+            // indexes on the base vertex class cover every label
+            OrientGraph orientGraph = (OrientGraph) g;
+            for (String key : Arrays.asList("name", "public")) {
+                if (!orientGraph.getVertexIndexedKeys("V").contains(key)) {
+                    BaseConfiguration config = new BaseConfiguration();
+                    config.setProperty("type", "NOTUNIQUE");
+                    config.setProperty("keytype", key.equals("public") ? OType.BOOLEAN : OType.STRING);
+                    orientGraph.createVertexIndex(key, "V", config);
+                }
+            }
+            OrientAclStore.migrateMasks(orientGraph.database());
+            return;
+        }
+        PermissionMask.migrate(g);
+    }
+
     private GraphTraversal<Object, Object> isPublic() {
         // resource is public (if permission requested is read)
         return __.has("public", true);
     }
 
-    private GraphTraversal<Vertex, Vertex> isOwnedByUser(Vertex user) {
+    private GraphTraversal<Vertex, Vertex> isOwnedByUser(UserBinding binding, AccessCheckReport.BranchStats stats) {
         // resource is owned by the given user
-        return __.out("OWNED_BY").is(user);
+        GraphTraversal<Vertex, Vertex> owners = __.out("OWNED_BY");
+        if (stats != null) {
+            owners = owners.sideEffect(t -> stats.traversed(0));
+        }
+        return owners.filter(t -> t.get().equals(binding.user));
     }
 
-    private GraphTraversal getMappedPermission(String permission) {
-        // actual implementation should be more elegant
-        if (permission.equals("R")) {
-            return __.has("permission", "R").or().has("permission", "W").or().has("permission", "A");
-        } else if (permission.equals("W")) {
-            return __.has("permission", "W").or().has("permission", "A");
+    private GraphTraversal<Edge, Edge> getMappedPermission(String permission) {
+        // grants whose implied-permission mask covers the requested permission
+        return __.<Edge>has(PermissionMask.PROPERTY, PermissionMask.covers(permission));
+    }
+
+    private GraphTraversal<Vertex, Edge> explicitPermissionTraversal(String permission) {
+        // grants of exactly the requested permission, which is where inheritance stops
+        return __.inE("HAS_PERMISSION").has(PermissionMask.PROPERTY, PermissionMask.impliedMask(permission));
+    }
+
+    private GraphTraversal<Vertex, Vertex> permissionedPrincipalsTraversal(String permission, AccessCheckReport.BranchStats stats) {
+        if (stats == null) {
+            return __.inE("HAS_PERMISSION").where(getMappedPermission(permission)).outV();
         }
-        return __.has("permission", permission);
+        return __.inE("HAS_PERMISSION").sideEffect(t -> stats.edges++).where(getMappedPermission(permission)).outV()
+                .sideEffect(t -> stats.vertices++);
     }
 
-    private GraphTraversal<Vertex, Vertex> permissionedPrincipalsTraversal(String permission) {
-        return __.inE("HAS_PERMISSION").where(getMappedPermission(permission)).outV();
+    private GraphTraversal<Vertex, Vertex> resourcePermissionedToUserTraversal(UserBinding binding, boolean upward, String permission) {
+        return resourcePermissionedToUserTraversal(binding, upward, permission, planner != null ? planner.getRuleOrder() : BranchPlanner.RULE_BRANCHES);
     }
 
-    private GraphTraversal<Vertex, Vertex> resourcePermissionedToUserTraversal(Vertex user, String permission) {
+    private GraphTraversal<Vertex, Vertex> resourcePermissionedToUserTraversal(UserBinding binding, boolean upward, String permission,
+            List<AccessCheckReport.Branch> ruleOrder) {
         List<Traversal<?, ?>> traversals = new ArrayList<>();
-        if (permission.equals("R")) {
-            // only consider public access if the request is for read
-            traversals.add(isPublic());
+        for (AccessCheckReport.Branch branch : ruleOrder) {
+            Traversal<?, ?> traversal = ruleBranch(branch, binding, upward, permission, null);
+            if (traversal != null) {
+                traversals.add(traversal);
+            }
         }
-        traversals.add(isOwnedByUser(user));
-        traversals.add(isPermissionedToPrincipal(user, permission));
-        traversals.add(isPermissionedToPrincipalGroupsHierarchy(user, permission));
 
         return __.or(traversals.toArray(new Traversal<?, ?>[]{}));
     }
 
-    private GraphTraversal<Vertex, Vertex> isPermissionedToPrincipal(Vertex user, String permission) {
+    // one branch of the rule, null where it does not apply; with stats, its steps count what they visit for checkAccess
+    private Traversal<?, ?> ruleBranch(AccessCheckReport.Branch branch, UserBinding binding, boolean upward, String permission,
+            AccessCheckReport.BranchStats stats) {
+        switch (branch) {
+            case PUBLIC:
+                // only consider public access if the request is for read
+                return permission.equals("R") ? isPublic() : null;
+            case OWNER:
+                return isOwnedByUser(binding, stats);
+            case USER_GRANT:
+                // upward, the user is one of the principals of the group grant branch
+                return upward ? null : isPermissionedToPrincipal(binding, permission, stats);
+            default:
+                return upward
+                        ? isPermissionedToAnyPrincipal(binding, permission, stats)
+                        : isPermissionedToPrincipalGroupsHierarchy(binding, permission, stats);
+        }
+    }
+
+    private GraphTraversal<Vertex, Vertex> isPermissionedToPrincipal(UserBinding binding, String permission, AccessCheckReport.BranchStats stats) {
         // resource is accessible directly by the given user
-        return permissionedPrincipalsTraversal(permission).is(user);
+        return permissionedPrincipalsTraversal(permission, stats).filter(t -> t.get().equals(binding.user));
     }
 
-    private GraphTraversal<Vertex, Vertex> isPermissionedToPrincipalGroupsHierarchy(Vertex user, String permission) {
-        // resource is owned by the given user
-        // TODO add until to optimize
-        return permissionedPrincipalsTraversal(permission).repeat(
-                // dive down to subgroups, members to see if user is included there
-                __.in("MEMBER_OF", "HAS_SUPERGROUP")
-        ).emit().is(user);
+    private GraphTraversal<Vertex, Vertex> isPermissionedToPrincipalGroupsHierarchy(UserBinding binding, String permission,
+            AccessCheckReport.BranchStats stats) {
+        // resource is accessible to a group the given user is in, directly or through subgroups
+        if (supernodeMembership != null) {
+            return permissionedPrincipalsTraversal(permission, stats).filter(t -> supernodeMembership.reaches(t.get(), binding.user));
+        }
+        if (planner != null) {
+            // only groups have members, so the repeat is skipped entirely when no group holds a grant here
+            return permissionedPrincipalsTraversal(permission, stats).hasLabel("Group").repeat(
+                    membersTraversal(stats)
+            ).emit().filter(t -> t.get().equals(binding.user));
+        }
+        return permissionedPrincipalsTraversal(permission, stats).repeat(
+                membersTraversal(stats)
+        ).emit().filter(t -> t.get().equals(binding.user));
+    }
+
+    private static GraphTraversal<Vertex, Vertex> membersTraversal(AccessCheckReport.BranchStats stats) {
+        // dive down to subgroups, members to see if user is included there; dedup() is the visited set of the check, so
+        // overlapping hierarchies are walked once and a HAS_SUPERGROUP cycle ends, and the walk is pulled only until
+        // the user is emitted
+        if (stats == null) {
+            return __.in("MEMBER_OF", "HAS_SUPERGROUP").dedup();
+        }
+        // the same visited set kept by hand, so that revisits are counted
+        Set<Object> visited = new HashSet<>();
+        return __.in("MEMBER_OF", "HAS_SUPERGROUP").sideEffect(t -> stats.traversed(t.loops() + 1))
+                .filter(t -> stats.firstVisit(visited, t.get().id()));
+    }
+
+    private GraphTraversal<Vertex, Vertex> isPermissionedToAnyPrincipal(UserBinding binding, String permission, AccessCheckReport.BranchStats stats) {
+        // resource is accessible to the user or to one of the groups the user was expanded to
+        return permissionedPrincipalsTraversal(permission, stats).filter(t -> binding.principalIds.contains(t.get().id()));
+    }
+
+    private Set<Object> getPrincipalIds(Graph g, Vertex user) {
+        return getPrincipalIds(g, user, Integer.MAX_VALUE);
+    }
+
+    private Set<Object> getPrincipalIds(Graph g, Vertex user, int limit) {
+        // the user plus every group reachable by walking up membership and supergroup edges; the walk stops once it
+        // has found limit principals, so an oversized set is never materialised
+        if (membershipIndex != null) {
+            return membershipIndex.getPrincipalIds(user.id());
+        }
+        GraphTraversal<Vertex, Vertex> principals = g.traversal().V(user.id()).emit().repeat(__.out("MEMBER_OF", "HAS_SUPERGROUP").dedup()).dedup();
+        return (limit == Integer.MAX_VALUE ? principals : principals.limit(limit)).id().toSet();
+    }
+
+    private Set<Object> resolvePrincipalIds(Graph g, Vertex user, EvaluationStrategy strategy) {
+        // null means the group hierarchy is evaluated downward from the grants
+        switch (strategy) {
+            case GROUPS_DOWNWARD:
+                return null;
+            case USER_UPWARD:
+                return getPrincipalIds(g, user);
+            default:
+                // one more than the threshold is enough to know that the user is over it
+                Set<Object> principalIds = getPrincipalIds(g, user, AUTO_MAX_UPWARD_PRINCIPALS + 1);
+                return principalIds.size() <= AUTO_MAX_UPWARD_PRINCIPALS ? principalIds : null;
+        }
     }
 
     private Vertex getUserById(Graph g, String userId) {
+        if (vertexIdCache != null) {
+            Object[] ids = vertexIdCache.resolve(g, "User", userId, () -> g.traversal().V().hasLabel("User").has("name", userId).id().toList());
+            if (ids != null) {
+                return g.vertices(ids[0]).next();
+            }
+        }
         return g.traversal().V().hasLabel("User").has("name", userId).next(); // TODO switch to userId
     }
 
+    private Iterator<Vertex> getResourceVertices(Graph g, String resourceId) {
+        if (vertexIdCache != null) {
+            Object[] ids = vertexIdCache.resolve(g, null, resourceId, () -> g.traversal().V().has("name", resourceId).id().toList());
+            if (ids != null) {
+                return g.vertices(ids);
+            }
+        }
+        return g.traversal().V().has("name", resourceId);
+    }
+
     private GraphTraversal<Vertex, Vertex> getResourceTraversal(Graph g, String resourceId) {
+        if (vertexIdCache != null) {
+            Object[] ids = vertexIdCache.resolve(g, null, resourceId, () -> g.traversal().V().has("name", resourceId).id().toList());
+            if (ids != null) {
+                return g.traversal().V(ids);
+            }
+        }
         return g.traversal().V().has("name", resourceId);  // TODO actual resource id prop by type
     }
 
     private GraphTraversal<Vertex, Vertex> containerTraversal(TraversalProvider permissionTraversalProvider, String permission, String... edgeLabels) {
+        return containerTraversal(permissionTraversalProvider, permission, planner != null && planner.isAscentFirst(), edgeLabels);
+    }
+
+    private GraphTraversal<Vertex, Vertex> containerTraversal(TraversalProvider permissionTraversalProvider, String permission, boolean ascentFirst,
+            String... edgeLabels) {
+        if (ascentFirst) {
+            return __.where(or(
+                    containerHierarchyHasPermission(permissionTraversalProvider, permission, edgeLabels),
+                    resourceHasPermission(permissionTraversalProvider)
+            ));
+        }
         return __.where(or(
                 resourceHasPermission(permissionTraversalProvider),
                 containerHierarchyHasPermission(permissionTraversalProvider, permission, edgeLabels)
@@ -82,31 +326,675 @@ public class PermissionTraverser {
     }
 
     private GraphTraversal<Vertex, Vertex> containerHierarchyHasPermission(TraversalProvider permissionTraversalProvider, String permission, String... edgeLabels) {
-        return __.until(__.inE("HAS_PERMISSION").has("permission", permission))
+        // containers reached over several paths are ascended from once, which also ends IN_FOLDER cycles
+        return __.until(explicitPermissionTraversal(permission))
                 .repeat((Traversal)
-                        __.out(edgeLabels)
+                        __.out(edgeLabels).dedup()
                 ).where(permissionTraversalProvider.getTraversal());
     }
 
-    private GraphTraversal<Vertex, Object> resourceViaPermissionedContainerTraversal(GraphTraversal<Vertex, Vertex> resource, String permission, TraversalProvider permissionTraversalProvider) {
-        return resource.choose(__.label())
+    private GraphTraversal<Vertex, Vertex> resourceViaPermissionedContainerTraversal(GraphTraversal<Vertex, Vertex> resource, String permission, TraversalProvider permissionTraversalProvider) {
+        return resource.<String, Vertex>choose(__.label())
                 .option("Folder", containerTraversal(permissionTraversalProvider, permission, "IN_FOLDER"))
                 .option("Term", containerTraversal(permissionTraversalProvider, permission, "IN_FOLDER"))
                 .option(Pick.none, permissionTraversalProvider.getTraversal());
     }
 
+    private static boolean isIndexed(Graph g) {
+        return g instanceof TinkerGraph ? ((TinkerGraph) g).getIndexedKeys(Vertex.class).contains("name")
+                : g instanceof OrientGraph && ((OrientGraph) g).getVertexIndexedKeys("V").contains("name");
+    }
+
+    private boolean isContainer(Vertex resource) {
+        return resource.label().equals("Folder") || resource.label().equals("Term");
+    }
+
     public interface TraversalProvider {
         GraphTraversal<Vertex, Vertex> getTraversal();
     }
 
     // main entry point - single resource
-    public GraphTraversal<Vertex, Object> hasAccess(Graph g, String resourceId, String userId, String permission) {
-        return hasAccess(g, getResourceTraversal(g, resourceId), userId, permission);
+    public GraphTraversal<Vertex, Vertex> hasAccess(Graph g, String resourceId, String userId, String permission) {
+        return hasAccess(g, resourceId, userId, permission, strategy);
+    }
+
+    public GraphTraversal<Vertex, Vertex> hasAccess(Graph g, String resourceId, String userId, String permission, EvaluationStrategy strategy) {
+        return hasAccess(g, getResourceTraversal(g, resourceId), userId, permission, strategy);
     }
 
     // main entry point - resource traversal
-    public GraphTraversal<Vertex, Object> hasAccess(Graph g, GraphTraversal<Vertex, Vertex> resource, String userId, String permission) {
+    public GraphTraversal<Vertex, Vertex> hasAccess(Graph g, GraphTraversal<Vertex, Vertex> resource, String userId, String permission) {
+        return hasAccess(g, resource, userId, permission, strategy);
+    }
+
+    public GraphTraversal<Vertex, Vertex> hasAccess(Graph g, GraphTraversal<Vertex, Vertex> resource, String userId, String permission,
+            EvaluationStrategy strategy) {
+        return hasAccess(g, resource, resolveUser(g, userId, strategy), permission);
+    }
+
+    // the user vertex plus its principals as the given strategy needs them, reusable across checks for that user
+    public static final class ResolvedUser {
+
+        final String userId;
+        final Vertex user;
+        // null when the group hierarchy is evaluated downward from the grants
+        final Set<Object> principalIds;
+
+        ResolvedUser(String userId, Vertex user, Set<Object> principalIds) {
+            this.userId = userId;
+            this.user = user;
+            this.principalIds = principalIds;
+        }
+
+        public Vertex getUser() {
+            return user;
+        }
+    }
+
+    // the user a rule traversal checks against, read by its filters as they run so that one compiled traversal serves any user
+    private static final class UserBinding {
+
+        Vertex user;
+        Set<Object> principalIds;
+
+        UserBinding() {
+        }
+
+        UserBinding(ResolvedUser resolvedUser) {
+            bind(resolvedUser);
+        }
+
+        void bind(ResolvedUser resolvedUser) {
+            user = resolvedUser.user;
+            principalIds = resolvedUser.principalIds;
+        }
+    }
+
+    /**
+     * The whole check for one kind of resource and permission, compiled with strategies applied and run once per
+     * resource. Checks borrow it from the pool, bind their user and return it, so a steady stream of checks builds no
+     * traversals.
+     */
+    private static final class AccessTemplate {
+
+        final Traversal.Admin<Vertex, Vertex> traversal;
+        final UserBinding binding;
+        // the plan it was compiled for, so that a replanned order replaces it
+        final List<AccessCheckReport.Branch> ruleOrder;
+        final boolean ascentFirst;
+
+        AccessTemplate(Traversal.Admin<Vertex, Vertex> traversal, UserBinding binding, List<AccessCheckReport.Branch> ruleOrder,
+                boolean ascentFirst) {
+            this.traversal = traversal;
+            this.binding = binding;
+            this.ruleOrder = ruleOrder;
+            this.ascentFirst = ascentFirst;
+        }
+
+        boolean test(Vertex resource, ResolvedUser resolvedUser) {
+            binding.bind(resolvedUser);
+            try {
+                traversal.reset();
+                traversal.addStart(traversal.getTraverserGenerator().generate(resource, traversal.getStartStep(), 1L));
+                return traversal.hasNext();
+            } finally {
+                binding.user = null;
+                binding.principalIds = null;
+            }
+        }
+    }
+
+    public ResolvedUser resolveUser(Graph g, String userId) {
+        return resolveUser(g, userId, strategy);
+    }
+
+    public ResolvedUser resolveUser(Graph g, String userId, EvaluationStrategy strategy) {
         Vertex user = getUserById(g, userId);
-        return resourceViaPermissionedContainerTraversal(resource, permission, () -> resourcePermissionedToUserTraversal(user, permission));
+        // the compiled snapshot always needs the upward expansion
+        return new ResolvedUser(userId, user, compiledAcl != null ? getPrincipalIds(g, user) : resolvePrincipalIds(g, user, strategy));
+    }
+
+    // main entry point - resource traversal and an already resolved user
+    public GraphTraversal<Vertex, Vertex> hasAccess(Graph g, GraphTraversal<Vertex, Vertex> resource, ResolvedUser resolvedUser, String permission) {
+        Vertex user = resolvedUser.user;
+        Set<Object> principalIds = resolvedUser.principalIds;
+        if (compiledAcl != null) {
+            return resource.filter(t -> compiledAcl.hasAccess(t.get().id(), user.id(), principalIds, permission));
+        }
+        if (planner != null && planner.shouldSample()) {
+            return resource.filter(t -> sampledAccess(g, t.get(), user, resolvedUser.userId, principalIds, permission));
+        }
+        UserBinding binding = new UserBinding(resolvedUser);
+        return resourceViaPermissionedContainerTraversal(resource, permission,
+                () -> resourcePermissionedToUserTraversal(binding, principalIds != null, permission));
+    }
+
+    public GraphTraversal<Vertex, Vertex> hasAccess(Graph g, String resourceId, ResolvedUser resolvedUser, String permission) {
+        return hasAccess(g, getResourceTraversal(g, resourceId), resolvedUser, permission);
+    }
+
+    // boolean entry point - the answer of hasAccess(...).hasNext(), evaluated on pooled precompiled traversals
+    public boolean canAccess(Graph g, String resourceId, String userId, String permission) {
+        return canAccess(g, resourceId, userId, permission, strategy);
+    }
+
+    public boolean canAccess(Graph g, String resourceId, String userId, String permission, EvaluationStrategy strategy) {
+        return canAccess(g, resourceId, resolveUser(g, userId, strategy), permission);
+    }
+
+    public boolean canAccess(Graph g, String resourceId, ResolvedUser resolvedUser, String permission) {
+        for (Iterator<Vertex> resources = getResourceVertices(g, resourceId); resources.hasNext(); ) {
+            if (canAccess(g, resources.next(), resolvedUser, permission)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean canAccess(Graph g, Vertex resource, ResolvedUser resolvedUser, String permission) {
+        if (compiledAcl != null) {
+            return compiledAcl.hasAccess(resource.id(), resolvedUser.user.id(), resolvedUser.principalIds, permission);
+        }
+        if (planner != null && planner.shouldSample()) {
+            return sampledAccess(g, resource, resolvedUser.user, resolvedUser.userId, resolvedUser.principalIds, permission);
+        }
+        boolean container = isContainer(resource);
+        boolean upward = resolvedUser.principalIds != null;
+        List<AccessCheckReport.Branch> ruleOrder = planner != null ? planner.getRuleOrder() : BranchPlanner.RULE_BRANCHES;
+        boolean ascentFirst = planner != null && planner.isAscentFirst();
+        Queue<AccessTemplate> pool = templates.computeIfAbsent(permission, key -> Arrays.asList(
+                new ConcurrentLinkedQueue<>(), new ConcurrentLinkedQueue<>(), new ConcurrentLinkedQueue<>(), new ConcurrentLinkedQueue<>()))
+                .get((container ? 1 : 0) + (upward ? 2 : 0));
+        AccessTemplate template = pool.poll();
+        while (template != null && (template.ascentFirst != ascentFirst || !template.ruleOrder.equals(ruleOrder))) {
+            template = pool.poll();
+        }
+        if (template == null) {
+            template = compileTemplate(g, permission, container, upward, ruleOrder, ascentFirst);
+        }
+        try {
+            return template.test(resource, resolvedUser);
+        } finally {
+            pool.offer(template);
+        }
+    }
+
+    private AccessTemplate compileTemplate(Graph g, String permission, boolean container, boolean upward,
+            List<AccessCheckReport.Branch> ruleOrder, boolean ascentFirst) {
+        UserBinding binding = new UserBinding();
+        TraversalProvider rule = () -> resourcePermissionedToUserTraversal(binding, upward, permission, ruleOrder);
+        Traversal.Admin<Vertex, Vertex> traversal = (container
+                ? containerTraversal(rule, permission, ascentFirst, "IN_FOLDER")
+                : __.<Vertex>start().where(rule.getTraversal())).asAdmin();
+        traversal.setStrategies(g.traversal().getStrategies());
+        traversal.applyStrategies();
+        compiledTemplates.incrementAndGet();
+        return new AccessTemplate(traversal, binding, ruleOrder, ascentFirst);
+    }
+
+    // templates compiled so far; stays at a few per permission unless many checks run at once
+    int getCompiledTemplates() {
+        return compiledTemplates.get();
+    }
+
+    // batch entry point - one user, many resources
+    public Map<String, Boolean> hasAccess(Graph g, Collection<String> resourceIds, String userId, String permission) {
+        return hasAccess(g, resourceIds, userId, permission, strategy);
+    }
+
+    public Map<String, Boolean> hasAccess(Graph g, Collection<String> resourceIds, String userId, String permission, EvaluationStrategy strategy) {
+        // the user and its groups are resolved once, and container answers are shared across the whole batch
+        Predicate<Vertex> accessible = accessPredicate(g, resolveUser(g, userId, strategy), permission, true);
+
+        Map<String, Boolean> results = new LinkedHashMap<>();
+        resourceIds.forEach(resourceId -> results.put(resourceId, false));
+        // with an index, per id lookups beat a single within() over every vertex
+        Iterator<Vertex> resources = vertexIdCache != null || isIndexed(g)
+                ? results.keySet().stream().flatMap(resourceId -> getResourceTraversal(g, resourceId).toStream()).iterator()
+                : g.traversal().V().has("name", P.within(results.keySet()));
+        resources.forEachRemaining(resource -> {
+            String resourceId = resource.value("name");
+            if (!results.get(resourceId)) {
+                results.put(resourceId, accessible.test(resource));
+            }
+        });
+        return results;
+    }
+
+    // filter step entry point - keeps the vertices of any traversal that the user can access, in place
+    public <S, E> GraphTraversal<S, E> hasAccess(GraphTraversal<S, E> traversal, String userId, String permission) {
+        return traversal.asAdmin().addStep(new HasAccessStep<>(traversal.asAdmin(), this, userId, permission));
+    }
+
+    /**
+     * Decides access for one user vertex by vertex, memoizing rule and container answers so that vertices sharing
+     * ancestors share the work. The rule traversal is compiled once and the IN_FOLDER ascent walks the structure API,
+     * so no traversal is built per vertex. Not thread-safe.
+     *
+     * @param containersPossible false when the vertices are known not to be folders or terms, which skips the ascent
+     */
+    Predicate<Vertex> accessPredicate(Graph g, ResolvedUser resolvedUser, String permission, boolean containersPossible) {
+        Vertex user = resolvedUser.user;
+        Set<Object> principalIds = resolvedUser.principalIds;
+        if (compiledAcl != null) {
+            return resource -> compiledAcl.hasAccess(resource.id(), user.id(), principalIds, permission);
+        }
+        Traversal.Admin<Vertex, Vertex> rule = __.<Vertex>start().where(
+                resourcePermissionedToUserTraversal(new UserBinding(resolvedUser), principalIds != null, permission)).asAdmin();
+        rule.setStrategies(g.traversal().getStrategies());
+        rule.applyStrategies();
+        Predicate<Vertex> ruleMatches = vertex -> {
+            rule.reset();
+            rule.addStart(rule.getTraverserGenerator().generate(vertex, rule.getStartStep(), 1L));
+            return rule.hasNext();
+        };
+        Map<Object, Boolean> ruleResults = new HashMap<>();
+        Map<Object, Boolean> inheritedResults = new HashMap<>();
+        int explicitMask = PermissionMask.impliedMask(permission);
+        boolean ascentFirst = planner != null && planner.isAscentFirst();
+        return resource -> {
+            if (!containersPossible || !isContainer(resource)) {
+                return ruleResults.computeIfAbsent(resource.id(), id -> ruleMatches.test(resource));
+            }
+            if (ascentFirst) {
+                return inheritedAccess(resource, explicitMask, inheritedResults, ruleResults, ruleMatches)
+                        || ruleResults.computeIfAbsent(resource.id(), id -> ruleMatches.test(resource));
+            }
+            return ruleResults.computeIfAbsent(resource.id(), id -> ruleMatches.test(resource))
+                    || inheritedAccess(resource, explicitMask, inheritedResults, ruleResults, ruleMatches);
+        };
+    }
+
+    private static boolean inheritedAccess(Vertex container, int explicitMask, Map<Object, Boolean> inheritedResults,
+            Map<Object, Boolean> ruleResults, Predicate<Vertex> ruleMatches) {
+        return inheritedAccess(container, explicitMask, inheritedResults, ruleResults, ruleMatches, new HashMap<>(), new int[]{Integer.MAX_VALUE});
+    }
+
+    private static boolean inheritedAccess(Vertex container, int explicitMask, Map<Object, Boolean> inheritedResults,
+            Map<Object, Boolean> ruleResults, Predicate<Vertex> ruleMatches, Map<Object, Integer> resolving, int[] lowest) {
+        // same rule as containerHierarchyHasPermission, memoized so that siblings share their ancestors' answers
+        Boolean known = inheritedResults.get(container.id());
+        if (known != null) {
+            return known;
+        }
+        Integer depth = resolving.get(container.id());
+        if (depth != null) {
+            // an IN_FOLDER cycle back to a container still being resolved, which finds whatever this path would
+            lowest[0] = Math.min(lowest[0], depth);
+            return false;
+        }
+        int own = resolving.size();
+        resolving.put(container.id(), own);
+        // the shallowest container still being resolved that the answer below depends on
+        int[] low = {Integer.MAX_VALUE};
+        boolean result = false;
+        if (hasExplicitPermission(container, explicitMask)) {
+            result = ruleResults.computeIfAbsent(container.id(), id -> ruleMatches.test(container));
+        } else {
+            for (Iterator<Vertex> parents = container.vertices(Direction.OUT, "IN_FOLDER"); parents.hasNext() && !result; ) {
+                result = inheritedAccess(parents.next(), explicitMask, inheritedResults, ruleResults, ruleMatches, resolving, low);
+            }
+        }
+        resolving.remove(container.id());
+        // a denial that leaned on an unresolved ancestor is only provisional, so it is left for that ancestor to decide
+        if (result || low[0] >= own) {
+            inheritedResults.put(container.id(), result);
+        }
+        lowest[0] = Math.min(lowest[0], low[0]);
+        return result;
+    }
+
+    private static boolean hasExplicitPermission(Vertex vertex, int explicitMask) {
+        for (Iterator<Edge> grants = vertex.edges(Direction.IN, "HAS_PERMISSION"); grants.hasNext(); ) {
+            if (PermissionMask.of(grants.next()) == explicitMask) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // instrumented entry point - evaluates the same rule one branch at a time and reports where the work went
+    public AccessCheckReport checkAccess(Graph g, String resourceId, String userId, String permission) {
+        return checkAccess(g, resourceId, userId, permission, strategy);
+    }
+
+    public AccessCheckReport checkAccess(Graph g, String resourceId, String userId, String permission, EvaluationStrategy strategy) {
+        // the compiled snapshot is bypassed so that the report always describes the traversal rule
+        AccessCheckReport report = new AccessCheckReport(resourceId, userId, permission);
+        long start = System.nanoTime();
+        Vertex user = getUserById(g, userId);
+        long userFound = System.nanoTime();
+        List<Vertex> resources = getResourceTraversal(g, resourceId).toList();
+        long resourcesFound = System.nanoTime();
+        Set<Object> principalIds = resolvePrincipalIds(g, user, strategy);
+        long principalsResolved = System.nanoTime();
+        if (principalIds != null) {
+            report.setPrincipalCount(principalIds.size());
+        }
+        UserBinding binding = new UserBinding(new ResolvedUser(userId, user, principalIds));
+        for (Vertex resource : resources) {
+            if (instrumentedAccess(g, resource, binding, permission, report, false)) {
+                break;
+            }
+        }
+        long end = System.nanoTime();
+        report.setPhaseNanos(AccessCheckReport.Phase.USER_LOOKUP, userFound - start);
+        report.setPhaseNanos(AccessCheckReport.Phase.RESOURCE_LOOKUP, resourcesFound - userFound);
+        report.setPhaseNanos(AccessCheckReport.Phase.PRINCIPAL_EXPANSION, principalsResolved - resourcesFound);
+        report.setPhaseNanos(AccessCheckReport.Phase.EVALUATION, end - principalsResolved);
+        if (metrics != null) {
+            metrics.record(report);
+        }
+        if (planner != null && planner != metrics) {
+            planner.record(report);
+        }
+        return report;
+    }
+
+    private boolean sampledAccess(Graph g, Vertex resource, Vertex user, String userId, Set<Object> principalIds, String permission) {
+        AccessCheckReport report = new AccessCheckReport(String.valueOf(resource.property("name").orElse(resource.id())), userId, permission);
+        long start = System.nanoTime();
+        boolean allowed = instrumentedAccess(g, resource, new UserBinding(new ResolvedUser(userId, user, principalIds)), permission, report, true);
+        report.setPhaseNanos(AccessCheckReport.Phase.EVALUATION, System.nanoTime() - start);
+        planner.record(report);
+        return allowed;
+    }
+
+    private boolean instrumentedAccess(Graph g, Vertex resource, UserBinding binding, String permission, AccessCheckReport report,
+            boolean exhaustive) {
+        // exhaustive evaluation tries every branch and the ascent even after a match, so that BranchPlanner sees how
+        // often each one would have granted access on its own
+        long start = System.nanoTime();
+        boolean direct = instrumentedRuleMatches(g, resource, binding, permission, report, exhaustive);
+        report.ruleNanos += System.nanoTime() - start;
+        report.directMatch |= direct;
+        if (!isContainer(resource)) {
+            return direct;
+        }
+        report.container = true;
+        if (direct && !exhaustive) {
+            return true;
+        }
+        start = System.nanoTime();
+        boolean inherited = instrumentedAscent(g, resource, binding, permission, report, exhaustive);
+        report.ascentNanos += System.nanoTime() - start;
+        report.ascended = true;
+        report.inheritedMatch |= inherited;
+        return direct || inherited;
+    }
+
+    private boolean instrumentedAscent(Graph g, Vertex resource, UserBinding binding, String permission, AccessCheckReport report,
+            boolean exhaustive) {
+        // same ascent as containerHierarchyHasPermission, one level at a time so that depth and fan-out can be counted
+        AccessCheckReport.BranchStats ascent = report.getBranch(AccessCheckReport.Branch.CONTAINER_ASCENT);
+        ascent.evaluations++;
+        Set<Object> visited = new HashSet<>();
+        visited.add(resource.id());
+        List<Vertex> level = Collections.singletonList(resource);
+        for (int depth = 0; !level.isEmpty(); depth++) {
+            List<Vertex> next = new ArrayList<>();
+            for (Vertex container : level) {
+                long start = System.nanoTime();
+                boolean explicit = g.traversal().V(container.id()).where(explicitPermissionTraversal(permission)).hasNext();
+                List<Vertex> parents = explicit ? Collections.emptyList() : g.traversal().V(container.id()).out("IN_FOLDER").toList();
+                ascent.nanos += System.nanoTime() - start;
+                if (explicit) {
+                    // the resource's own rule was evaluated already
+                    if (depth > 0 && instrumentedRuleMatches(g, container, binding, permission, report, exhaustive)) {
+                        ascent.hits++;
+                        return true;
+                    }
+                    continue;
+                }
+                for (Vertex parent : parents) {
+                    ascent.traversed(depth + 1);
+                    if (ascent.firstVisit(visited, parent.id())) {
+                        next.add(parent);
+                    }
+                }
+            }
+            level = next;
+        }
+        return false;
+    }
+
+    private boolean instrumentedRuleMatches(Graph g, Vertex source, UserBinding binding, String permission, AccessCheckReport report,
+            boolean exhaustive) {
+        // the branches of resourcePermissionedToUserTraversal in their default order, built by the same ruleBranch
+        boolean upward = binding.principalIds != null;
+        boolean matched = false;
+        for (AccessCheckReport.Branch branch : BranchPlanner.RULE_BRANCHES) {
+            if (matched && !exhaustive) {
+                return true;
+            }
+            matched |= instrumentedBranch(g, source, branch, binding, upward, permission, report);
+        }
+        return matched;
+    }
+
+    private boolean instrumentedBranch(Graph g, Vertex source, AccessCheckReport.Branch branch, UserBinding binding, boolean upward,
+            String permission, AccessCheckReport report) {
+        AccessCheckReport.BranchStats stats = report.getBranch(branch);
+        Traversal<?, ?> traversal = ruleBranch(branch, binding, upward, permission, stats);
+        if (traversal == null) {
+            return false;
+        }
+        stats.evaluations++;
+        long start = System.nanoTime();
+        boolean matched = g.traversal().V(source.id()).where(traversal).hasNext();
+        stats.nanos += System.nanoTime() - start;
+        if (matched) {
+            if (upward && branch == AccessCheckReport.Branch.GROUP_GRANT
+                    && g.traversal().V(source.id()).where(isPermissionedToPrincipal(binding, permission, null)).hasNext()) {
+                // upward, one traversal covers the user's own grants too; the hit goes to the branch that granted
+                branch = AccessCheckReport.Branch.USER_GRANT;
+                stats = report.getBranch(branch);
+            }
+            stats.hits++;
+            report.matched(branch, source.id());
+        }
+        return matched;
+    }
+
+    private static String sortKey(Vertex vertex) {
+        return String.valueOf(vertex.id());
+    }
+
+    private static final Comparator<Vertex> BY_SORT_KEY = Comparator.comparing(PermissionTraverser::sortKey);
+
+    private static int lowerBound(List<Vertex> sorted, String key) {
+        int low = 0;
+        int high = sorted.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortKey(sorted.get(mid)).compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private List<Vertex> grantedResources(Graph g, Vertex user, Set<Object> principalIds, String permission) {
+        // every resource the rule matches on directly: granted to a principal, owned by the user, or public for reads
+        Map<String, Vertex> granted = new TreeMap<>();
+        g.traversal().V(principalIds.toArray()).outE("HAS_PERMISSION").where(getMappedPermission(permission)).inV()
+                .forEachRemaining(v -> granted.put(sortKey(v), v));
+        g.traversal().V(user.id()).in("OWNED_BY").forEachRemaining(v -> granted.put(sortKey(v), v));
+        if (permission.equals("R")) {
+            g.traversal().V().has("public", true).forEachRemaining(v -> granted.put(sortKey(v), v));
+        }
+        return new ArrayList<>(granted.values());
+    }
+
+    private List<Vertex> containedResources(Graph g, Vertex container) {
+        List<Vertex> children = g.traversal().V(container.id()).in("IN_FOLDER").toList();
+        children.sort(BY_SORT_KEY);
+        return children;
+    }
+
+    private boolean hasExplicitPermission(Graph g, Vertex vertex, String permission, Map<Object, Boolean> explicitResults) {
+        return explicitResults.computeIfAbsent(vertex.id(), id -> g.traversal().V(id).where(explicitPermissionTraversal(permission)).hasNext());
+    }
+
+    private Set<Object> nearestAclContainers(Graph g, Object vertexId, String permission, Map<Object, Set<Object>> aclContainers) {
+        // containers where containerHierarchyHasPermission stops ascending from the given vertex
+        Set<Object> known = aclContainers.get(vertexId);
+        if (known != null) {
+            return known;
+        }
+        aclContainers.put(vertexId, Collections.emptySet());
+        Set<Object> result = new HashSet<>();
+        if (g.traversal().V(vertexId).where(explicitPermissionTraversal(permission)).hasNext()) {
+            result.add(vertexId);
+        } else {
+            for (Object parentId : g.traversal().V(vertexId).out("IN_FOLDER").id().toList()) {
+                result.addAll(nearestAclContainers(g, parentId, permission, aclContainers));
+            }
+        }
+        aclContainers.put(vertexId, result);
+        return result;
+    }
+
+    private boolean isListedUnder(Graph g, Vertex resource, Vertex parent, Vertex seed, Set<Object> seedIds,
+            String permission, Map<Object, Set<Object>> aclContainers) {
+        // with several parents a resource can be reached from several seeds, or from one seed along several paths;
+        // it is listed (and descended) only under the first seed in sort order, through the first parent leading there
+        List<Vertex> parents = g.traversal().V(resource.id()).out("IN_FOLDER").toList();
+        if (parents.size() < 2) {
+            return true;
+        }
+        String first = null;
+        for (Object containerId : nearestAclContainers(g, resource.id(), permission, aclContainers)) {
+            String key = String.valueOf(containerId);
+            if (seedIds.contains(containerId) && (first == null || key.compareTo(first) < 0)) {
+                first = key;
+            }
+        }
+        if (!sortKey(seed).equals(first)) {
+            return false;
+        }
+        parents.sort(BY_SORT_KEY);
+        for (Vertex candidate : parents) {
+            if (nearestAclContainers(g, candidate.id(), permission, aclContainers).contains(seed.id())) {
+                return candidate.id().equals(parent.id());
+            }
+        }
+        return false;
+    }
+
+    private static class ListingFrame {
+        final Vertex parent;
+        final List<Vertex> children;
+        int next;
+        String currentKey;
+
+        ListingFrame(Vertex parent, List<Vertex> children, int next) {
+            this.parent = parent;
+            this.children = children;
+            this.next = next;
+        }
+    }
+
+    // listing entry point - pages of everything the user can access, optionally restricted to one label
+    public AccessPage listAccessible(Graph g, String userId, String permission, String label, int limit, String cursor) {
+        // starts from the user's grants and descends IN_FOLDER, pruning subtrees that have their own ACL, instead of
+        // evaluating the rule for every vertex; seeds and children are visited in sort key order so pages are stable
+        // the cursor only bounds the descent: every page still resolves the principals and collects all seed grants,
+        // owned and public resources again, so each page costs at least as much as that seed set
+        Vertex user = getUserById(g, userId);
+        Set<Object> principalIds = getPrincipalIds(g, user);
+        List<Vertex> seeds = grantedResources(g, user, principalIds, permission);
+        Set<Object> seedIds = new HashSet<>();
+        seeds.forEach(seed -> seedIds.add(seed.id()));
+        Map<Object, Boolean> explicitResults = new HashMap<>();
+        Map<Object, Set<Object>> aclContainers = new HashMap<>();
+        int pageSize = limit > 0 ? limit : Integer.MAX_VALUE;
+
+        List<Vertex> page = new ArrayList<>();
+        Deque<ListingFrame> stack = new ArrayDeque<>();
+        Vertex seed = null;
+        int seedIndex = 0;
+
+        List<String> path = AccessPage.decodeCursor(cursor);
+        if (!path.isEmpty()) {
+            // rebuild the traversal stack along the cursor's path and continue right after its last vertex
+            seedIndex = lowerBound(seeds, path.get(0));
+            if (seedIndex < seeds.size() && sortKey(seeds.get(seedIndex)).equals(path.get(0))) {
+                seed = seeds.get(seedIndex++);
+                Vertex current = seed;
+                boolean resumed = true;
+                for (int depth = 1; depth < path.size() && resumed; depth++) {
+                    boolean descendable = depth == 1
+                            ? hasExplicitPermission(g, current, permission, explicitResults)
+                            : !hasExplicitPermission(g, current, permission, explicitResults);
+                    if (!descendable) {
+                        resumed = false;
+                        break;
+                    }
+                    List<Vertex> children = containedResources(g, current);
+                    int position = lowerBound(children, path.get(depth));
+                    resumed = position < children.size() && sortKey(children.get(position)).equals(path.get(depth));
+                    ListingFrame frame = new ListingFrame(current, children, resumed ? position + 1 : position);
+                    frame.currentKey = path.get(depth);
+                    stack.push(frame);
+                    if (resumed) {
+                        current = children.get(position);
+                    }
+                }
+                if (resumed) {
+                    boolean descendable = current == seed
+                            ? hasExplicitPermission(g, current, permission, explicitResults)
+                            : !hasExplicitPermission(g, current, permission, explicitResults);
+                    if (descendable) {
+                        stack.push(new ListingFrame(current, containedResources(g, current), 0));
+                    }
+                }
+            }
+        }
+
+        while (page.size() < pageSize) {
+            Vertex visited;
+            boolean descendable;
+            if (!stack.isEmpty()) {
+                ListingFrame top = stack.peek();
+                if (top.next >= top.children.size()) {
+                    stack.pop();
+                    continue;
+                }
+                visited = top.children.get(top.next++);
+                top.currentKey = sortKey(visited);
+                // a contained resource with its own ACL is only accessible if it is one of the seeds itself
+                if (hasExplicitPermission(g, visited, permission, explicitResults)
+                        || !isListedUnder(g, visited, top.parent, seed, seedIds, permission, aclContainers)) {
+                    continue;
+                }
+                descendable = true;
+                if (!seedIds.contains(visited.id()) && (label == null || visited.label().equals(label))) {
+                    page.add(visited);
+                }
+            } else {
+                if (seedIndex >= seeds.size()) {
+                    break;
+                }
+                seed = seeds.get(seedIndex++);
+                visited = seed;
+                descendable = hasExplicitPermission(g, seed, permission, explicitResults);
+                if (label == null || seed.label().equals(label)) {
+                    page.add(seed);
+                }
+            }
+            if (page.size() == pageSize) {
+                List<String> position = new ArrayList<>();
+                position.add(sortKey(seed));
+                stack.descendingIterator().forEachRemaining(frame -> position.add(frame.currentKey));
+                return new AccessPage(page, AccessPage.encodeCursor(position));
+            }
+            if (descendable) {
+                stack.push(new ListingFrame(visited, containedResources(g, visited), 0));
+            }
+        }
+        return new AccessPage(page, null);
     }
 }
@@ -0,0 +1,283 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+
+/**
+ * Compressed direct membership of the groups with at least threshold MEMBER_OF edges, so that "is this user a member"
+ * is a binary search instead of a scan over hundreds of thousands of adjacent edges.
+ *
+ * Member ids are kept as a sorted long[] (ids that are not integral numbers, as on OrientDB, go to a hash set), next to
+ * the few members that are groups themselves and still have to be walked. The edges stay in the graph: the upward
+ * expansion, the closure index and the audit read them, and groups below the threshold are only ever read through
+ * them. Register it with an EventStrategy (or call edgeAdded/edgeRemoved) to keep it current.
+ */
+public class SupernodeMembership extends GraphChangeListener {
+
+    public static final int DEFAULT_THRESHOLD = 1000;
+
+    private final Graph graph;
+    private final int threshold;
+    // member sets are replaced, never modified, so that probes need no lock
+    private final Map<Object, MemberSet> supernodes = new ConcurrentHashMap<>();
+    // direct member counts of the groups below the threshold, to notice when one crosses it
+    private final Map<Object, Integer> memberCounts = new HashMap<>();
+    // (group id, member id) -> MEMBER_OF edges beyond the first between them, for supernodes only; the member stays
+    // in the set until the last of them is removed
+    private final Map<List<Object>, Integer> extraEdges = new HashMap<>();
+
+    public SupernodeMembership(Graph graph, int threshold) {
+        this.graph = graph;
+        this.threshold = threshold;
+    }
+
+    public static SupernodeMembership build(Graph g) {
+        return build(g, DEFAULT_THRESHOLD);
+    }
+
+    public static SupernodeMembership build(Graph g, int threshold) {
+        SupernodeMembership membership = new SupernodeMembership(g, threshold);
+        Map<Object, List<Vertex>> members = new HashMap<>();
+        g.traversal().E().hasLabel("MEMBER_OF").forEachRemaining(e -> members.computeIfAbsent(e.inVertex().id(), id -> new ArrayList<>()).add(e.outVertex()));
+        members.forEach((groupId, groupMembers) -> {
+            if (groupMembers.size() >= threshold) {
+                membership.compress(groupId, groupMembers);
+            } else {
+                membership.memberCounts.put(groupId, groupMembers.size());
+            }
+        });
+        return membership;
+    }
+
+    public boolean isSupernode(Object groupId) {
+        return supernodes.containsKey(groupId);
+    }
+
+    public int size() {
+        return supernodes.size();
+    }
+
+    /**
+     * @return whether the user is reached from the principal by walking down HAS_SUPERGROUP and MEMBER_OF, as the
+     * downward repeat in PermissionTraverser does, probing supernodes instead of scanning their members
+     */
+    public boolean reaches(Vertex principal, Vertex user) {
+        Set<Object> visited = new HashSet<>();
+        Deque<Vertex> groups = new ArrayDeque<>();
+        visited.add(principal.id());
+        groups.push(principal);
+        while (!groups.isEmpty()) {
+            Vertex group = groups.pop();
+            MemberSet supernode = supernodes.get(group.id());
+            Iterator<Vertex> children;
+            if (supernode != null) {
+                if (supernode.contains(user.id())) {
+                    return true;
+                }
+                // users have no members of their own, so only member groups and subgroups are left to walk
+                children = group.vertices(Direction.IN, "HAS_SUPERGROUP");
+                for (Vertex memberGroup : supernode.groups) {
+                    if (visited.add(memberGroup.id())) {
+                        groups.push(memberGroup);
+                    }
+                }
+            } else {
+                children = group.vertices(Direction.IN, "MEMBER_OF", "HAS_SUPERGROUP");
+            }
+            while (children.hasNext()) {
+                Vertex child = children.next();
+                if (child.equals(user)) {
+                    return true;
+                }
+                if (visited.add(child.id())) {
+                    groups.push(child);
+                }
+            }
+        }
+        return false;
+    }
+
+    public synchronized void addMember(Vertex member, Vertex group) {
+        Object groupId = group.id();
+        MemberSet supernode = supernodes.get(groupId);
+        if (supernode != null) {
+            if (supernode.contains(member.id())) {
+                extraEdges.merge(Arrays.asList(groupId, member.id()), 1, Integer::sum);
+            } else {
+                supernodes.put(groupId, supernode.with(member));
+            }
+            return;
+        }
+        int count = memberCounts.merge(groupId, 1, Integer::sum);
+        if (count >= threshold) {
+            // crossed the threshold: compress the members the graph now has, which includes this one
+            List<Vertex> members = new ArrayList<>();
+            group.vertices(Direction.IN, "MEMBER_OF").forEachRemaining(members::add);
+            compress(groupId, members);
+            memberCounts.remove(groupId);
+        }
+    }
+
+    public synchronized void removeMember(Vertex member, Vertex group) {
+        Object groupId = group.id();
+        MemberSet supernode = supernodes.get(groupId);
+        if (supernode != null) {
+            List<Object> pair = Arrays.asList(groupId, member.id());
+            Integer extra = extraEdges.get(pair);
+            if (extra != null) {
+                // a parallel edge still makes it a member
+                if (extra > 1) {
+                    extraEdges.put(pair, extra - 1);
+                } else {
+                    extraEdges.remove(pair);
+                }
+                return;
+            }
+            // stays compressed below the threshold, so that a group hovering around it isn't rebuilt back and forth
+            supernodes.put(groupId, supernode.without(member));
+        } else {
+            memberCounts.computeIfPresent(groupId, (id, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    // members has a vertex per MEMBER_OF edge, so a member with parallel edges appears more than once
+    private void compress(Object groupId, List<Vertex> members) {
+        Map<Object, Vertex> distinct = new HashMap<>();
+        for (Vertex member : members) {
+            if (distinct.putIfAbsent(member.id(), member) != null) {
+                extraEdges.merge(Arrays.asList(groupId, member.id()), 1, Integer::sum);
+            }
+        }
+        supernodes.put(groupId, MemberSet.of(distinct.values()));
+    }
+
+    @Override
+    public void edgeAdded(Edge edge) {
+        if (edge.label().equals("MEMBER_OF")) {
+            addMember(attached(edge.outVertex()), attached(edge.inVertex()));
+        }
+    }
+
+    @Override
+    public void edgeRemoved(Edge edge) {
+        if (edge.label().equals("MEMBER_OF")) {
+            removeMember(edge.outVertex(), edge.inVertex());
+        }
+    }
+
+    // events carry detached elements, which have no edges to walk
+    private Vertex attached(Vertex vertex) {
+        Iterator<Vertex> vertices = graph.vertices(vertex.id());
+        return vertices.hasNext() ? vertices.next() : vertex;
+    }
+
+    @Override
+    public synchronized void vertexRemoved(Vertex vertex) {
+        // dropping a vertex removes its edges without an event per edge
+        supernodes.remove(vertex.id());
+        memberCounts.remove(vertex.id());
+        extraEdges.keySet().removeIf(pair -> pair.contains(vertex.id()));
+        supernodes.replaceAll((groupId, members) -> members.contains(vertex.id()) ? members.without(vertex) : members);
+    }
+
+    private static final class MemberSet {
+
+        private static final long[] NONE = new long[0];
+
+        final long[] numericIds;
+        final Set<Object> otherIds;
+        final List<Vertex> groups;
+
+        private MemberSet(long[] numericIds, Set<Object> otherIds, List<Vertex> groups) {
+            this.numericIds = numericIds;
+            this.otherIds = otherIds;
+            this.groups = groups;
+        }
+
+        static MemberSet of(Collection<Vertex> members) {
+            long[] numericIds = new long[members.size()];
+            int count = 0;
+            Set<Object> otherIds = new HashSet<>();
+            List<Vertex> groups = new ArrayList<>();
+            for (Vertex member : members) {
+                if (isIntegral(member.id())) {
+                    numericIds[count++] = ((Number) member.id()).longValue();
+                } else {
+                    otherIds.add(member.id());
+                }
+                if (!member.label().equals("User")) {
+                    groups.add(member);
+                }
+            }
+            numericIds = Arrays.copyOf(numericIds, count);
+            Arrays.sort(numericIds);
+            return new MemberSet(numericIds, otherIds.isEmpty() ? Collections.emptySet() : otherIds,
+                    groups.isEmpty() ? Collections.emptyList() : groups);
+        }
+
+        private static boolean isIntegral(Object id) {
+            return id instanceof Long || id instanceof Integer || id instanceof Short || id instanceof Byte;
+        }
+
+        boolean contains(Object id) {
+            return isIntegral(id) ? Arrays.binarySearch(numericIds, ((Number) id).longValue()) >= 0 : otherIds.contains(id);
+        }
+
+        MemberSet with(Vertex member) {
+            if (contains(member.id())) {
+                return this;
+            }
+            List<Vertex> newGroups = groups;
+            if (!member.label().equals("User")) {
+                newGroups = new ArrayList<>(groups);
+                newGroups.add(member);
+            }
+            if (!isIntegral(member.id())) {
+                Set<Object> newOtherIds = new HashSet<>(otherIds);
+                newOtherIds.add(member.id());
+                return new MemberSet(numericIds, newOtherIds, newGroups);
+            }
+            long id = ((Number) member.id()).longValue();
+            int insertAt = -Arrays.binarySearch(numericIds, id) - 1;
+            long[] newIds = new long[numericIds.length + 1];
+            System.arraycopy(numericIds, 0, newIds, 0, insertAt);
+            newIds[insertAt] = id;
+            System.arraycopy(numericIds, insertAt, newIds, insertAt + 1, numericIds.length - insertAt);
+            return new MemberSet(newIds, otherIds, newGroups);
+        }
+
+        MemberSet without(Vertex member) {
+            if (!contains(member.id())) {
+                return this;
+            }
+            List<Vertex> newGroups = groups;
+            if (groups.contains(member)) {
+                newGroups = new ArrayList<>(groups);
+                newGroups.remove(member);
+            }
+            if (!isIntegral(member.id())) {
+                Set<Object> newOtherIds = new HashSet<>(otherIds);
+                newOtherIds.remove(member.id());
+                return new MemberSet(numericIds, newOtherIds, newGroups);
+            }
+            int index = Arrays.binarySearch(numericIds, ((Number) member.id()).longValue());
+            long[] newIds = numericIds.length == 1 ? NONE : new long[numericIds.length - 1];
+            System.arraycopy(numericIds, 0, newIds, 0, index);
+            System.arraycopy(numericIds, index + 1, newIds, index, numericIds.length - index - 1);
+            return new MemberSet(newIds, otherIds, newGroups);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.VertexProperty;
+
+/**
+ * Bounded LRU cache from a user or resource id (the "name" property) to the ids of the matching vertices.
+ *
+ * Register it with an EventStrategy so that removed and renamed vertices are invalidated; hits are also checked
+ * against the graph, so a vertex removed behind the cache's back is reloaded rather than returned.
+ */
+public class VertexIdCache extends GraphChangeListener {
+
+    public static final int DEFAULT_MAX_SIZE = 100000;
+
+    // name -> label ("" for any label) -> vertex ids, so that invalidating a name is a single removal
+    private final Map<String, Map<String, Object[]>> cache;
+
+    public VertexIdCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public VertexIdCache(int maxSize) {
+        this.cache = new LinkedHashMap<String, Map<String, Object[]>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, Object[]>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return the cached vertex ids for the given label and name, loading them on a miss; null if nothing matches
+     */
+    public Object[] resolve(Graph g, String label, String name, Supplier<List<Object>> lookup) {
+        String labelKey = label == null ? "" : label;
+        Object[] ids;
+        synchronized (cache) {
+            Map<String, Object[]> byLabel = cache.get(name);
+            ids = byLabel == null ? null : byLabel.get(labelKey);
+        }
+        if (ids != null && stillExists(g, ids)) {
+            return ids;
+        }
+        List<Object> found = lookup.get();
+        if (found.isEmpty()) {
+            invalidate(name);
+            return null;
+        }
+        ids = found.toArray();
+        synchronized (cache) {
+            cache.computeIfAbsent(name, n -> new HashMap<>(2)).put(labelKey, ids);
+        }
+        return ids;
+    }
+
+    public void invalidate(String name) {
+        synchronized (cache) {
+            cache.remove(name);
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    @Override
+    public void vertexAdded(Vertex vertex) {
+        // a new vertex may share the name of a cached resource lookup
+        invalidate(vertex);
+    }
+
+    @Override
+    public void vertexRemoved(Vertex vertex) {
+        invalidate(vertex);
+    }
+
+    @Override
+    public void vertexPropertyChanged(Vertex element, VertexProperty oldValue, Object setValue, Object... vertexPropertyKeyValues) {
+        // a newly added property comes as an empty KeyedVertexProperty, which still carries the key
+        if (oldValue.key().equals("name")) {
+            if (oldValue.isPresent()) {
+                invalidate(String.valueOf(oldValue.value()));
+            }
+            invalidate(String.valueOf(setValue));
+        }
+    }
+
+    @Override
+    public void vertexPropertyRemoved(VertexProperty vertexProperty) {
+        if (vertexProperty.key().equals("name")) {
+            invalidate(String.valueOf(vertexProperty.value()));
+        }
+    }
+
+    private void invalidate(Vertex vertex) {
+        VertexProperty<Object> name = vertex.property("name");
+        if (name.isPresent()) {
+            invalidate(String.valueOf(name.value()));
+        } else {
+            clear();
+        }
+    }
+
+    private boolean stillExists(Graph g, Object[] ids) {
+        int found = 0;
+        for (Iterator<Vertex> it = g.vertices(ids); it.hasNext(); it.next()) {
+            found++;
+        }
+        return found == ids.length;
+    }
+}
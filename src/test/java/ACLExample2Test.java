@@ -1,11 +1,15 @@
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
 import org.apache.tinkerpop.gremlin.structure.Graph;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
 import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
@@ -16,17 +20,34 @@ import org.junit.jupiter.api.Test;
 public class ACLExample2Test {
 
     private static Graph graph;
+    private static CompiledAclSnapshot compiledAcl;
+    private static CsrAclSnapshot.Evaluator csrAcl;
 
     @BeforeAll
     public static void setup() {
         // in memory
-        graph = TinkerGraph.open();
-        new Example2Scenario(() -> graph).createGraph();
+        graph = GraphScenarioTestUtils.example2Graph();
+        compiledAcl = CompiledAclSnapshot.compile(graph);
+        csrAcl = CsrAclSnapshot.export(graph).newEvaluator();
     }
 
     public static void assertAccess(String resourceId, String userId, String permission, boolean expected) {
-        Assertions.assertEquals(expected, GraphScenarioTestUtils.hasAccess(graph, resourceId, userId, permission),
-                String.format("Failed for %s with access %s by %s", resourceId, permission, userId));
+        assertAccess(graph, compiledAcl, csrAcl, resourceId, userId, permission, expected);
+    }
+
+    private static void assertAccess(Graph g, CompiledAclSnapshot compiled, CsrAclSnapshot.Evaluator csr,
+                                     String resourceId, String userId, String permission, boolean expected) {
+        // every evaluation strategy has to give the same answer
+        for (PermissionTraverser.EvaluationStrategy strategy : PermissionTraverser.EvaluationStrategy.values()) {
+            Assertions.assertEquals(expected, GraphScenarioTestUtils.hasAccess(g, resourceId, userId, permission, strategy),
+                    String.format("Failed for %s with access %s by %s (%s)", resourceId, permission, userId, strategy));
+            Assertions.assertEquals(expected, GraphScenarioTestUtils.canAccess(g, resourceId, userId, permission, strategy),
+                    String.format("Failed for %s with access %s by %s (%s template)", resourceId, permission, userId, strategy));
+        }
+        Assertions.assertEquals(expected, GraphScenarioTestUtils.hasAccess(g, resourceId, userId, permission, compiled),
+                String.format("Failed for %s with access %s by %s (compiled)", resourceId, permission, userId));
+        Assertions.assertEquals(expected, csr.hasAccess(resourceId, userId, permission),
+                String.format("Failed for %s with access %s by %s (CSR)", resourceId, permission, userId));
     }
 
     @Test
@@ -102,12 +123,118 @@ public class ACLExample2Test {
         assertAccess("Intruder", "Ronny Researcher", "R", false);
     }
 
+    @Test
+    public void testBatchMatchesSingleChecks() {
+        List<String> resourceIds = graph.traversal().V().hasLabel("Folder", "Term", "Group").<String>values("name").toList();
+        graph.traversal().V().hasLabel("User").<String>values("name").forEachRemaining(userId -> {
+            for (String permission : Arrays.asList("R", "W")) {
+                Map<String, Boolean> results = new PermissionTraverser().hasAccess(graph, resourceIds, userId, permission);
+                resourceIds.forEach(resourceId -> assertAccess(resourceId, userId, permission, results.get(resourceId)));
+            }
+        });
+    }
+
+    @Test
+    public void testTemplatesAreReused() {
+        PermissionTraverser traverser = new PermissionTraverser();
+        List<String> resourceIds = graph.traversal().V().hasLabel("Folder", "Term", "Group").<String>values("name").toList();
+        graph.traversal().V().hasLabel("User").<String>values("name").forEachRemaining(userId -> {
+            for (String permission : Arrays.asList("R", "W")) {
+                for (PermissionTraverser.EvaluationStrategy strategy : PermissionTraverser.EvaluationStrategy.values()) {
+                    resourceIds.forEach(resourceId -> traverser.canAccess(graph, resourceId, userId, permission, strategy));
+                }
+            }
+        });
+        // one per permission for containers and other resources, each with downward and upward principals
+        Assertions.assertEquals(8, traverser.getCompiledTemplates());
+    }
+
+    @Test
+    public void testCompiledBatchMatchesSingleChecks() {
+        List<String> resourceIds = graph.traversal().V().hasLabel("Folder", "Term", "Group").<String>values("name").toList();
+        graph.traversal().V().hasLabel("User").<String>values("name").forEachRemaining(userId -> {
+            for (String permission : Arrays.asList("R", "W", "A")) {
+                Map<String, Boolean> results = new PermissionTraverser().withCompiledAcl(compiledAcl).hasAccess(graph, resourceIds, userId, permission);
+                resourceIds.forEach(resourceId -> assertAccess(resourceId, userId, permission, results.get(resourceId)));
+            }
+        });
+    }
+
+    @Test
+    public void testListingMatchesFullEvaluation() {
+        graph.traversal().V().hasLabel("User").<String>values("name").forEachRemaining(userId -> {
+            for (String permission : Arrays.asList("R", "W")) {
+                for (String label : Arrays.asList(null, "Folder", "Term")) {
+                    GraphTraversal<Vertex, Vertex> resources = label == null ? graph.traversal().V() : graph.traversal().V().hasLabel(label);
+                    Set<Object> expected = new PermissionTraverser().hasAccess(graph, resources, userId, permission).id().toSet();
+                    for (int pageSize : Arrays.asList(1, 2, 100)) {
+                        List<Object> listed = new ArrayList<>();
+                        String cursor = null;
+                        do {
+                            AccessPage page = new PermissionTraverser().listAccessible(graph, userId, permission, label, pageSize, cursor);
+                            Assertions.assertTrue(page.getResources().size() <= pageSize);
+                            page.getResources().forEach(v -> listed.add(v.id()));
+                            cursor = page.getNextCursor();
+                        } while (cursor != null);
+                        String message = String.format("Listing %s with access %s by %s in pages of %d", label, permission, userId, pageSize);
+                        Assertions.assertEquals(expected, new HashSet<>(listed), message);
+                        Assertions.assertEquals(expected.size(), listed.size(), message);
+                    }
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testListingReachesSharedDescendantsOnce() {
+        // t sits under s through both f1 and f2, and under the user's own grant on s2 as well; k hangs off t
+        Graph diamond = TinkerGraph.open();
+        GraphTraversalSource d = diamond.traversal();
+        Vertex u = d.addV("User").property("name", "u").next();
+        Vertex group = d.addV("Group").property("name", "g").next();
+        Vertex s = d.addV("Folder").property("name", "s").next();
+        Vertex s2 = d.addV("Folder").property("name", "s2").next();
+        Vertex f1 = d.addV("Folder").property("name", "f1").next();
+        Vertex f2 = d.addV("Folder").property("name", "f2").next();
+        Vertex t = d.addV("Term").property("name", "t").next();
+        Vertex k = d.addV("Term").property("name", "k").next();
+        u.addEdge("MEMBER_OF", group);
+        f1.addEdge("IN_FOLDER", s);
+        f2.addEdge("IN_FOLDER", s);
+        t.addEdge("IN_FOLDER", f1);
+        t.addEdge("IN_FOLDER", f2);
+        t.addEdge("IN_FOLDER", s2);
+        k.addEdge("IN_FOLDER", t);
+        PermissionMask.addHasPermission(group, s, "R");
+        PermissionMask.addHasPermission(u, s2, "R");
+
+        for (String label : Arrays.asList(null, "Term")) {
+            List<Object> expected = label == null ? Arrays.asList(s.id(), s2.id(), f1.id(), f2.id(), t.id(), k.id()) : Arrays.asList(t.id(), k.id());
+            for (int pageSize : Arrays.asList(1, 2, 100)) {
+                List<Object> listed = new ArrayList<>();
+                String cursor = null;
+                do {
+                    AccessPage page = new PermissionTraverser().listAccessible(diamond, "u", "R", label, pageSize, cursor);
+                    page.getResources().forEach(v -> listed.add(v.id()));
+                    cursor = page.getNextCursor();
+                } while (cursor != null);
+                String message = String.format("Listing %s in pages of %d", label, pageSize);
+                Assertions.assertEquals(new HashSet<>(expected), new HashSet<>(listed), message);
+                Assertions.assertEquals(expected.size(), listed.size(), message);
+            }
+        }
+    }
+
     static class Example2Scenario extends GraphScenario {
 
         public Example2Scenario(Supplier<Graph> graph) {
             super(graph);
         }
 
+        public Example2Scenario(BulkLoader loader) {
+            super(loader);
+        }
+
         @Override
         public void createGraph() {
             Vertex x = createUser("X");
@@ -1,10 +1,27 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.__;
+import org.apache.tinkerpop.gremlin.process.traversal.strategy.decoration.EventStrategy;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Edge;
 import org.apache.tinkerpop.gremlin.structure.Graph;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
 import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
@@ -20,7 +37,8 @@ public class ACLLoadTest {
     public static void setup() {
         // in memory
         graph = TinkerGraph.open();
-        new LoadScenario(() -> graph).createGraph();
+        PermissionTraverser.createIndexes(graph);
+        new LoadScenario(new GraphBulkLoader(graph).withDeferredIndexes()).createGraph();
     }
 
     public static void assertAccess(String resourceId, String userId, String permission, boolean expected) {
@@ -35,12 +53,126 @@ public class ACLLoadTest {
 
     static class LoadScenario extends GraphScenario {
 
+        Vertex allGroup;
+        List<Vertex> allUsers;
+        Vertex wideRoot;
+        Vertex deepRoot;
+        Vertex userInTeam;
+
+        final Config config;
+
         public LoadScenario(Supplier<Graph> graph) {
+            this(graph, Config.fromSystemProperties());
+        }
+
+        public LoadScenario(Supplier<Graph> graph, Config config) {
             super(graph);
+            this.config = config;
         }
 
-        @Override
-        public void createGraph() {
+        public LoadScenario(BulkLoader loader) {
+            this(loader, Config.fromSystemProperties());
+        }
+
+        public LoadScenario(BulkLoader loader, Config config) {
+            super(loader);
+            this.config = config;
+        }
+
+        /**
+         * Sizes, seed and load mix of the scenario; the defaults are the enterprise described in buildGraph. Each can be
+         * overridden with a system property acl.load.<field>, e.g. -Dacl.load.users=1000000, and category levels as
+         * children:terms pairs, e.g. -Dacl.load.deepLevels=1:0,3:300,2:5. The single-check timings in createGraph look up
+         * leaves of the default category shapes and a team group of the default organization.
+         */
+        static class Config {
+
+            long seed = 1;
+
+            int users = 200000;                 // number of users in the enterprise
+            int regions = 10;                   // number of regions
+            int locationsPerRegion = 10;        // number of office locations per regions
+            int groupsPerLocation = 10;         // number of groups for each office
+
+            int divisions = 10;                 // number of divisions
+            int vpGroupsPerDivision = 20;       // number of VP groups per division
+            int directorsPerVp = 10;            // number of directors for each office
+            int teamsPerDirector = 10;          // number of groups for each director
+
+            int adhocGroups = 30000;
+            int adhocMin = 3;
+            int adhocMax = 30;
+
+            int diamondLevels = 8;              // levels of the diamond group DAG, 0 for none
+            int diamondWidth = 4;               // groups per diamond level, each a subgroup of every group above
+            int partitions = 2;                 // graphs the resource trees are split into for scatter-gather, 0 for none
+
+            List<CategoryLevel> wideLevels = Arrays.asList(
+                    new CategoryLevel(6, 10),
+                    new CategoryLevel(10, 10),
+                    new CategoryLevel(6, 300),
+                    new CategoryLevel(7, 10),
+                    new CategoryLevel(2, 10));
+            List<CategoryLevel> deepLevels = Arrays.asList(
+                    new CategoryLevel(1, 0),
+                    new CategoryLevel(3, 0),
+                    new CategoryLevel(3, 300),
+                    new CategoryLevel(2, 0),
+                    new CategoryLevel(2, 0),
+                    new CategoryLevel(2, 0),
+                    new CategoryLevel(3, 0),
+                    new CategoryLevel(5, 0),
+                    new CategoryLevel(2, 0),
+                    new CategoryLevel(3, 5));
+            int aclsPerLevel = 100;             // users granted directly on each ACL level of the deep hierarchy
+            int aclLevels = 1;                  // levels of the deep hierarchy with ACLs, along its first branch
+
+            int threads = Runtime.getRuntime().availableProcessors();
+            int warmupSeconds = 1;
+            int loadSeconds = 3;
+            int writePercent = 1;               // share of the mixed load that grants and revokes instead of checking
+
+            static Config fromSystemProperties() {
+                Config config = new Config();
+                config.seed = Long.getLong("acl.load.seed", config.seed);
+                config.users = Integer.getInteger("acl.load.users", config.users);
+                config.regions = Integer.getInteger("acl.load.regions", config.regions);
+                config.locationsPerRegion = Integer.getInteger("acl.load.locationsPerRegion", config.locationsPerRegion);
+                config.groupsPerLocation = Integer.getInteger("acl.load.groupsPerLocation", config.groupsPerLocation);
+                config.divisions = Integer.getInteger("acl.load.divisions", config.divisions);
+                config.vpGroupsPerDivision = Integer.getInteger("acl.load.vpGroupsPerDivision", config.vpGroupsPerDivision);
+                config.directorsPerVp = Integer.getInteger("acl.load.directorsPerVp", config.directorsPerVp);
+                config.teamsPerDirector = Integer.getInteger("acl.load.teamsPerDirector", config.teamsPerDirector);
+                config.adhocGroups = Integer.getInteger("acl.load.adhocGroups", config.adhocGroups);
+                config.adhocMin = Integer.getInteger("acl.load.adhocMin", config.adhocMin);
+                config.adhocMax = Integer.getInteger("acl.load.adhocMax", config.adhocMax);
+                config.diamondLevels = Integer.getInteger("acl.load.diamondLevels", config.diamondLevels);
+                config.diamondWidth = Integer.getInteger("acl.load.diamondWidth", config.diamondWidth);
+                config.partitions = Integer.getInteger("acl.load.partitions", config.partitions);
+                config.wideLevels = categoryLevels(System.getProperty("acl.load.wideLevels"), config.wideLevels);
+                config.deepLevels = categoryLevels(System.getProperty("acl.load.deepLevels"), config.deepLevels);
+                config.aclsPerLevel = Integer.getInteger("acl.load.aclsPerLevel", config.aclsPerLevel);
+                config.aclLevels = Integer.getInteger("acl.load.aclLevels", config.aclLevels);
+                config.threads = Integer.getInteger("acl.load.threads", config.threads);
+                config.warmupSeconds = Integer.getInteger("acl.load.warmupSeconds", config.warmupSeconds);
+                config.loadSeconds = Integer.getInteger("acl.load.loadSeconds", config.loadSeconds);
+                config.writePercent = Integer.getInteger("acl.load.writePercent", config.writePercent);
+                return config;
+            }
+
+            private static List<CategoryLevel> categoryLevels(String value, List<CategoryLevel> defaultLevels) {
+                if (value == null) {
+                    return defaultLevels;
+                }
+                return Arrays.stream(value.split(",")).map(level -> {
+                    String[] childrenAndTerms = level.trim().split(":");
+                    return new CategoryLevel(Integer.parseInt(childrenAndTerms[0]), Integer.parseInt(childrenAndTerms[1]));
+                }).collect(Collectors.toList());
+            }
+        }
+
+        // builds the graph without running any checks against it
+        void buildGraph() {
             // large groups - e.g. All users, All NA, All EMEA
             // a few levels of nested subgroups
             // a few levels of permissioned container hierarchies
@@ -58,54 +190,52 @@ public class ACLLoadTest {
             // each has 10 groups - teams - 50 members
             // 30,000 adhoc groups of 3-30 people (30,000)
 
-            int NUM_TOTAL_USERS = 200000;            // number of users in the enterprise
-            int NUM_REGIONS = 10;                   // number of regions
-            int NUM_LOCATIONS_PER_REGION = 10;      // number of office locations per regions
-            int NUM_GROUPS_PER_LOCATION = 10;       // number of groups for each office
-
-            int NUM_DIVISIONS = 10;                 // number of divisions
-            int NUM_VP_GROUPS_PER_DIVISION = 20;    // number of VP groups per division
-            int NUM_DIRECTORS_PER_VP = 10;          // number of directors for each office
-            int NUM_TEAMS_PER_DIRECTOR = 10;        // number of groups for each director
-
-            int NUM_ADHOC_GROUPS = 30000;
-            int NUM_ADHOC_MIN = 3;
-            int NUM_ADHOC_MAX = 30;
-
             // users and all group (all group will start out only containing subgroups so that we can exercise subgroup traversal)
             // later, we'll add all users directly into the ALL group
-            final Vertex allGroup = createGroup("all-0");
+            allGroup = createGroup("all-0");
 
-            List<Vertex> allUsers = new ArrayList<>(NUM_TOTAL_USERS);
-            IntStream.range(0, NUM_TOTAL_USERS).forEach((i) -> {
+            allUsers = new ArrayList<>(config.users);
+            IntStream.range(0, config.users).forEach((i) -> {
                 Vertex user = createUser("user " + i);
                 allUsers.add(user);
             });
 
             // add regional groups
             addGroups("", allUsers.size(), 0, allUsers, allGroup, Arrays.asList(
-                    new GroupLevel("region", NUM_REGIONS),
-                    new GroupLevel("location", NUM_LOCATIONS_PER_REGION),
-                    new GroupLevel("locationGroup", NUM_GROUPS_PER_LOCATION)
+                    new GroupLevel("region", config.regions),
+                    new GroupLevel("location", config.locationsPerRegion),
+                    new GroupLevel("locationGroup", config.groupsPerLocation)
             ), 0);
 
             // add organizational groups
             addGroups("", allUsers.size(), 0, allUsers, allGroup, Arrays.asList(
-                    new GroupLevel("division", NUM_DIVISIONS),
-                    new GroupLevel("vpgroup", NUM_VP_GROUPS_PER_DIVISION),
-                    new GroupLevel("directorgroup", NUM_DIRECTORS_PER_VP),
-                    new GroupLevel("team", NUM_TEAMS_PER_DIRECTOR)
+                    new GroupLevel("division", config.divisions),
+                    new GroupLevel("vpgroup", config.vpGroupsPerDivision),
+                    new GroupLevel("directorgroup", config.directorsPerVp),
+                    new GroupLevel("team", config.teamsPerDirector)
             ), 0);
 
             // add adhoc groups
-            Random rand = new Random();
-            IntStream.range(0, NUM_ADHOC_GROUPS).forEach((i) -> {
+            Random rand = new Random(config.seed);
+            IntStream.range(0, config.adhocGroups).forEach((i) -> {
                 Vertex adhocGroup = createGroup("adhoc->" + i);
-                int size = NUM_ADHOC_MIN + (i % (NUM_ADHOC_MAX - NUM_ADHOC_MIN + 1));
-                List<Vertex> users = rand.ints(size, 0, NUM_TOTAL_USERS).mapToObj(index -> allUsers.get(index)).collect(Collectors.toList());
+                int size = config.adhocMin + (i % (config.adhocMax - config.adhocMin + 1));
+                List<Vertex> users = rand.ints(size, 0, config.users).mapToObj(index -> allUsers.get(index)).collect(Collectors.toList());
                 addUsersToGroup(users, adhocGroup, 0, users.size());
             });
 
+            // diamond groups granted at the top, with a slice of the users in each bottom group: the downward walk
+            // reaches every group over width^level paths
+            if (config.diamondLevels > 0) {
+                List<List<Vertex>> diamond = addDiamondGroups("diamond", config.diamondLevels, config.diamondWidth);
+                Vertex diamondFolder = createFolder("diamond");
+                diamond.get(0).forEach(group -> addHasPermission(group, diamondFolder, "R"));
+                List<Vertex> bottom = diamond.get(diamond.size() - 1);
+                for (int i = 0; i < bottom.size(); i++) {
+                    addUsersToGroup(allUsers, bottom.get(i), i * 10, 10);
+                }
+            }
+
             // create glossary hierarchy, with 2 top level categories, wide and deep
             // wide case:
             // 6 categories, 5 levels deep
@@ -114,41 +244,38 @@ public class ACLLoadTest {
             // 1 category 10 levels deep
             // term distribution: bulk up 3 categories at 3rd level with 300 terms each, then distribute 5 to leaf categories
 
-            Vertex wideRoot = createFolder("wide");
-            addCategoriesAndTerms(wideRoot, Arrays.asList(
-                new CategoryLevel(6, 10),
-                new CategoryLevel(10, 10),
-                new CategoryLevel(6, 300),
-                new CategoryLevel(7, 10),
-                new CategoryLevel(2, 10)
-            ), 0);
+            wideRoot = createFolder("wide");
+            addCategoriesAndTerms(wideRoot, config.wideLevels, 0);
 
-            Vertex deepRoot = createFolder("deep");
-            addCategoriesAndTerms(deepRoot, Arrays.asList(
-                    new CategoryLevel(1, 0),
-                    new CategoryLevel(3, 0),
-                    new CategoryLevel(3, 300),
-                    new CategoryLevel(2, 0),
-                    new CategoryLevel(2, 0),
-                    new CategoryLevel(2, 0),
-                    new CategoryLevel(3, 0),
-                    new CategoryLevel(5, 0),
-                    new CategoryLevel(2, 0),
-                    new CategoryLevel(3, 5)
-            ), 0);
+            deepRoot = createFolder("deep");
+            addCategoriesAndTerms(deepRoot, config.deepLevels, 0);
 
-            // deep case: at top level, assign 100 ACLs, including top level organizational group
+            // deep case: at the top levels (the root by default), assign 100 ACLs each, including top level organizational group
             // test access for team group member to leaf term 10 levels down
-            IntStream.range(0, 100).forEach((i) -> {
-                addHasPermission(allUsers.get(i), deepRoot, "R");
-            });
-            // we stress the system by ensuring that we need to traverse up the group structure in order to get to a group that has access
-            addHasPermission(allGroup, deepRoot, "R");
-
-            Vertex userInTeam = createUser("user " + NUM_TOTAL_USERS);
-            Vertex teamGroup = graph.get().traversal().V().hasLabel("Group").has("name", "team->->1->0->0->0").next();
+            String aclFolder = "deep";
+            for (int level = 0; level < config.aclLevels; level++, aclFolder += "_0") {
+                Vertex folder = getFolder(aclFolder);
+                int first = level * config.aclsPerLevel;
+                IntStream.range(first, first + config.aclsPerLevel).forEach((i) -> {
+                    addHasPermission(allUsers.get(i), folder, "R");
+                });
+                // we stress the system by ensuring that we need to traverse up the group structure in order to get to a group that has access
+                addHasPermission(allGroup, folder, "R");
+            }
+
+            userInTeam = createUser("user " + config.users);
+            Vertex teamGroup = getGroup("team->->1->0->0->0");
             addUsersToGroup(allUsers, allGroup, 0, allUsers.size());
             addToGroup(userInTeam, teamGroup);
+        }
+
+        @Override
+        public void createGraph() {
+            buildGraph();
+            loader().flush();
+            System.gc();
+            Runtime runtime = Runtime.getRuntime();
+            System.out.println("Loaded " + loader() + ", " + (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024) + " MB heap in use");
             String userInDeepNestedGroup = userInTeam.value("name");
             String directUser = allUsers.get(0).value("name");
 
@@ -160,14 +287,42 @@ public class ACLLoadTest {
             System.out.println("-------------------------------------------------------------------");
             timeAccess(userInDeepNestedGroup);
 
+            System.out.println("\nTesting batch access to 200 terms sharing a nested container hierarchy");
+            System.out.println("-------------------------------------------------------------------");
+            timeBatchAccess(userInDeepNestedGroup);
+
+            System.out.println("\nTesting planned branch order for deep access to nested groups");
+            System.out.println("-------------------------------------------------------------------");
+            timePlannedAccess(userInDeepNestedGroup);
+
+            System.out.println("\nTesting 400 concurrent callers checking 100 terms for two users");
+            System.out.println("-------------------------------------------------------------------");
+            timeAsyncAccess(userInDeepNestedGroup, directUser);
+
             System.out.println("\nTesting shallow access to big group and nested container hierarchy");
             System.out.println("-------------------------------------------------------------------");
             addToGroup(userInTeam, allGroup);
             timeAccess(userInDeepNestedGroup);
 
-//            long start = System.nanoTime();
-//            List all = (List)GraphScenarioTestUtils.getAllAccessibleByType(graph.get(), userInDeepNestedGroup, "R", "Term", 200);
-//            System.out.println("Access to 200 folders " + (System.nanoTime() - start) / 1000000.0 + " ms");
+            System.out.println("\nTesting downward access through the 200k member group with compressed supernode membership");
+            System.out.println("-------------------------------------------------------------------");
+            timeSupernodeAccess(userInDeepNestedGroup);
+
+            System.out.println("\nTesting downward access through diamond-shaped group hierarchies");
+            System.out.println("-------------------------------------------------------------------");
+            timeDiamondAccess(config);
+
+            System.out.println("\nTesting listing of accessible terms in pages of 200");
+            System.out.println("-------------------------------------------------------------------");
+            timeListing(userInDeepNestedGroup);
+
+            System.out.println("\nTesting checks and listing over " + config.partitions + " partitions with replicated principals");
+            System.out.println("-------------------------------------------------------------------");
+            timePartitionedAccess(config, userInDeepNestedGroup);
+
+            System.out.println("\nTesting a page of 200 accessible terms filtered in a Gremlin query");
+            System.out.println("-------------------------------------------------------------------");
+            timeAccessStep(userInDeepNestedGroup);
 
             System.out.println("Vertices: " + graph.get().traversal().V().count().next());
             System.out.println("Edges: " + graph.get().traversal().E().count().next());
@@ -178,6 +333,35 @@ public class ACLLoadTest {
             getGroupStats().forEach((key, list) -> {
                 System.out.println(key + " -> " + list.stream().mapToInt(Integer::intValue).summaryStatistics());
             });
+
+            long start = System.nanoTime();
+            MembershipClosureIndex index = MembershipClosureIndex.build(graph.get());
+            System.out.println("Membership index for " + index.size() + " principals built in " + (System.nanoTime() - start) / 1000000.0 + " ms");
+
+            start = System.nanoTime();
+            CompiledAclSnapshot compiledAcl = CompiledAclSnapshot.compile(graph.get());
+            System.out.println("ACL snapshot for " + compiledAcl.size() + " resources compiled in " + (System.nanoTime() - start) / 1000000.0 + " ms");
+
+            start = System.nanoTime();
+            Assertions.assertTrue(GraphScenarioTestUtils.hasAccess(graph.get(), "deep_0_0_0_0_1_0_0_2_1_1_3", userInDeepNestedGroup, "R", compiledAcl));
+            System.out.println("Compiled access to deep leaf node " + (System.nanoTime() - start) / 1000000.0 + " ms");
+
+            start = System.nanoTime();
+            CsrAclSnapshot csrAcl = CsrAclSnapshot.export(graph.get());
+            System.out.println("CSR snapshot of " + csrAcl.size() + " vertices exported in " + (System.nanoTime() - start) / 1000000.0 + " ms");
+            timeCsrAccess(csrAcl, directUser, userInDeepNestedGroup, allUsers.get(allUsers.size() / 2).value("name"));
+            timeAccessors(csrAcl);
+            timeMappedSnapshot(csrAcl, directUser, userInDeepNestedGroup);
+
+            timeAudit(new AccessAudit(graph.get(), compiledAcl, index));
+
+            System.out.println("\nTesting 2000 grants written one at a time and as a batch");
+            System.out.println("-------------------------------------------------------------------");
+            timeBatchWrites(this);
+
+            System.out.println("\nTesting mixed load of checks and grants for " + config.loadSeconds + " s on " + config.threads + " threads");
+            System.out.println("-------------------------------------------------------------------");
+            timeMixedLoad(this);
         }
     }
 
@@ -199,6 +383,356 @@ public class ACLLoadTest {
         System.out.println("Access for write to deep leaf node " + (System.nanoTime() - start) / 1000000.0 + " ms");
     }
 
+    private static void timeSupernodeAccess(String userName) {
+        long start = System.nanoTime();
+        SupernodeMembership membership = SupernodeMembership.build(graph);
+        System.out.println(membership.size() + " supernodes compressed in " + (System.nanoTime() - start) / 1000000.0 + " ms");
+        PermissionTraverser.EvaluationStrategy downward = PermissionTraverser.EvaluationStrategy.GROUPS_DOWNWARD;
+        PermissionTraverser compressed = new PermissionTraverser(downward).withSupernodeMembership(membership);
+        for (PermissionTraverser traverser : new PermissionTraverser[]{new PermissionTraverser(downward), compressed}) {
+            start = System.nanoTime();
+            for (int i = 0; i < 10; i++) {
+                // a direct user of all-0 whose deep leaf is only granted to the group
+                try (GraphTraversal<Vertex, Vertex> t = traverser.hasAccess(graph, "deep_0_0_0_0_1_0_0_2_1_1_3", userName, "R")) {
+                    Assertions.assertTrue(t.hasNext());
+                } catch (Exception x) {
+                    throw new RuntimeException(x);
+                }
+            }
+            System.out.println((traverser == compressed ? "Compressed" : "Edges") + ": downward access to deep leaf node "
+                    + (System.nanoTime() - start) / 10 / 1000000.0 + " ms per check");
+        }
+    }
+
+    private static void timeDiamondAccess(LoadScenario.Config config) {
+        if (config.diamondLevels == 0) {
+            return;
+        }
+        // traversers the downward walk produces from the granted groups, counting bulk, without and with its visited set
+        long paths = graph.traversal().V().has("name", "diamond").in("HAS_PERMISSION")
+                .repeat(__.in("MEMBER_OF", "HAS_SUPERGROUP")).emit().count().next();
+        long visits = graph.traversal().V().has("name", "diamond").in("HAS_PERMISSION")
+                .repeat(__.in("MEMBER_OF", "HAS_SUPERGROUP").dedup()).emit().count().next();
+        System.out.println(String.format("%d levels of %d groups: %d traversers without a visited set, %d with", config.diamondLevels,
+                config.diamondWidth, paths, visits));
+        Assertions.assertEquals(0, HierarchyCycles.membership(graph).size());
+        PermissionTraverser traverser = new PermissionTraverser(PermissionTraverser.EvaluationStrategy.GROUPS_DOWNWARD);
+        // a member of the first bottom group, and a user outside the diamond, for whom the whole diamond is walked
+        for (String userName : Arrays.asList("user 0", "user " + (config.users - 1))) {
+            boolean expected = userName.equals("user 0");
+            long start = System.nanoTime();
+            for (int i = 0; i < 100; i++) {
+                Assertions.assertEquals(expected, traverser.canAccess(graph, "diamond", userName, "R"));
+            }
+            AccessCheckReport.BranchStats groups = traverser.checkAccess(graph, "diamond", userName, "R")
+                    .getBranch(AccessCheckReport.Branch.GROUP_GRANT);
+            System.out.println(String.format("Downward access to diamond by %s %.3f ms, %d vertices walked, %d revisits pruned", userName,
+                    (System.nanoTime() - start) / 100 / 1000000.0, groups.getVertices(), groups.getPruned()));
+        }
+    }
+
+    private static void timeListing(String userName) {
+        String cursor = null;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            AccessPage page = new PermissionTraverser().listAccessible(graph, userName, "R", "Term", 200, cursor);
+            System.out.println("Page " + i + " of 200 terms " + (System.nanoTime() - start) / 1000000.0 + " ms");
+            Assertions.assertEquals(200, page.getResources().size());
+            cursor = page.getNextCursor();
+        }
+    }
+
+    private static void timePartitionedAccess(LoadScenario.Config config, String userName) {
+        if (config.partitions == 0) {
+            return;
+        }
+        List<Graph> partitions = new ArrayList<>();
+        List<GraphBulkLoader> loaders = new ArrayList<>();
+        for (int p = 0; p < config.partitions; p++) {
+            Graph partition = TinkerGraph.open();
+            PermissionTraverser.createIndexes(partition);
+            partitions.add(partition);
+            loaders.add(new GraphBulkLoader(partition).withDeferredIndexes());
+        }
+        long start = System.nanoTime();
+        long[] sizes = PartitionedAcl.split(graph, loaders);
+        System.out.println("Split in " + (System.nanoTime() - start) / 1000000.0 + " ms, resources per partition " + Arrays.toString(sizes));
+
+        String leaf = "deep_0_0_0_0_1_0_0_2_1_1_3";
+        try (PartitionedAcl acl = new PartitionedAcl(partitions)) {
+            boolean expected = new PermissionTraverser().canAccess(graph, leaf, userName, "R");
+            start = System.nanoTime();
+            for (int i = 0; i < 100; i++) {
+                Assertions.assertEquals(expected, acl.canAccess(leaf, userName, "R"));
+            }
+            System.out.println("Routed access to deep leaf node " + (System.nanoTime() - start) / 100 / 1000000.0 + " ms per check");
+            String cursor = null;
+            for (int i = 0; i < 3; i++) {
+                start = System.nanoTime();
+                AccessPage page = acl.listAccessible(userName, "R", "Term", 200, cursor);
+                System.out.println("Page " + i + " of 200 terms from all partitions " + (System.nanoTime() - start) / 1000000.0 + " ms");
+                Assertions.assertEquals(200, page.getResources().size());
+                cursor = page.getNextCursor();
+            }
+        }
+    }
+
+    private static void timeAccessStep(String userName) {
+        PermissionTraverser traverser = new PermissionTraverser();
+        long start = System.nanoTime();
+        try (GraphTraversal<Vertex, Vertex> t = traverser.hasAccess(graph, graph.traversal().V().hasLabel("Term"), userName, "R").limit(200)) {
+            Assertions.assertEquals(200, t.toList().size());
+        } catch (Exception x) {
+            throw new RuntimeException(x);
+        }
+        System.out.println("Wrapped traversal " + (System.nanoTime() - start) / 1000000.0 + " ms");
+
+        start = System.nanoTime();
+        try (GraphTraversal<Vertex, Vertex> t = traverser.hasAccess(graph.traversal().withStrategies(HasAccessStrategy.instance()).V().hasLabel("Term"),
+                userName, "R").limit(200)) {
+            Assertions.assertEquals(200, t.toList().size());
+        } catch (Exception x) {
+            throw new RuntimeException(x);
+        }
+        System.out.println("hasAccess step " + (System.nanoTime() - start) / 1000000.0 + " ms");
+    }
+
+    private static void timeAudit(AccessAudit audit) {
+        try {
+            Path export = Files.createTempFile("access-audit", ".tsv");
+            try {
+                for (int parallelism : new int[]{1, Runtime.getRuntime().availableProcessors()}) {
+                    long start = System.nanoTime();
+                    long users = audit.withParallelism(parallelism).export(export, "R", "W");
+                    System.out.println("Audit of " + users + " users with " + parallelism + " threads " + (System.nanoTime() - start) / 1000000.0
+                            + " ms, " + Files.size(export) / 1024 + " KB");
+                }
+            } finally {
+                Files.delete(export);
+            }
+        } catch (IOException x) {
+            throw new RuntimeException(x);
+        }
+    }
+
+    private static void timePlannedAccess(String userName) {
+        BranchPlanner planner = new BranchPlanner(25, 2);
+        PermissionTraverser planned = new PermissionTraverser().withBranchPlanner(planner);
+        // the first round lets the planner learn, the second measures the learned order including its sampling
+        for (PermissionTraverser traverser : new PermissionTraverser[]{new PermissionTraverser(), planned, planned}) {
+            long start = System.nanoTime();
+            for (int i = 0; i < 50; i++) {
+                try (GraphTraversal<Vertex, Vertex> t = traverser.hasAccess(graph, "deep_0_0_0_0_1_0_0_2_1_1_3", userName, "R")) {
+                    Assertions.assertTrue(t.hasNext());
+                } catch (Exception x) {
+                    throw new RuntimeException(x);
+                }
+            }
+            System.out.println((traverser == planned ? "Planned" : "Default") + " access to deep leaf node "
+                    + (System.nanoTime() - start) / 50 / 1000000.0 + " ms per check");
+        }
+        System.out.println(planner);
+    }
+
+    private static void timeAsyncAccess(String... userNames) {
+        List<String[]> checks = new ArrayList<>();
+        for (int caller = 0; caller < 400; caller++) {
+            checks.add(new String[]{"deep_0_0_0_" + caller % 100, userNames[caller / 100 % userNames.length]});
+        }
+        PermissionTraverser traverser = new PermissionTraverser();
+        long start = System.nanoTime();
+        for (String[] check : checks) {
+            try (GraphTraversal<Vertex, Vertex> t = traverser.hasAccess(graph, check[0], check[1], "R")) {
+                Assertions.assertTrue(t.hasNext());
+            } catch (Exception x) {
+                throw new RuntimeException(x);
+            }
+        }
+        double sequential = (System.nanoTime() - start) / 1000000.0;
+        System.out.println("Sequential: " + sequential + " ms, " + (int) (checks.size() * 1000 / sequential) + " checks/s");
+
+        try (AsyncAccessChecker checker = new AsyncAccessChecker(graph, traverser)) {
+            start = System.nanoTime();
+            List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+            checks.forEach(check -> futures.add(checker.hasAccess(check[0], check[1], "R")));
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            double concurrent = (System.nanoTime() - start) / 1000000.0;
+            System.out.println("Concurrent: " + concurrent + " ms, " + (int) (checks.size() * 1000 / concurrent) + " checks/s, "
+                    + checker.getEvaluations() + " evaluations and " + checker.getUserResolutions() + " user resolutions for "
+                    + checker.getChecks() + " checks");
+            Assertions.assertTrue(futures.stream().allMatch(CompletableFuture::join));
+        }
+    }
+
+    private static void timeMixedLoad(LoadScenario scenario) {
+        LoadScenario.Config config = scenario.config;
+        // sorted, so that the same seed picks the same terms
+        List<Vertex> terms = graph.traversal().V().hasLabel("Term").order().by("name").toList();
+        PermissionTraverser traverser = new PermissionTraverser();
+        // grants added by the write class and not revoked yet; only touched under the generator's write lock
+        Deque<Edge> grants = new ArrayDeque<>();
+        LoadGenerator.Result result = new LoadGenerator(config.seed)
+                .withThreads(config.threads)
+                .withWarmup(Duration.ofSeconds(config.warmupSeconds))
+                .withDuration(Duration.ofSeconds(config.loadSeconds))
+                .withRead("direct user", 100 - config.writePercent, random -> check(traverser, terms.get(random.nextInt(terms.size())),
+                        scenario.allUsers.get(random.nextInt(config.aclsPerLevel))))
+                .withRead("nested group user", 100 - config.writePercent, random -> check(traverser, terms.get(random.nextInt(terms.size())),
+                        scenario.userInTeam))
+                .withRead("big group user", 100 - config.writePercent, random -> check(traverser, terms.get(random.nextInt(terms.size())),
+                        scenario.allUsers.get(random.nextInt(scenario.allUsers.size()))))
+                .withWrite("grant and revoke", 3 * config.writePercent, random -> {
+                    Vertex group = scenario.getGroup("adhoc->" + random.nextInt(config.adhocGroups));
+                    grants.add(PermissionMask.addHasPermission(group, terms.get(random.nextInt(terms.size())), "R"));
+                    if (grants.size() > 100) {
+                        grants.remove().remove();
+                    }
+                })
+                .run();
+        grants.forEach(Edge::remove);
+        System.out.println(result);
+        Assertions.assertEquals(0, result.getErrors());
+    }
+
+    private static void timeBatchWrites(LoadScenario scenario) {
+        List<Vertex> terms = graph.traversal().V().hasLabel("Term").order().by("name").limit(2000).toList();
+        Vertex group = scenario.getGroup("adhoc->0");
+        AccessDecisionCache cache = new AccessDecisionCache(new PermissionTraverser(), 10000);
+        AclChangeLog log = new AclChangeLog(graph);
+        GraphTraversalSource g = graph.traversal().withStrategies(EventStrategy.build().addListener(cache).addListener(log).create());
+        AclBatchWriter writer = new AclBatchWriter(graph).withListener(cache).withListener(log);
+
+        long start = System.nanoTime();
+        for (Vertex term : terms) {
+            g.V(group).addE("HAS_PERMISSION").to(term).property("permission", "R").property(PermissionMask.PROPERTY, PermissionMask.impliedMask("R")).iterate();
+        }
+        double single = (System.nanoTime() - start) / 1000000.0;
+        System.out.println("One at a time: " + single + " ms, " + (int) (terms.size() * 1000 / single) + " grants/s");
+
+        AclBatch revokes = new AclBatch();
+        terms.forEach(term -> revokes.revoke(group.id(), term.id()));
+        start = System.nanoTime();
+        AclChangeSet revoked = writer.apply(revokes);
+        System.out.println("Batch revoke: " + (System.nanoTime() - start) / 1000000.0 + " ms, " + revoked);
+        Assertions.assertEquals(terms.size(), revoked.getRemovedEdges().size());
+
+        AclBatch grants = new AclBatch();
+        terms.forEach(term -> grants.grant(group.id(), term.id(), "R"));
+        start = System.nanoTime();
+        AclChangeSet granted = writer.apply(grants);
+        double batched = (System.nanoTime() - start) / 1000000.0;
+        System.out.println("Batch: " + batched + " ms, " + (int) (terms.size() * 1000 / batched) + " grants/s, " + granted);
+        Assertions.assertEquals(terms.size(), granted.getAddedEdges().size());
+        Assertions.assertEquals(3L * terms.size(), log.getPosition());
+
+        // every term moved to the wide root and back to where it was
+        Map<Object, Object> parents = new HashMap<>();
+        terms.forEach(term -> parents.put(term.id(), term.vertices(Direction.OUT, "IN_FOLDER").next().id()));
+        AclBatch moves = new AclBatch();
+        terms.forEach(term -> moves.move(term.id(), scenario.wideRoot.id()));
+        start = System.nanoTime();
+        writer.apply(moves);
+        System.out.println("Batch move: " + (System.nanoTime() - start) / 1000000.0 + " ms");
+        AclBatch back = new AclBatch();
+        parents.forEach(back::move);
+        terms.forEach(term -> back.revoke(group.id(), term.id()));
+        writer.apply(back);
+        Assertions.assertFalse(group.edges(Direction.OUT, "HAS_PERMISSION").hasNext());
+    }
+
+    private static boolean check(PermissionTraverser traverser, Vertex resource, Vertex user) {
+        return traverser.canAccess(graph, resource.value("name"), user.<String>value("name"), "R");
+    }
+
+    private static void timeCsrAccess(CsrAclSnapshot csrAcl, String... userNames) {
+        CsrAclSnapshot.Evaluator evaluator = csrAcl.newEvaluator();
+        PermissionTraverser traverser = new PermissionTraverser();
+        String leaf = "deep_0_0_0_0_1_0_0_2_1_1_3";
+        for (String userName : userNames) {
+            for (String permission : Arrays.asList("R", "W")) {
+                boolean expected = traverser.canAccess(graph, leaf, userName, permission);
+                long start = System.nanoTime();
+                for (int i = 0; i < 100; i++) {
+                    traverser.canAccess(graph, leaf, userName, permission);
+                }
+                double gremlin = (System.nanoTime() - start) / 100 / 1000.0;
+                for (int i = 0; i < 100000; i++) {
+                    // warm up
+                    evaluator.hasAccess(leaf, userName, permission);
+                }
+                start = System.nanoTime();
+                for (int i = 0; i < 100000; i++) {
+                    Assertions.assertEquals(expected, evaluator.hasAccess(leaf, userName, permission));
+                }
+                double csr = (System.nanoTime() - start) / 100000 / 1000.0;
+                System.out.println(String.format("%s to deep leaf node by %s: Gremlin %.1f us, CSR %.3f us per check", permission, userName, gremlin, csr));
+            }
+        }
+    }
+
+    private static void timeAccessors(CsrAclSnapshot csrAcl) {
+        CsrAclSnapshot.Evaluator evaluator = csrAcl.newEvaluator();
+        String leaf = "deep_0_0_0_0_1_0_0_2_1_1_3";
+        List<String> userNames = graph.traversal().V().hasLabel("User").<String>values("name").toList();
+        for (String permission : Arrays.asList("R", "W")) {
+            long start = System.nanoTime();
+            long expected = userNames.stream().filter(user -> evaluator.hasAccess(leaf, user, permission)).count();
+            double checks = (System.nanoTime() - start) / 1000000.0;
+            start = System.nanoTime();
+            long first = csrAcl.countAccessors(leaf, permission);
+            double cold = (System.nanoTime() - start) / 1000000.0;
+            start = System.nanoTime();
+            for (int i = 0; i < 10; i++) {
+                Assertions.assertEquals(first, csrAcl.countAccessors(leaf, permission));
+            }
+            double warm = (System.nanoTime() - start) / 10 / 1000000.0;
+            Assertions.assertEquals(expected, first);
+            System.out.println(String.format("%d users with %s on deep leaf node: %.1f ms checking every user, reverse query %.1f ms first, %.2f ms after",
+                    first, permission, checks, cold, warm));
+        }
+    }
+
+    private static void timeMappedSnapshot(CsrAclSnapshot csrAcl, String... userNames) {
+        String leaf = "deep_0_0_0_0_1_0_0_2_1_1_3";
+        try {
+            Path file = Files.createTempFile("acl", ".snapshot");
+            try {
+                long start = System.nanoTime();
+                csrAcl.write(file);
+                double write = (System.nanoTime() - start) / 1000000.0;
+                boolean expected = csrAcl.newEvaluator().hasAccess(leaf, userNames[0], "R");
+                MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+                System.gc();
+                long heap = memory.getHeapMemoryUsage().getUsed();
+                start = System.nanoTime();
+                CsrAclSnapshot mapped = CsrAclSnapshot.map(file);
+                CsrAclSnapshot.Evaluator evaluator = mapped.newEvaluator();
+                Assertions.assertEquals(expected, evaluator.hasAccess(leaf, userNames[0], "R"));
+                double firstCheck = (System.nanoTime() - start) / 1000000.0;
+                // the evaluator's marks, the rest stays in the file
+                System.gc();
+                long heapGrowth = memory.getHeapMemoryUsage().getUsed() - heap;
+                for (String userName : userNames) {
+                    Assertions.assertEquals(csrAcl.newEvaluator().hasAccess(leaf, userName, "W"), evaluator.hasAccess(leaf, userName, "W"));
+                }
+                System.out.println(String.format("Snapshot file of %d KB written in %.1f ms, mapped and first check in %.1f ms, heap change %d KB",
+                        Files.size(file) / 1024, write, firstCheck, heapGrowth / 1024));
+            } finally {
+                Files.delete(file);
+            }
+        } catch (IOException x) {
+            throw new RuntimeException(x);
+        }
+    }
+
+    private static void timeBatchAccess(String userName) {
+        List<String> terms = IntStream.range(0, 200).mapToObj(i -> "deep_0_0_0_" + i).collect(Collectors.toList());
+        long start = System.nanoTime();
+        Map<String, Boolean> results = new PermissionTraverser().hasAccess(graph, terms, userName, "R");
+        System.out.println("Batch access to 200 terms " + (System.nanoTime() - start) / 1000000.0 + " ms");
+        Assertions.assertTrue(results.values().stream().allMatch(allowed -> allowed), "Expected access to all terms by " + userName);
+    }
+
 //    @Test
 //    public void printAllAccessibleToAllUsers() {
 //        graph.traversal().V().hasLabel("User").forEachRemaining((user) -> {
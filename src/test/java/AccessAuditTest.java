@@ -0,0 +1,95 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class AccessAuditTest {
+
+    private static Graph graph;
+
+    @BeforeAll
+    public static void setup() {
+        graph = GraphScenarioTestUtils.example2Graph();
+    }
+
+    private static String export(int parallelism, String... permissions) throws IOException {
+        StringWriter out = new StringWriter();
+        new AccessAudit(graph).withParallelism(parallelism).export(out, permissions);
+        return out.toString();
+    }
+
+    // user name + " " + permission -> names of the accessible resources
+    private static Map<String, Set<String>> parse(String export) {
+        List<String> resources = new ArrayList<>();
+        Map<String, Set<String>> access = new HashMap<>();
+        for (String line : export.split("\n")) {
+            String[] fields = line.split("\t");
+            if (fields[0].equals("resource")) {
+                Assertions.assertEquals(resources.size(), Integer.parseInt(fields[1]));
+                resources.add(fields[2]);
+                continue;
+            }
+            Set<String> names = access.computeIfAbsent(fields[1] + " " + fields[2], k -> new HashSet<>());
+            for (String range : fields[3].split(",")) {
+                String[] bounds = range.split("-");
+                int from = Integer.parseInt(bounds[0]);
+                int to = Integer.parseInt(bounds[bounds.length - 1]);
+                for (int position = from; position <= to; position++) {
+                    names.add(resources.get(position));
+                }
+            }
+        }
+        return access;
+    }
+
+    private static Set<String> getAllAccessible(String userId, String permission) {
+        try (GraphTraversal<?, Object> t = new PermissionTraverser().hasAccess(graph, graph.traversal().V(), userId, permission).values("name")) {
+            Set<String> names = new HashSet<>();
+            t.forEachRemaining(name -> names.add((String) name));
+            return names;
+        } catch (Exception x) {
+            throw new RuntimeException(x);
+        }
+    }
+
+    @Test
+    public void testExportMatchesPerUserEvaluation() throws IOException {
+        Map<String, Set<String>> access = parse(export(1, "R", "W", "A"));
+        graph.traversal().V().hasLabel("User").<String>values("name").forEachRemaining(userId -> {
+            for (String permission : PermissionMask.LEVELS) {
+                Assertions.assertEquals(getAllAccessible(userId, permission), access.getOrDefault(userId + " " + permission, Set.of()),
+                        String.format("Audit of %s with access %s", userId, permission));
+            }
+        });
+    }
+
+    @Test
+    public void testParallelExportIsIdentical() throws IOException {
+        Assertions.assertEquals(export(1, "R", "W"), export(4, "R", "W"));
+    }
+
+    @Test
+    public void testSubtreeIsOneRange() throws IOException {
+        // Derek reads the public Corporate folder and, through All devs, Dev with its four descendants
+        String line = export(1, "R").lines().filter(l -> l.startsWith("access\tDerek Dev\tR\t")).findFirst().orElseThrow();
+        String[] ranges = line.split("\t")[3].split(",");
+        Assertions.assertEquals("0", ranges[0]);
+        Assertions.assertEquals(2, ranges.length);
+        String[] bounds = ranges[1].split("-");
+        Assertions.assertEquals(4, Integer.parseInt(bounds[1]) - Integer.parseInt(bounds[0]));
+    }
+
+    @Test
+    public void testUnknownPermission() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> export(1, "X"));
+    }
+}
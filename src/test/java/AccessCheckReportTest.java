@@ -0,0 +1,150 @@
+import java.util.Arrays;
+import java.util.List;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class AccessCheckReportTest {
+
+    private Graph graph;
+
+    @BeforeEach
+    public void setup() {
+        graph = GraphScenarioTestUtils.indexedExample2Graph();
+    }
+
+    private Object id(String label, String name) {
+        return graph.traversal().V().hasLabel(label).has("name", name).id().next();
+    }
+
+    private AccessCheckReport check(PermissionTraverser.EvaluationStrategy strategy, String resourceId, String userId, String permission) {
+        return new PermissionTraverser(strategy).checkAccess(graph, resourceId, userId, permission);
+    }
+
+    @Test
+    public void testWinningBranch() {
+        for (PermissionTraverser.EvaluationStrategy strategy : PermissionTraverser.EvaluationStrategy.values()) {
+            AccessCheckReport report = check(strategy, "Corporate", "Ronny Researcher", "R");
+            Assertions.assertEquals(AccessCheckReport.Branch.PUBLIC, report.getWinningBranch());
+
+            report = check(strategy, "Security", "Owen Owner", "W");
+            Assertions.assertEquals(AccessCheckReport.Branch.OWNER, report.getWinningBranch());
+            Assertions.assertEquals(id("Folder", "Security"), report.getMatchedVertexId());
+
+            report = check(strategy, "Finance", "Ronny Researcher", "R");
+            Assertions.assertEquals(AccessCheckReport.Branch.USER_GRANT, report.getWinningBranch());
+            // the hit is charged to the branch the report names, also where upward one traversal covers both
+            Assertions.assertEquals(1, report.getBranch(AccessCheckReport.Branch.USER_GRANT).getHits(), strategy.name());
+            Assertions.assertEquals(0, report.getBranch(AccessCheckReport.Branch.GROUP_GRANT).getHits(), strategy.name());
+
+            // inherited from the Security folder through Forensics' supergroup
+            report = check(strategy, "Intruder", "Ivan Investigator", "R");
+            Assertions.assertEquals(AccessCheckReport.Branch.GROUP_GRANT, report.getWinningBranch(), strategy.name());
+            Assertions.assertEquals(id("Folder", "Security"), report.getMatchedVertexId());
+            Assertions.assertEquals(1, report.getBranch(AccessCheckReport.Branch.CONTAINER_ASCENT).getMaxDepth());
+
+            report = check(strategy, "Hack", "Sally Security", "R");
+            Assertions.assertFalse(report.isAllowed());
+            Assertions.assertNull(report.getWinningBranch());
+        }
+    }
+
+    @Test
+    public void testCounts() {
+        AccessCheckReport report = check(PermissionTraverser.EvaluationStrategy.GROUPS_DOWNWARD, "Intruder", "Ivan Investigator", "R");
+        AccessCheckReport.BranchStats groups = report.getBranch(AccessCheckReport.Branch.GROUP_GRANT);
+        // Security group <- Forensics <- Ivan
+        Assertions.assertEquals(2, groups.getMaxDepth());
+        Assertions.assertTrue(groups.getVertices() >= 3 && groups.getEdges() >= 3, groups.toString());
+        Assertions.assertEquals(-1, report.getPrincipalCount());
+
+        report = check(PermissionTraverser.EvaluationStrategy.USER_UPWARD, "Intruder", "Ivan Investigator", "R");
+        Assertions.assertEquals(3, report.getPrincipalCount());
+        Assertions.assertEquals(0, report.getBranch(AccessCheckReport.Branch.GROUP_GRANT).getMaxDepth());
+        Assertions.assertTrue(report.getTotalNanos() > 0);
+        for (AccessCheckReport.Phase phase : AccessCheckReport.Phase.values()) {
+            Assertions.assertTrue(report.getPhaseNanos(phase) >= 0);
+        }
+    }
+
+    @Test
+    public void testAutoFallsBackForLargeExpansions() {
+        // Forensics gets more supergroups than the upward strategy takes
+        Vertex forensics = graph.traversal().V(id("Group", "Forensics")).next();
+        for (int i = 0; i < PermissionTraverser.AUTO_MAX_UPWARD_PRINCIPALS; i++) {
+            forensics.addEdge("HAS_SUPERGROUP", graph.addVertex(T.label, "Group", "name", "extra " + i));
+        }
+        AccessCheckReport report = check(PermissionTraverser.EvaluationStrategy.AUTO, "Intruder", "Ivan Investigator", "R");
+        Assertions.assertEquals(-1, report.getPrincipalCount());
+        Assertions.assertTrue(report.isAllowed());
+        // Derek's few groups are still expanded upward
+        report = check(PermissionTraverser.EvaluationStrategy.AUTO, "Code", "Derek Dev", "R");
+        Assertions.assertEquals(2, report.getPrincipalCount());
+        Assertions.assertTrue(report.isAllowed());
+    }
+
+    @Test
+    public void testSameAnswersAsHasAccess() throws Exception {
+        List<String> resources = graph.traversal().V().hasLabel("Folder", "Term").<String>values("name").toList();
+        List<String> users = graph.traversal().V().hasLabel("User").<String>values("name").toList();
+        for (PermissionTraverser.EvaluationStrategy strategy : PermissionTraverser.EvaluationStrategy.values()) {
+            PermissionTraverser traverser = new PermissionTraverser(strategy);
+            for (String resource : resources) {
+                for (String user : users) {
+                    for (String permission : Arrays.asList("R", "W")) {
+                        boolean expected;
+                        try (GraphTraversal<Vertex, Vertex> t = traverser.hasAccess(graph, resource, user, permission)) {
+                            expected = t.hasNext();
+                        }
+                        Assertions.assertEquals(expected, traverser.checkAccess(graph, resource, user, permission).isAllowed(),
+                                String.format("Failed for %s with access %s by %s (%s)", resource, permission, user, strategy));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMetrics() {
+        HistogramAccessMetrics metrics = new HistogramAccessMetrics();
+        PermissionTraverser traverser = new PermissionTraverser().withMetrics(metrics);
+        traverser.checkAccess(graph, "Corporate", "Ronny Researcher", "R");
+        traverser.checkAccess(graph, "Code", "Cally Coder", "R");
+        traverser.checkAccess(graph, "Hack", "Sally Security", "R");
+
+        Assertions.assertEquals(3, metrics.getChecks());
+        Assertions.assertEquals(2, metrics.getAllowed());
+        Assertions.assertEquals(1, metrics.getWins(AccessCheckReport.Branch.PUBLIC));
+        Assertions.assertEquals(1, metrics.getWins(AccessCheckReport.Branch.GROUP_GRANT));
+        Assertions.assertTrue(metrics.getEdges(AccessCheckReport.Branch.CONTAINER_ASCENT) > 0);
+        HistogramAccessMetrics.LatencyHistogram latency = metrics.getTotalLatency();
+        Assertions.assertEquals(3, latency.getCount());
+        Assertions.assertTrue(latency.getPercentileNanos(50) <= latency.getPercentileNanos(100));
+        Assertions.assertTrue(latency.getPercentileNanos(100) >= latency.getMeanNanos());
+    }
+
+    @Test
+    public void testLatencyPercentilesWithinSubBucket() {
+        HistogramAccessMetrics.LatencyHistogram latency = new HistogramAccessMetrics.LatencyHistogram();
+        // 1us to 10ms in steps of 1us
+        for (long micros = 1; micros <= 10000; micros++) {
+            latency.record(micros * 1000);
+        }
+        for (double percentile : new double[] {50, 99, 99.9}) {
+            long exact = (long) Math.ceil(percentile / 100 * 10000) * 1000;
+            long reported = latency.getPercentileNanos(percentile);
+            Assertions.assertTrue(reported >= exact && reported <= exact * 1.035, percentile + ": " + reported + " for " + exact);
+        }
+        // small values are exact, and every value falls inside the bounds of its bucket
+        for (long value : new long[] {0, 1, 31, 32, 63, 64, 65, 1000, 123456789, Long.MAX_VALUE}) {
+            int bucket = HistogramAccessMetrics.LatencyHistogram.bucketOf(value);
+            Assertions.assertTrue(value <= HistogramAccessMetrics.LatencyHistogram.upperBoundOf(bucket), String.valueOf(value));
+            Assertions.assertTrue(bucket == 0 || value > HistogramAccessMetrics.LatencyHistogram.upperBoundOf(bucket - 1), String.valueOf(value));
+        }
+        Assertions.assertEquals(63, HistogramAccessMetrics.LatencyHistogram.upperBoundOf(HistogramAccessMetrics.LatencyHistogram.bucketOf(63)));
+    }
+}
@@ -0,0 +1,130 @@
+import java.time.Duration;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.__;
+import org.apache.tinkerpop.gremlin.process.traversal.strategy.decoration.EventStrategy;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class AccessDecisionCacheTest {
+
+    private Graph graph;
+    private AccessDecisionCache cache;
+    private GraphTraversalSource g;
+
+    @BeforeEach
+    public void setup() {
+        graph = GraphScenarioTestUtils.indexedExample2Graph();
+        cache = new AccessDecisionCache(new PermissionTraverser(), 100);
+        // mutations made through this source invalidate the cache
+        g = graph.traversal().withStrategies(EventStrategy.build().addListener(cache).create());
+    }
+
+    private void assertAccess(String resourceId, String userId, String permission, boolean expected) {
+        Assertions.assertEquals(expected, cache.hasAccess(graph, resourceId, userId, permission),
+                String.format("Failed for %s with access %s by %s", resourceId, permission, userId));
+    }
+
+    private void assertCached(String resourceId, String userId, String permission, boolean expected) {
+        long hits = cache.getHits();
+        assertAccess(resourceId, userId, permission, expected);
+        Assertions.assertEquals(hits + 1, cache.getHits(), "Expected a cache hit");
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        assertAccess("Bond", "Ronny Researcher", "R", true);
+        assertCached("Bond", "Ronny Researcher", "R", true);
+        assertAccess("Bond", "Ronny Researcher", "W", false);
+        assertCached("Bond", "Ronny Researcher", "W", false);
+        Assertions.assertEquals(2, cache.getMisses());
+        Assertions.assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    public void testRevokedGrantOnContainer() {
+        assertAccess("Bond", "Ronny Researcher", "R", true);
+        g.V(GraphScenarioTestUtils.vertex(graph, "Folder", "Finance")).inE("HAS_PERMISSION").drop().iterate();
+        assertAccess("Bond", "Ronny Researcher", "R", false);
+    }
+
+    @Test
+    public void testRemovedSuperGroup() {
+        assertAccess("Intruder", "Ivan Investigator", "R", true);
+        g.V(GraphScenarioTestUtils.vertex(graph, "Group", "Forensics")).outE("HAS_SUPERGROUP").drop().iterate();
+        assertAccess("Intruder", "Ivan Investigator", "R", false);
+    }
+
+    @Test
+    public void testRemovedMembership() {
+        assertAccess("Code", "Cally Coder", "R", true);
+        g.V(GraphScenarioTestUtils.vertex(graph, "User", "Cally Coder")).outE("MEMBER_OF").drop().iterate();
+        assertAccess("Code", "Cally Coder", "R", false);
+    }
+
+    @Test
+    public void testMovedFolder() {
+        assertAccess("Bond", "Ronny Researcher", "R", true);
+        g.V(GraphScenarioTestUtils.vertex(graph, "Term", "Bond")).outE("IN_FOLDER").drop().iterate();
+        g.V(GraphScenarioTestUtils.vertex(graph, "Term", "Bond")).addE("IN_FOLDER").to(GraphScenarioTestUtils.vertex(graph, "Folder", "Security")).iterate();
+        assertAccess("Bond", "Ronny Researcher", "R", false);
+    }
+
+    @Test
+    public void testPublicAndOwner() {
+        assertAccess("Code", "Ronny Researcher", "R", false);
+        g.V(GraphScenarioTestUtils.vertex(graph, "Folder", "Code")).property("public", true).iterate();
+        assertAccess("Code", "Ronny Researcher", "R", true);
+
+        assertAccess("Code", "Ronny Researcher", "W", false);
+        g.V(GraphScenarioTestUtils.vertex(graph, "Folder", "Code")).addE("OWNED_BY").to(GraphScenarioTestUtils.vertex(graph, "User", "Ronny Researcher")).iterate();
+        assertAccess("Code", "Ronny Researcher", "W", true);
+
+        g.V(GraphScenarioTestUtils.vertex(graph, "Folder", "Code")).properties("public").drop().iterate();
+        assertAccess("Code", "Ronny Researcher", "R", true);
+        g.V(GraphScenarioTestUtils.vertex(graph, "Folder", "Code")).outE("OWNED_BY").drop().iterate();
+        assertAccess("Code", "Ronny Researcher", "R", false);
+    }
+
+    @Test
+    public void testUnrelatedChangeKeepsDecision() {
+        assertAccess("Bond", "Ronny Researcher", "R", true);
+        assertAccess("Key", "Derek Dev", "W", true);
+        g.V(GraphScenarioTestUtils.vertex(graph, "User", "Mandy Manager")).addE("HAS_PERMISSION").to(GraphScenarioTestUtils.vertex(graph, "Folder", "Code"))
+                .property("permission", "R").property(PermissionMask.PROPERTY, PermissionMask.impliedMask("R")).iterate();
+        assertCached("Bond", "Ronny Researcher", "R", true);
+        assertCached("Key", "Derek Dev", "W", true);
+        Assertions.assertEquals(0, cache.getInvalidations());
+    }
+
+    @Test
+    public void testRemovedResourceAndReplacement() {
+        assertAccess("Finance", "Ronny Researcher", "R", true);
+        g.V(GraphScenarioTestUtils.vertex(graph, "Folder", "Finance")).drop().iterate();
+        assertAccess("Finance", "Ronny Researcher", "R", false);
+        g.addV("Folder").property("name", "Finance").as("f").V(GraphScenarioTestUtils.vertex(graph, "User", "Ronny Researcher")).addE("HAS_PERMISSION").to("f")
+                .property("permission", "R").property(PermissionMask.PROPERTY, PermissionMask.impliedMask("R")).iterate();
+        assertAccess("Finance", "Ronny Researcher", "R", true);
+    }
+
+    @Test
+    public void testLruEviction() {
+        AccessDecisionCache small = new AccessDecisionCache(new PermissionTraverser(), 2);
+        small.hasAccess(graph, "Bond", "Ronny Researcher", "R");
+        small.hasAccess(graph, "Hack", "X", "W");
+        small.hasAccess(graph, "Key", "Derek Dev", "W");
+        Assertions.assertEquals(2, small.size());
+        Assertions.assertEquals(1, small.getEvictions());
+    }
+
+    @Test
+    public void testTtlExpiry() {
+        AccessDecisionCache expiring = new AccessDecisionCache(new PermissionTraverser(), 100, Duration.ofNanos(1));
+        expiring.hasAccess(graph, "Bond", "Ronny Researcher", "R");
+        expiring.hasAccess(graph, "Bond", "Ronny Researcher", "R");
+        Assertions.assertEquals(0, expiring.getHits());
+        Assertions.assertEquals(2, expiring.getMisses());
+        Assertions.assertEquals(1, expiring.getEvictions());
+    }
+}
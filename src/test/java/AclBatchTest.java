@@ -0,0 +1,182 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class AclBatchTest {
+
+    private Graph graph;
+    // the same changes written one element at a time
+    private Graph reference;
+    private final PermissionTraverser traverser = new PermissionTraverser();
+
+    @BeforeEach
+    public void setup() {
+        graph = GraphScenarioTestUtils.example2Graph();
+        reference = GraphScenarioTestUtils.example2Graph();
+    }
+
+    private Object id(String label, String name) {
+        return GraphScenarioTestUtils.vertex(graph, label, name).id();
+    }
+
+    private AclBatch batch() {
+        return new AclBatch()
+                // Ronny's R on Finance becomes W, and a grant revoked in the same batch is never written
+                .grant(id("User", "Ronny Researcher"), id("Folder", "Finance"), "R")
+                .grant(id("User", "Ronny Researcher"), id("Folder", "Finance"), "W")
+                .grant(id("Group", "All devs"), id("Folder", "Secrets"), "W")
+                .revoke(id("Group", "All devs"), id("Folder", "Secrets"))
+                .revoke(id("User", "Derek Dev"), id("Folder", "Secrets"))
+                .grant(id("User", "Mandy Manager"), id("Folder", "Classified"), "A")
+                // Cally joins Security, Derek already is a dev, and Forensics leaves Security
+                .addMember(id("User", "Cally Coder"), id("Group", "Security"))
+                .addMember(id("User", "Derek Dev"), id("Group", "All devs"))
+                .removeSupergroup(id("Group", "Forensics"), id("Group", "Security"))
+                // Code moves to Finance and Secrets to the top level
+                .move(id("Folder", "Code"), id("Folder", "Finance"))
+                .move(id("Folder", "Secrets"), null)
+                .setPublic(id("Folder", "Finance"), true)
+                .setPublic(id("Folder", "Corporate"), false);
+    }
+
+    private void writeReference() {
+        Vertex ronny = GraphScenarioTestUtils.vertex(reference, "User", "Ronny Researcher");
+        Vertex finance = GraphScenarioTestUtils.vertex(reference, "Folder", "Finance");
+        ronny.edges(Direction.OUT, "HAS_PERMISSION").forEachRemaining(Edge::remove);
+        PermissionMask.addHasPermission(ronny, finance, "W");
+        GraphScenarioTestUtils.vertex(reference, "User", "Derek Dev").edges(Direction.OUT, "HAS_PERMISSION").forEachRemaining(Edge::remove);
+        PermissionMask.addHasPermission(GraphScenarioTestUtils.vertex(reference, "User", "Mandy Manager"), GraphScenarioTestUtils.vertex(reference, "Folder", "Classified"), "A");
+        GraphScenarioTestUtils.vertex(reference, "User", "Cally Coder").addEdge("MEMBER_OF", GraphScenarioTestUtils.vertex(reference, "Group", "Security"));
+        GraphScenarioTestUtils.vertex(reference, "Group", "Forensics").edges(Direction.OUT, "HAS_SUPERGROUP").forEachRemaining(Edge::remove);
+        Vertex code = GraphScenarioTestUtils.vertex(reference, "Folder", "Code");
+        code.edges(Direction.OUT, "IN_FOLDER").forEachRemaining(Edge::remove);
+        code.addEdge("IN_FOLDER", finance);
+        GraphScenarioTestUtils.vertex(reference, "Folder", "Secrets").edges(Direction.OUT, "IN_FOLDER").forEachRemaining(Edge::remove);
+        finance.property("public", true);
+        GraphScenarioTestUtils.vertex(reference, "Folder", "Corporate").property("public", false);
+    }
+
+    @Test
+    public void testCoalesces() {
+        AclBatch batch = batch();
+        Assertions.assertEquals(13, batch.getRequested());
+        // the two grants on Finance and the grant and revoke on Secrets each leave one operation
+        Assertions.assertEquals(11, batch.size());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> batch.grant(id("User", "X"), id("Term", "Key"), "Z"));
+    }
+
+    @Test
+    public void testBatchMatchesSingleWrites() {
+        AccessDecisionCache cache = new AccessDecisionCache(traverser, 1000);
+        MembershipClosureIndex index = MembershipClosureIndex.build(graph);
+        AclChangeLog log = new AclChangeLog(graph);
+        List<AclChangeSet> events = new ArrayList<>();
+        List<Edge> replayed = new ArrayList<>();
+        AclBatchWriter writer = new AclBatchWriter(graph)
+                .withListener(cache)
+                .withListener(index)
+                .withListener(log)
+                .withListener(new GraphChangeListener() {
+                    @Override
+                    public void batchApplied(AclChangeSet changes) {
+                        events.add(changes);
+                    }
+                })
+                .withListener(new GraphChangeListener() {
+                    @Override
+                    public void edgeAdded(Edge edge) {
+                        replayed.add(edge);
+                    }
+                });
+        List<String> resources = graph.traversal().V().hasLabel("Folder", "Term").<String>values("name").toList();
+        List<String> users = graph.traversal().V().hasLabel("User").<String>values("name").toList();
+        // every decision cached before the batch
+        for (String user : users) {
+            for (String resource : resources) {
+                cache.hasAccess(graph, resource, user, "R");
+            }
+        }
+        CsrAclSnapshot before = CsrAclSnapshot.export(graph);
+
+        AclChangeSet changes = writer.apply(batch());
+        writeReference();
+        // Derek's membership and the revoke of a grant that did not exist
+        Assertions.assertEquals(2, changes.getSkipped());
+        Assertions.assertEquals(4, changes.getAddedEdges().size());
+        Assertions.assertEquals(5, changes.getRemovedEdges().size());
+        Assertions.assertEquals(2, changes.getPropertyChanges().size());
+        Assertions.assertEquals(Arrays.asList(changes), events);
+        Assertions.assertEquals(changes.getAddedEdges(), replayed);
+        Assertions.assertEquals(reference.traversal().E().count().next(), graph.traversal().E().count().next());
+
+        for (String user : users) {
+            for (String resource : resources) {
+                for (String permission : Arrays.asList("R", "W", "A")) {
+                    String message = String.format("Failed for %s with access %s by %s", resource, permission, user);
+                    boolean expected = traverser.canAccess(reference, resource, user, permission);
+                    Assertions.assertEquals(expected, traverser.canAccess(graph, resource, user, permission), message);
+                    Assertions.assertEquals(expected, cache.hasAccess(graph, resource, user, permission), message);
+                }
+            }
+        }
+        Assertions.assertTrue(traverser.canAccess(graph, "Code", "Ronny Researcher", "W"));
+        Assertions.assertFalse(traverser.canAccess(graph, "Encrypt", "Derek Dev", "R"));
+
+        MembershipClosureIndex rebuilt = MembershipClosureIndex.build(graph);
+        for (Vertex principal : graph.traversal().V().hasLabel("User", "Group").toList()) {
+            Assertions.assertEquals(rebuilt.getPrincipalIds(principal.id()), index.getPrincipalIds(principal.id()), principal.<String>value("name"));
+        }
+        Assertions.assertFalse(index.isMemberOf(id("User", "Ivan Investigator"), id("Group", "Security")));
+        Assertions.assertTrue(index.isMemberOf(id("User", "Cally Coder"), id("Group", "Security")));
+
+        CsrAclSnapshotTest.assertSameAnswers(graph, CsrAclSnapshot.export(graph), before.apply(log.since(0)));
+    }
+
+    @Test
+    public void testSkipsWhatIsInPlace() {
+        AclBatchWriter writer = new AclBatchWriter(graph);
+        writer.apply(batch());
+        List<AclChangeSet> events = new ArrayList<>();
+        writer.withListener(new GraphChangeListener() {
+            @Override
+            public void batchApplied(AclChangeSet changes) {
+                events.add(changes);
+            }
+        });
+        AclChangeSet again = writer.apply(batch());
+        Assertions.assertTrue(again.isEmpty());
+        Assertions.assertEquals(11, again.getSkipped());
+        Assertions.assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void testRejectsUnknownVertex() {
+        long edges = graph.traversal().E().count().next();
+        AclBatch batch = batch().revoke(id("User", "Ronny Researcher"), "no such vertex");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AclBatchWriter(graph).apply(batch));
+        Assertions.assertEquals(edges, graph.traversal().E().count().next());
+        Assertions.assertTrue(traverser.canAccess(graph, "Finance", "Ronny Researcher", "R"));
+        Assertions.assertFalse(traverser.canAccess(graph, "Finance", "Ronny Researcher", "W"));
+    }
+
+    @Test
+    public void testRewritesUnmigratedGrant() {
+        Edge legacy = GraphScenarioTestUtils.vertex(graph, "User", "Ronny Researcher").edges(Direction.OUT, "HAS_PERMISSION").next();
+        legacy.property(PermissionMask.PROPERTY).remove();
+        Assertions.assertFalse(traverser.canAccess(graph, "Finance", "Ronny Researcher", "R"));
+
+        // the same permission, but the edge has no mask yet
+        AclChangeSet changes = new AclBatchWriter(graph).apply(new AclBatch().grant(id("User", "Ronny Researcher"), id("Folder", "Finance"), "R"));
+        Assertions.assertEquals(0, changes.getSkipped());
+        Assertions.assertEquals(1, changes.getRemovedEdges().size());
+        Assertions.assertEquals(PermissionMask.impliedMask("R"), PermissionMask.of(changes.getAddedEdges().get(0)));
+        Assertions.assertTrue(traverser.canAccess(graph, "Finance", "Ronny Researcher", "R"));
+    }
+}
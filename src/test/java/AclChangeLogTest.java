@@ -0,0 +1,139 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import org.apache.commons.configuration2.BaseConfiguration;
+import org.apache.commons.configuration2.Configuration;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.apache.tinkerpop.gremlin.process.traversal.strategy.decoration.EventStrategy;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class AclChangeLogTest {
+
+    private Graph graph;
+    private AclChangeLog log;
+    private GraphTraversalSource g;
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    public void setup() {
+        graph = GraphScenarioTestUtils.example2Graph();
+        log = new AclChangeLog(graph);
+        g = graph.traversal().withStrategies(EventStrategy.build().addListener(log).create());
+    }
+
+    private void change() {
+        // a new user in a new group that gets W on Finance
+        Vertex newbie = g.addV("User").property("name", "Nina Newbie").next();
+        Vertex auditors = g.addV("Group").property("name", "Auditors").next();
+        g.V(newbie).addE("MEMBER_OF").to(auditors).iterate();
+        g.V(auditors).addE("HAS_PERMISSION").to(GraphScenarioTestUtils.vertex(graph, "Folder", "Finance"))
+                .property("permission", "W").property(PermissionMask.PROPERTY, PermissionMask.impliedMask("W")).iterate();
+        // Forensics is no longer part of Security, and All devs may now write Dev
+        g.V(GraphScenarioTestUtils.vertex(graph, "Group", "Forensics")).outE("HAS_SUPERGROUP").drop().iterate();
+        g.V(GraphScenarioTestUtils.vertex(graph, "Group", "All devs")).outE("HAS_PERMISSION").property(PermissionMask.PROPERTY, PermissionMask.impliedMask("W")).iterate();
+        // Finance goes public, Secrets is renamed, and Cally leaves
+        g.V(GraphScenarioTestUtils.vertex(graph, "Folder", "Finance")).property("public", true).iterate();
+        g.V(GraphScenarioTestUtils.vertex(graph, "Folder", "Secrets")).property("name", "Vault").iterate();
+        g.V(GraphScenarioTestUtils.vertex(graph, "User", "Cally Coder")).drop().iterate();
+    }
+
+    @Test
+    public void testRecordsAclChanges() {
+        g.V(GraphScenarioTestUtils.vertex(graph, "User", "X")).property("email", "x@example.com").iterate();
+        g.V(GraphScenarioTestUtils.vertex(graph, "Term", "Bond")).addE("RELATED_TO").to(GraphScenarioTestUtils.vertex(graph, "Term", "Key")).iterate();
+        Assertions.assertEquals(0, log.getPosition());
+
+        change();
+        List<AclChangeLog.Change> changes = log.since(0);
+        Assertions.assertEquals(log.getPosition(), changes.size());
+        Assertions.assertEquals(1, changes.get(0).getPosition());
+        Assertions.assertEquals(AclChangeLog.Change.Kind.VERTEX_REMOVED, changes.get(changes.size() - 1).getKind());
+
+        // a changed mask is the old grant revoked and the new one given
+        long position = log.getPosition();
+        g.V(GraphScenarioTestUtils.vertex(graph, "Group", "All devs")).outE("HAS_PERMISSION").property(PermissionMask.PROPERTY, PermissionMask.impliedMask("A")).iterate();
+        List<AclChangeLog.Change> maskChange = log.since(position);
+        Assertions.assertEquals(2, maskChange.size());
+        Assertions.assertEquals(AclChangeLog.Change.Kind.EDGE_REMOVED, maskChange.get(0).getKind());
+        Assertions.assertEquals(AclChangeLog.Change.Kind.EDGE_ADDED, maskChange.get(1).getKind());
+
+        log.truncate(position);
+        Assertions.assertEquals(maskChange, log.since(0));
+    }
+
+    @Test
+    public void testReplayMatchesExport() {
+        CsrAclSnapshot before = CsrAclSnapshot.export(graph, log.getPosition());
+        change();
+        CsrAclSnapshot replayed = before.apply(log.since(before.getChangePosition()));
+        Assertions.assertEquals(log.getPosition(), replayed.getChangePosition());
+        CsrAclSnapshotTest.assertSameAnswers(graph, CsrAclSnapshot.export(graph), replayed);
+        Assertions.assertTrue(replayed.newEvaluator().hasAccess("Finance", "Nina Newbie", "W"));
+        Assertions.assertEquals(-1, replayed.user("Cally Coder"));
+        Assertions.assertEquals(0, replayed.named("Secrets").length);
+    }
+
+    @Test
+    public void testReplayOnMappedSnapshot() throws IOException {
+        change();
+        // written halfway, then mapped by a process that replays the rest
+        long position = log.getPosition();
+        Path file = directory.resolve("acl.snapshot");
+        CsrAclSnapshot.export(graph, position).write(file);
+        g.V(GraphScenarioTestUtils.vertex(graph, "User", "Derek Dev")).outE("MEMBER_OF").drop().iterate();
+        g.V(GraphScenarioTestUtils.vertex(graph, "Folder", "Vault")).addE("IN_FOLDER").to(GraphScenarioTestUtils.vertex(graph, "Folder", "Classified")).iterate();
+        g.V(GraphScenarioTestUtils.vertex(graph, "User", "Mandy Manager")).addE("OWNED_BY").from(GraphScenarioTestUtils.vertex(graph, "Folder", "Code")).iterate();
+
+        CsrAclSnapshot mapped = CsrAclSnapshot.map(file);
+        Assertions.assertEquals(position, mapped.getChangePosition());
+        // changes the snapshot already reflects are skipped
+        CsrAclSnapshot replayed = mapped.apply(log.since(0));
+        Assertions.assertEquals(log.getPosition(), replayed.getChangePosition());
+        CsrAclSnapshotTest.assertSameAnswers(graph, CsrAclSnapshot.export(graph), replayed);
+        Assertions.assertFalse(replayed.newEvaluator().hasAccess("Dev", "Derek Dev", "R"));
+        Assertions.assertTrue(replayed.newEvaluator().hasAccess("Code", "Mandy Manager", "W"));
+        // ids of the mapped snapshot come back as the graph's ids
+        Assertions.assertEquals(GraphScenarioTestUtils.vertex(graph, "User", "Mandy Manager").id(), replayed.id(replayed.user("Mandy Manager")));
+    }
+
+    @Test
+    public void testReplayOnMappedSnapshotWithOtherIds() throws IOException {
+        // UUID ids, which a mapped snapshot only knows in their string form
+        Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(TinkerGraph.GREMLIN_TINKERGRAPH_VERTEX_ID_MANAGER, TinkerGraph.DefaultIdManager.UUID.name());
+        graph = GraphScenarioTestUtils.example2Graph(TinkerGraph.open(configuration));
+        log = new AclChangeLog(graph);
+        g = graph.traversal().withStrategies(EventStrategy.build().addListener(log).create());
+        Path file = directory.resolve("acl.snapshot");
+        CsrAclSnapshot.export(graph, log.getPosition()).write(file);
+        CsrAclSnapshot mapped = CsrAclSnapshot.map(file);
+        change();
+
+        // revokes, removals and moves of vertices the snapshot has must reach them, not new ordinals
+        CsrAclSnapshot replayed = mapped.apply(log.since(0));
+        Assertions.assertEquals(mapped.size() + 2, replayed.size());
+        Assertions.assertEquals(-1, replayed.user("Cally Coder"));
+        Assertions.assertFalse(replayed.newEvaluator().hasAccess("Security", "Ivan Investigator", "R"));
+        CsrAclSnapshot.Evaluator expected = CsrAclSnapshot.export(graph).newEvaluator();
+        CsrAclSnapshot.Evaluator actual = replayed.newEvaluator();
+        for (String resource : graph.traversal().V().hasLabel("Folder", "Term").<String>values("name").toList()) {
+            for (String user : graph.traversal().V().hasLabel("User").<String>values("name").toList()) {
+                for (String permission : PermissionMask.LEVELS) {
+                    Assertions.assertEquals(expected.hasAccess(resource, user, permission), actual.hasAccess(resource, user, permission),
+                            String.format("Failed for %s with access %s by %s", resource, permission, user));
+                }
+            }
+        }
+        // and are found by their own id as well as by the string the snapshot has
+        Object ivan = GraphScenarioTestUtils.vertex(graph, "User", "Ivan Investigator").id();
+        Assertions.assertEquals(replayed.user("Ivan Investigator"), replayed.ordinal(ivan));
+        Assertions.assertEquals(replayed.ordinal(ivan), replayed.ordinal(String.valueOf(ivan)));
+    }
+}
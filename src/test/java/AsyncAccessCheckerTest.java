@@ -0,0 +1,118 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class AsyncAccessCheckerTest {
+
+    private Graph graph;
+
+    // runs tasks only when asked to, so that everything submitted before is in flight at the same time
+    private static class ManualExecutor implements Executor {
+
+        private final Deque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public synchronized void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = poll()) != null) {
+                task.run();
+            }
+        }
+
+        private synchronized Runnable poll() {
+            return tasks.poll();
+        }
+    }
+
+    @BeforeEach
+    public void setup() {
+        graph = GraphScenarioTestUtils.indexedExample2Graph();
+    }
+
+    @Test
+    public void testSameAnswersAsSynchronous() throws Exception {
+        List<String> resources = graph.traversal().V().hasLabel("Folder", "Term").<String>values("name").toList();
+        List<String> users = graph.traversal().V().hasLabel("User").<String>values("name").toList();
+        PermissionTraverser traverser = new PermissionTraverser();
+        try (AsyncAccessChecker checker = new AsyncAccessChecker(graph, traverser)) {
+            for (String permission : Arrays.asList("R", "W")) {
+                for (String user : users) {
+                    List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+                    resources.forEach(resource -> futures.add(checker.hasAccess(resource, user, permission)));
+                    Map<String, Boolean> expected = traverser.hasAccess(graph, resources, user, permission);
+                    for (int i = 0; i < resources.size(); i++) {
+                        Assertions.assertEquals(expected.get(resources.get(i)), futures.get(i).get(),
+                                String.format("Failed for %s with access %s by %s", resources.get(i), permission, user));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        try (AsyncAccessChecker checker = new AsyncAccessChecker(graph, new PermissionTraverser(), executor)) {
+            List<CompletableFuture<Boolean>> identical = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                identical.add(checker.hasAccess("Intruder", "Ivan Investigator", "R"));
+            }
+            CompletableFuture<Boolean> other = checker.hasAccess("Hack", "Ivan Investigator", "R");
+            CompletableFuture<Boolean> otherUser = checker.hasAccess("Intruder", "Sally Security", "R");
+            Assertions.assertEquals(0, checker.getEvaluations());
+
+            executor.runAll();
+            for (CompletableFuture<Boolean> future : identical) {
+                Assertions.assertTrue(future.get());
+            }
+            Assertions.assertTrue(other.get());
+            Assertions.assertTrue(otherUser.get());
+            Assertions.assertEquals(12, checker.getChecks());
+            Assertions.assertEquals(3, checker.getEvaluations());
+            Assertions.assertEquals(2, checker.getUserResolutions());
+
+            // nothing is kept once the checks completed
+            CompletableFuture<Boolean> again = checker.hasAccess("Intruder", "Ivan Investigator", "R");
+            executor.runAll();
+            Assertions.assertTrue(again.get());
+            Assertions.assertEquals(4, checker.getEvaluations());
+            Assertions.assertEquals(3, checker.getUserResolutions());
+        }
+    }
+
+    @Test
+    public void testCancelDoesNotAffectOthers() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        try (AsyncAccessChecker checker = new AsyncAccessChecker(graph, new PermissionTraverser(), executor)) {
+            CompletableFuture<Boolean> cancelled = checker.hasAccess("Code", "Cally Coder", "R");
+            CompletableFuture<Boolean> kept = checker.hasAccess("Code", "Cally Coder", "R");
+            cancelled.cancel(false);
+            executor.runAll();
+            Assertions.assertTrue(kept.get());
+        }
+    }
+
+    @Test
+    public void testUnknownUser() {
+        try (AsyncAccessChecker checker = new AsyncAccessChecker(graph, new PermissionTraverser())) {
+            CompletableFuture<Boolean> future = checker.hasAccess("Code", "Nobody", "R");
+            ExecutionException x = Assertions.assertThrows(ExecutionException.class, future::get);
+            Assertions.assertTrue(x.getCause() instanceof NoSuchElementException, String.valueOf(x.getCause()));
+        }
+    }
+}
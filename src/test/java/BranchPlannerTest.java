@@ -0,0 +1,105 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class BranchPlannerTest {
+
+    private Graph graph;
+    private List<String> resources;
+    private List<String> users;
+
+    @BeforeEach
+    public void setup() {
+        graph = GraphScenarioTestUtils.indexedExample2Graph();
+        resources = graph.traversal().V().hasLabel("Folder", "Term").<String>values("name").toList();
+        users = graph.traversal().V().hasLabel("User").<String>values("name").toList();
+    }
+
+    // a container check where only a group grant inherited from an ancestor matched
+    private static AccessCheckReport inheritedGroupGrant() {
+        AccessCheckReport report = new AccessCheckReport("Intruder", "Ivan Investigator", "R");
+        for (AccessCheckReport.Branch branch : BranchPlanner.RULE_BRANCHES) {
+            report.getBranch(branch).evaluations = 2;
+            report.getBranch(branch).nanos = 2000;
+        }
+        report.getBranch(AccessCheckReport.Branch.GROUP_GRANT).hits = 1;
+        report.container = true;
+        report.ascended = true;
+        report.inheritedMatch = true;
+        report.ruleNanos = 4000;
+        report.ascentNanos = 6000;
+        return report;
+    }
+
+    private static boolean hasAccess(PermissionTraverser traverser, Graph graph, String resource, String user, String permission) throws Exception {
+        try (GraphTraversal<Vertex, Vertex> t = traverser.hasAccess(graph, resource, user, permission)) {
+            return t.hasNext();
+        }
+    }
+
+    @Test
+    public void testLearnsOrder() {
+        BranchPlanner planner = new BranchPlanner(1, 10);
+        for (int i = 0; i < 9; i++) {
+            planner.record(inheritedGroupGrant());
+        }
+        // not enough samples yet
+        Assertions.assertEquals(BranchPlanner.RULE_BRANCHES, planner.getRuleOrder());
+        Assertions.assertFalse(planner.isAscentFirst());
+
+        planner.record(inheritedGroupGrant());
+        Assertions.assertEquals(AccessCheckReport.Branch.GROUP_GRANT, planner.getRuleOrder().get(0));
+        // ties keep the default order
+        Assertions.assertEquals(Arrays.asList(AccessCheckReport.Branch.GROUP_GRANT, AccessCheckReport.Branch.PUBLIC,
+                AccessCheckReport.Branch.OWNER, AccessCheckReport.Branch.USER_GRANT), planner.getRuleOrder());
+        Assertions.assertTrue(planner.isAscentFirst());
+        Assertions.assertEquals(10, planner.getSamples());
+    }
+
+    @Test
+    public void testSampling() throws Exception {
+        BranchPlanner planner = new BranchPlanner(3, 1);
+        PermissionTraverser traverser = new PermissionTraverser().withBranchPlanner(planner);
+        for (int i = 0; i < 9; i++) {
+            Assertions.assertTrue(hasAccess(traverser, graph, "Intruder", "Ivan Investigator", "R"));
+        }
+        Assertions.assertEquals(3, planner.getSamples());
+
+        // explicit instrumented checks always feed the planner
+        traverser.checkAccess(graph, "Intruder", "Ivan Investigator", "R");
+        Assertions.assertEquals(4, planner.getSamples());
+    }
+
+    @Test
+    public void testSameAnswersInAnyOrder() throws Exception {
+        BranchPlanner reordered = new BranchPlanner(Integer.MAX_VALUE, 1);
+        reordered.record(inheritedGroupGrant());
+        Assertions.assertTrue(reordered.isAscentFirst());
+
+        for (PermissionTraverser.EvaluationStrategy strategy : PermissionTraverser.EvaluationStrategy.values()) {
+            PermissionTraverser plain = new PermissionTraverser(strategy);
+            // one samples every check, the other never samples after the first and runs the learned order
+            List<PermissionTraverser> planned = Arrays.asList(
+                    new PermissionTraverser(strategy).withBranchPlanner(new BranchPlanner(1, 1)),
+                    new PermissionTraverser(strategy).withBranchPlanner(reordered));
+            for (String user : users) {
+                for (String permission : Arrays.asList("R", "W")) {
+                    Map<String, Boolean> expected = plain.hasAccess(graph, resources, user, permission);
+                    for (PermissionTraverser traverser : planned) {
+                        Assertions.assertEquals(expected, traverser.hasAccess(graph, resources, user, permission));
+                        for (String resource : resources) {
+                            Assertions.assertEquals(hasAccess(plain, graph, resource, user, permission), hasAccess(traverser, graph, resource, user, permission),
+                                    String.format("Failed for %s with access %s by %s (%s)", resource, permission, user, strategy));
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CsrAclSnapshotTest {
+
+    private Graph graph;
+    private CsrAclSnapshot snapshot;
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    public void setup() {
+        graph = GraphScenarioTestUtils.example2Graph();
+        snapshot = CsrAclSnapshot.export(graph);
+    }
+
+    @Test
+    public void testExport() {
+        Assertions.assertEquals(graph.traversal().V().hasLabel("User", "Group", "Folder", "Term").count().next().intValue(), snapshot.size());
+        int[] edgeCounts = snapshot.edgeCounts();
+        Assertions.assertEquals(graph.traversal().E().hasLabel("HAS_PERMISSION").count().next().intValue(), edgeCounts[0]);
+        Assertions.assertEquals(graph.traversal().E().hasLabel("IN_FOLDER").count().next().intValue(), edgeCounts[1]);
+        Assertions.assertEquals(graph.traversal().E().hasLabel("OWNED_BY").count().next().intValue(), edgeCounts[2]);
+        Assertions.assertEquals(graph.traversal().E().hasLabel("MEMBER_OF", "HAS_SUPERGROUP").count().next().intValue(), edgeCounts[3]);
+
+        Vertex ivan = GraphScenarioTestUtils.vertex(graph, "User", "Ivan Investigator");
+        Assertions.assertEquals(ivan.id(), snapshot.id(snapshot.user("Ivan Investigator")));
+        Assertions.assertEquals(snapshot.ordinal(ivan.id()), snapshot.user("Ivan Investigator"));
+        Assertions.assertEquals(-1, snapshot.user("Nobody"));
+        Assertions.assertEquals(0, snapshot.named("Nobody").length);
+    }
+
+    @Test
+    public void testIsolatedFromLaterChanges() {
+        CsrAclSnapshot.Evaluator evaluator = snapshot.newEvaluator();
+        Assertions.assertFalse(evaluator.hasAccess("Classified", "Sally Security", "R"));
+        PermissionMask.addHasPermission(GraphScenarioTestUtils.vertex(graph, "User", "Sally Security"), GraphScenarioTestUtils.vertex(graph, "Folder", "Classified"), "R");
+        Assertions.assertFalse(evaluator.hasAccess("Classified", "Sally Security", "R"));
+        Assertions.assertTrue(CsrAclSnapshot.export(graph).newEvaluator().hasAccess("Classified", "Sally Security", "R"));
+    }
+
+    @Test
+    public void testChecksDoNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        CsrAclSnapshot.Evaluator evaluator = snapshot.newEvaluator();
+        // arrays, since iterating a list would allocate an iterator
+        String[] resources = graph.traversal().V().hasLabel("Folder", "Term").<String>values("name").toList().toArray(new String[0]);
+        String[] users = graph.traversal().V().hasLabel("User").<String>values("name").toList().toArray(new String[0]);
+        String[] permissions = {"R", "W"};
+        int allowed = 0;
+        for (int round = 0; round < 2; round++) {
+            // the first round lets the stack reach its final size
+            long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            for (String user : users) {
+                for (String resource : resources) {
+                    for (String permission : permissions) {
+                        if (evaluator.hasAccess(resource, user, permission)) {
+                            allowed++;
+                        }
+                    }
+                }
+            }
+            long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+            if (round == 1) {
+                Assertions.assertEquals(0, allocated);
+            }
+        }
+        Assertions.assertTrue(allowed > 0);
+    }
+
+    @Test
+    public void testAccessorsMatchChecks() {
+        // All devs -> Security -> All devs, a loop the downward expansion must leave
+        graph.traversal().V(GraphScenarioTestUtils.vertex(graph, "Group", "All devs")).addE("HAS_SUPERGROUP").to(GraphScenarioTestUtils.vertex(graph, "Group", "Security")).iterate();
+        graph.traversal().V(GraphScenarioTestUtils.vertex(graph, "Group", "Security")).addE("HAS_SUPERGROUP").to(GraphScenarioTestUtils.vertex(graph, "Group", "All devs")).iterate();
+        snapshot = CsrAclSnapshot.export(graph);
+        CsrAclSnapshot.Evaluator evaluator = snapshot.newEvaluator();
+        String[] users = graph.traversal().V().hasLabel("User").<String>values("name").toList().toArray(new String[0]);
+        for (String resource : graph.traversal().V().hasLabel("Folder", "Term").<String>values("name").toList()) {
+            for (String permission : PermissionMask.LEVELS) {
+                Set<Object> expected = new HashSet<>();
+                for (String user : users) {
+                    if (evaluator.hasAccess(resource, user, permission)) {
+                        expected.add(snapshot.id(snapshot.user(user)));
+                    }
+                }
+                Set<Object> accessors = new HashSet<>();
+                Iterator<Object> ids = snapshot.accessorIds(resource, permission);
+                ids.forEachRemaining(accessors::add);
+                Assertions.assertEquals(expected, accessors, permission + " on " + resource);
+                Assertions.assertEquals(expected.size(), snapshot.countAccessors(resource, permission));
+            }
+        }
+        Assertions.assertEquals(users.length, snapshot.countAccessors("Corporate", "R"));
+        Assertions.assertEquals(0, snapshot.countAccessors("Nothing", "R"));
+    }
+
+    @Test
+    public void testWriteAndMap() throws IOException {
+        Path file = directory.resolve("acl.snapshot");
+        CsrAclSnapshot.export(graph, 42).write(file);
+        CsrAclSnapshot mapped = CsrAclSnapshot.map(file);
+        Assertions.assertEquals(42, mapped.getChangePosition());
+        Assertions.assertEquals(snapshot.size(), mapped.size());
+        Assertions.assertArrayEquals(snapshot.edgeCounts(), mapped.edgeCounts());
+        Vertex ivan = GraphScenarioTestUtils.vertex(graph, "User", "Ivan Investigator");
+        Assertions.assertEquals(ivan.id(), mapped.id(mapped.user("Ivan Investigator")));
+        Assertions.assertEquals(mapped.user("Ivan Investigator"), mapped.ordinal(ivan.id()));
+        Assertions.assertEquals(-1, mapped.ordinal(-1L));
+        Assertions.assertEquals(0, mapped.named("Nobody").length);
+        assertSameAnswers(graph, snapshot, mapped);
+
+        // written again from the mapping, e.g. to move it
+        Path copy = directory.resolve("copy.snapshot");
+        mapped.write(copy);
+        Assertions.assertArrayEquals(Files.readAllBytes(file), Files.readAllBytes(copy));
+    }
+
+    @Test
+    public void testRejectsOtherFormats() throws IOException {
+        Path file = directory.resolve("acl.snapshot");
+        snapshot.write(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer version = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, CsrAclSnapshot.FORMAT_VERSION + 1);
+            channel.write(version, 4);
+        }
+        Assertions.assertThrows(IOException.class, () -> CsrAclSnapshot.map(file));
+
+        Path other = directory.resolve("other");
+        Files.write(other, "ACL snapshot, but in prose".getBytes());
+        Assertions.assertThrows(IOException.class, () -> CsrAclSnapshot.map(other));
+    }
+
+    // every check and every reverse query on the graph's resources
+    static void assertSameAnswers(Graph graph, CsrAclSnapshot expected, CsrAclSnapshot actual) {
+        CsrAclSnapshot.Evaluator expectedEvaluator = expected.newEvaluator();
+        CsrAclSnapshot.Evaluator actualEvaluator = actual.newEvaluator();
+        List<String> users = graph.traversal().V().hasLabel("User").<String>values("name").toList();
+        for (String resource : graph.traversal().V().hasLabel("Folder", "Term").<String>values("name").toList()) {
+            for (String permission : PermissionMask.LEVELS) {
+                for (String user : users) {
+                    Assertions.assertEquals(expectedEvaluator.hasAccess(resource, user, permission), actualEvaluator.hasAccess(resource, user, permission),
+                            String.format("Failed for %s with access %s by %s", resource, permission, user));
+                }
+                Set<Object> expectedIds = new HashSet<>();
+                expected.accessorIds(resource, permission).forEachRemaining(expectedIds::add);
+                Set<Object> actualIds = new HashSet<>();
+                actual.accessorIds(resource, permission).forEachRemaining(actualIds::add);
+                Assertions.assertEquals(expectedIds, actualIds, permission + " on " + resource);
+            }
+        }
+    }
+}
@@ -4,56 +4,83 @@ import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
 import java.util.stream.IntStream;
-import org.apache.tinkerpop.gremlin.structure.Edge;
 import org.apache.tinkerpop.gremlin.structure.Graph;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
 
 public abstract class GraphScenario {
 
     protected Supplier<Graph> graph;
+    private BulkLoader loader;
+    private final Map<String, Vertex> groups = new HashMap<>();
+    private final Map<String, Vertex> folders = new HashMap<>();
 
     public GraphScenario(Supplier<Graph> graph) {
         this.graph = graph;
     }
 
+    // streams the scenario through the loader; graph is only available when it loads into a TinkerPop graph
+    public GraphScenario(BulkLoader loader) {
+        this.loader = loader;
+        this.graph = loader instanceof GraphBulkLoader ? ((GraphBulkLoader) loader)::getGraph : null;
+    }
+
+    protected BulkLoader loader() {
+        if (loader == null) {
+            loader = new GraphBulkLoader(graph.get());
+        }
+        return loader;
+    }
+
     protected Vertex createUser(String name) {
-        return graph.get().addVertex("User").property("name", name).element();
+        return loader().addVertex("User", "name", name);
     }
 
     protected Vertex createGroup(String name) {
-        return graph.get().addVertex("Group").property("name", name).element();
+        Vertex group = loader().addVertex("Group", "name", name);
+        groups.put(name, group);
+        return group;
+    }
+
+    protected Vertex getGroup(String name) {
+        return groups.get(name);
     }
 
     protected Vertex createFolder(String name) {
-        return graph.get().addVertex("Folder").property("name", name).element();
+        Vertex folder = loader().addVertex("Folder", "name", name);
+        folders.put(name, folder);
+        return folder;
+    }
+
+    protected Vertex getFolder(String name) {
+        return folders.get(name);
     }
 
     protected Vertex createTerm(String name) {
-        return graph.get().addVertex("Term").property("name", name).element();
+        return loader().addVertex("Term", "name", name);
     }
 
-    protected Edge addToGroup(Vertex user, Vertex group) {
-        return user.addEdge("MEMBER_OF", group);
+    protected void addToGroup(Vertex user, Vertex group) {
+        loader().addEdge(user, "MEMBER_OF", group);
     }
 
-    protected Edge addToSuperGroup(Vertex group, Vertex superGroup) {
-        return group.addEdge("HAS_SUPERGROUP", superGroup);
+    protected void addToSuperGroup(Vertex group, Vertex superGroup) {
+        loader().addEdge(group, "HAS_SUPERGROUP", superGroup);
     }
 
-    protected Edge addToFolder(Vertex object, Vertex folder) {
-        return object.addEdge("IN_FOLDER", folder);
+    protected void addToFolder(Vertex object, Vertex folder) {
+        loader().addEdge(object, "IN_FOLDER", folder);
     }
 
-    protected Edge addOwner(Vertex object, Vertex user) {
-        return object.addEdge("OWNED_BY", user);
+    protected void addOwner(Vertex object, Vertex user) {
+        loader().addEdge(object, "OWNED_BY", user);
     }
 
     protected void addHasPermission(Vertex user, Vertex object, String permission) {
-        user.addEdge("HAS_PERMISSION", object).property("permission", permission);
+        loader().addEdge(user, "HAS_PERMISSION", object, PermissionMask.edgeProperties(permission));
     }
 
     protected void makePublic(Vertex object) {
-        object.property("public", true);
+        loader().property(object, "public", true);
     }
 
     public abstract void createGraph();
@@ -97,6 +124,24 @@ public abstract class GraphScenario {
         });
     }
 
+    // levels of width groups where each group is a subgroup of every group on the level above, so that the paths down
+    // from the top multiply by width per level while the groups only add up; levels are returned top first
+    protected List<List<Vertex>> addDiamondGroups(String prefix, int levels, int width) {
+        List<List<Vertex>> diamond = new ArrayList<>();
+        for (int level = 0; level < levels; level++) {
+            List<Vertex> groups = new ArrayList<>();
+            for (int i = 0; i < width; i++) {
+                Vertex group = createGroup(prefix + "-" + level + "-" + i);
+                if (level > 0) {
+                    diamond.get(level - 1).forEach(supergroup -> addToSuperGroup(group, supergroup));
+                }
+                groups.add(group);
+            }
+            diamond.add(groups);
+        }
+        return diamond;
+    }
+
     protected void addCategoriesAndTerms(Vertex parentCategory, List<CategoryLevel> categoryLevels, int levelIndex) {
         if (levelIndex > categoryLevels.size() - 1) {
             return;
@@ -1,10 +1,55 @@
 import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
 import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
 
 public class GraphScenarioTestUtils {
+
+    // shared, so that checks reuse its compiled templates
+    private static final PermissionTraverser TRAVERSER = new PermissionTraverser();
+
+    // a new in-memory graph with the ACLExample2Test scenario
+    public static Graph example2Graph() {
+        return example2Graph(TinkerGraph.open());
+    }
+
+    // the scenario loaded into an empty graph of any configuration
+    public static Graph example2Graph(Graph graph) {
+        new ACLExample2Test.Example2Scenario(() -> graph).createGraph();
+        return graph;
+    }
+
+    // the same, with the name and public indexes created before loading
+    public static Graph indexedExample2Graph() {
+        Graph graph = TinkerGraph.open();
+        PermissionTraverser.createIndexes(graph);
+        new ACLExample2Test.Example2Scenario(() -> graph).createGraph();
+        return graph;
+    }
+
+    public static Vertex vertex(Graph g, String label, String name) {
+        return g.traversal().V().hasLabel(label).has("name", name).next();
+    }
+
     public static boolean hasAccess(Graph g, String resourceId, String userId, String permission) {
-        System.out.println(String.format("Looking for %s with access %s by %s", resourceId, permission, userId));
-        try (GraphTraversal t = new PermissionTraverser().hasAccess(g, resourceId, userId, permission)) {
+        return hasAccess(g, resourceId, userId, permission, PermissionTraverser.EvaluationStrategy.AUTO);
+    }
+
+    public static boolean hasAccess(Graph g, String resourceId, String userId, String permission, PermissionTraverser.EvaluationStrategy strategy) {
+        System.out.println(String.format("Looking for %s with access %s by %s (%s)", resourceId, permission, userId, strategy));
+        try (GraphTraversal t = TRAVERSER.hasAccess(g, resourceId, userId, permission, strategy)) {
+            return t.hasNext();
+        } catch (Exception x) {
+            throw new RuntimeException(x);
+        }
+    }
+
+    public static boolean canAccess(Graph g, String resourceId, String userId, String permission, PermissionTraverser.EvaluationStrategy strategy) {
+        return TRAVERSER.canAccess(g, resourceId, userId, permission, strategy);
+    }
+
+    public static boolean hasAccess(Graph g, String resourceId, String userId, String permission, CompiledAclSnapshot compiledAcl) {
+        try (GraphTraversal t = new PermissionTraverser().withCompiledAcl(compiledAcl).hasAccess(g, resourceId, userId, permission)) {
             return t.hasNext();
         } catch (Exception x) {
             throw new RuntimeException(x);
@@ -12,7 +57,7 @@ public class GraphScenarioTestUtils {
     }
 
     public static Object getAllAccessible(Graph g, String userId, String permission) {
-        try (GraphTraversal t = new PermissionTraverser().hasAccess(g, g.traversal().V(), userId, permission).values("name").fold()) {
+        try (GraphTraversal t = TRAVERSER.hasAccess(g, g.traversal().V(), userId, permission).values("name").fold()) {
             return t.next();
         } catch (Exception x) {
             throw new RuntimeException(x);
@@ -20,7 +65,7 @@ public class GraphScenarioTestUtils {
     }
 
     public static Object getAllAccessibleByType(Graph g, String userId, String permission, String type, int limit) {
-        try (GraphTraversal t = new PermissionTraverser().hasAccess(g, g.traversal().V().hasLabel(type), userId, permission).limit(limit).values("name").fold()) {
+        try (GraphTraversal t = TRAVERSER.hasAccess(g, g.traversal().V().hasLabel(type), userId, permission).limit(limit).values("name").fold()) {
             return t.next();
         } catch (Exception x) {
             throw new RuntimeException(x);
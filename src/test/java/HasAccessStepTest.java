@@ -0,0 +1,135 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.__;
+import org.apache.tinkerpop.gremlin.process.traversal.util.TraversalHelper;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class HasAccessStepTest {
+
+    private Graph graph;
+    private GraphTraversalSource optimized;
+    private final CountingTraverser traverser = new CountingTraverser();
+
+    // counts the vertices the access predicates test, to verify that paging stops evaluating once the page is full
+    private static class CountingTraverser extends PermissionTraverser {
+
+        private int tested;
+
+        @Override
+        Predicate<Vertex> accessPredicate(Graph g, ResolvedUser resolvedUser, String permission, boolean containersPossible) {
+            Predicate<Vertex> accessible = super.accessPredicate(g, resolvedUser, permission, containersPossible);
+            return vertex -> {
+                tested++;
+                return accessible.test(vertex);
+            };
+        }
+    }
+
+    @BeforeEach
+    public void setup() {
+        graph = GraphScenarioTestUtils.indexedExample2Graph();
+        optimized = graph.traversal().withStrategies(HasAccessStrategy.instance());
+    }
+
+    private static HasAccessStep<?> accessStep(GraphTraversal<?, ?> t) {
+        return TraversalHelper.getFirstStepOfAssignableClass(HasAccessStep.class, t.asAdmin()).get();
+    }
+
+    private Set<String> accessible(String userId, String permission) {
+        List<String> resources = graph.traversal().V().hasLabel("Folder", "Term").<String>values("name").toList();
+        return traverser.hasAccess(graph, resources, userId, permission).entrySet().stream()
+                .filter(Map.Entry::getValue).map(Map.Entry::getKey).collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testSameAnswersAsBatch() {
+        for (String user : graph.traversal().V().hasLabel("User").<String>values("name").toList()) {
+            for (String permission : Arrays.asList("R", "W")) {
+                Set<String> expected = accessible(user, permission);
+                for (GraphTraversalSource g : Arrays.asList(graph.traversal(), optimized)) {
+                    Assertions.assertEquals(expected, traverser.hasAccess(g.V().hasLabel("Folder", "Term"), user, permission)
+                            .<String>values("name").toSet(), String.format("Failed for %s with access %s", user, permission));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFiltersMovedBeforeCheck() {
+        traverser.tested = 0;
+        GraphTraversal<Vertex, Vertex> plain = traverser.hasAccess(graph.traversal().V().hasLabel("Term"), "Ronny Researcher", "R").has("name", "Bond");
+        Assertions.assertEquals(1, plain.toList().size());
+        Assertions.assertEquals(5, traverser.tested);
+
+        traverser.tested = 0;
+        GraphTraversal<Vertex, Vertex> rewritten = traverser.hasAccess(optimized.V().hasLabel("Term"), "Ronny Researcher", "R").has("name", "Bond");
+        Assertions.assertEquals(1, rewritten.toList().size());
+        // only Bond was checked, and the has() was folded into V()
+        Assertions.assertEquals(1, traverser.tested);
+        Assertions.assertEquals(2, rewritten.asAdmin().getSteps().size());
+        Assertions.assertSame(accessStep(rewritten), rewritten.asAdmin().getEndStep());
+    }
+
+    @Test
+    public void testPagingStopsEvaluating() {
+        List<Vertex> candidates = graph.traversal().V().hasLabel("Folder", "Term").toList();
+        Set<String> accessible = accessible("Ivan Investigator", "R");
+        int secondMatch = -1;
+        for (int i = 0, matches = 0; i < candidates.size() && matches < 2; i++) {
+            if (accessible.contains(candidates.get(i).<String>value("name")) && ++matches == 2) {
+                secondMatch = i;
+            }
+        }
+        Assertions.assertTrue(secondMatch > 0 && secondMatch < candidates.size() - 1);
+
+        traverser.tested = 0;
+        GraphTraversal<Vertex, Vertex> page = traverser.hasAccess(optimized.V().hasLabel("Folder", "Term"), "Ivan Investigator", "R").limit(2);
+        Assertions.assertEquals(2, page.toList().size());
+        Assertions.assertEquals(secondMatch + 1, traverser.tested);
+    }
+
+    @Test
+    public void testLabelPushdown() {
+        GraphTraversal<Vertex, Vertex> groups = traverser.hasAccess(optimized.V().hasLabel("Group"), "Sally Security", "R");
+        groups.asAdmin().applyStrategies();
+        Assertions.assertFalse(accessStep(groups).isContainersPossible());
+
+        GraphTraversal<Vertex, Vertex> terms = traverser.hasAccess(optimized.V().hasLabel("Term"), "Sally Security", "R");
+        List<Vertex> accessible = terms.toList();
+        Assertions.assertTrue(accessStep(terms).isContainersPossible());
+        Assertions.assertEquals(1, accessible.size());
+        Assertions.assertEquals("Intruder", accessible.get(0).value("name"));
+    }
+
+    @Test
+    public void testInChildTraversal() {
+        // folders with at least one accessible child
+        Set<String> accessible = accessible("Derek Dev", "W");
+        Set<String> expected = graph.traversal().V().hasLabel("Folder").toList().stream()
+                .filter(folder -> graph.traversal().V(folder.id()).in("IN_FOLDER").<String>values("name").toList().stream().anyMatch(accessible::contains))
+                .map(folder -> folder.<String>value("name")).collect(Collectors.toSet());
+        Assertions.assertFalse(expected.isEmpty());
+        Assertions.assertEquals(expected, optimized.V().hasLabel("Folder")
+                .where(traverser.hasAccess(__.in("IN_FOLDER"), "Derek Dev", "W")).<String>values("name").toSet());
+    }
+
+    @Test
+    public void testResetForgetsAnswers() {
+        GraphTraversal<Vertex, Object> terms = traverser.hasAccess(graph.traversal().V().hasLabel("Term"), "Cally Coder", "A").values("name");
+        Assertions.assertFalse(terms.toSet().contains("Bond"));
+
+        PermissionMask.addHasPermission(GraphScenarioTestUtils.vertex(graph, "User", "Cally Coder"), GraphScenarioTestUtils.vertex(graph, "Term", "Bond"), "A");
+        terms.asAdmin().reset();
+        Assertions.assertTrue(terms.toSet().contains("Bond"));
+    }
+}
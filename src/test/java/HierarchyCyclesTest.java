@@ -0,0 +1,132 @@
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class HierarchyCyclesTest {
+
+    private Graph graph;
+    private GraphTraversalSource g;
+
+    @BeforeEach
+    public void setup() {
+        graph = GraphScenarioTestUtils.example2Graph();
+        g = graph.traversal();
+    }
+
+    @Test
+    public void testReportsCycles() {
+        Assertions.assertEquals(0, HierarchyCycles.membership(graph).size());
+        Assertions.assertEquals(0, HierarchyCycles.containment(graph).size());
+
+        // Forensics -> Security -> Forensics, and All devs as its own supergroup
+        g.V(GraphScenarioTestUtils.vertex(graph, "Group", "Security")).addE("HAS_SUPERGROUP").to(GraphScenarioTestUtils.vertex(graph, "Group", "Forensics")).iterate();
+        g.V(GraphScenarioTestUtils.vertex(graph, "Group", "All devs")).addE("HAS_SUPERGROUP").to(GraphScenarioTestUtils.vertex(graph, "Group", "All devs")).iterate();
+        // Security contains Classified, which contains Security again
+        g.V(GraphScenarioTestUtils.vertex(graph, "Folder", "Security")).addE("IN_FOLDER").to(GraphScenarioTestUtils.vertex(graph, "Folder", "Classified")).iterate();
+
+        List<List<Object>> membership = HierarchyCycles.membership(graph);
+        Assertions.assertEquals(2, membership.size());
+        Assertions.assertTrue(membership.contains(List.of(GraphScenarioTestUtils.vertex(graph, "Group", "All devs").id())));
+        Assertions.assertTrue(membership.stream().anyMatch(cycle ->
+                new HashSet<>(cycle).equals(new HashSet<>(Arrays.asList(GraphScenarioTestUtils.vertex(graph, "Group", "Security").id(), GraphScenarioTestUtils.vertex(graph, "Group", "Forensics").id())))));
+        List<List<Object>> containment = HierarchyCycles.containment(graph);
+        Assertions.assertEquals(1, containment.size());
+        Assertions.assertEquals(new HashSet<>(Arrays.asList(GraphScenarioTestUtils.vertex(graph, "Folder", "Security").id(), GraphScenarioTestUtils.vertex(graph, "Folder", "Classified").id())),
+                new HashSet<>(containment.get(0)));
+    }
+
+    @Test
+    public void testChecksEndOnCycles() {
+        g.V(GraphScenarioTestUtils.vertex(graph, "Group", "Security")).addE("HAS_SUPERGROUP").to(GraphScenarioTestUtils.vertex(graph, "Group", "Forensics")).iterate();
+        g.V(GraphScenarioTestUtils.vertex(graph, "Folder", "Security")).addE("IN_FOLDER").to(GraphScenarioTestUtils.vertex(graph, "Folder", "Classified")).iterate();
+        for (PermissionTraverser.EvaluationStrategy strategy : PermissionTraverser.EvaluationStrategy.values()) {
+            PermissionTraverser traverser = new PermissionTraverser(strategy);
+            // Sally is in Security, which now is a subgroup of Forensics as well
+            Assertions.assertTrue(traverser.canAccess(graph, "Intruder", "Sally Security", "R"), strategy.name());
+            Assertions.assertTrue(traverser.hasAccess(graph, "Intruder", "Sally Security", "R").hasNext(), strategy.name());
+            // no container on the Security cycle has an explicit W grant, so the ascent goes round it once and gives up
+            Assertions.assertFalse(traverser.canAccess(graph, "Intruder", "Ronny Researcher", "W"), strategy.name());
+            Assertions.assertFalse(traverser.hasAccess(graph, "Intruder", "Ronny Researcher", "W").hasNext(), strategy.name());
+            AccessCheckReport report = traverser.checkAccess(graph, "Intruder", "Ronny Researcher", "W");
+            Assertions.assertFalse(report.isAllowed());
+            Assertions.assertTrue(report.getBranch(AccessCheckReport.Branch.CONTAINER_ASCENT).getPruned() > 0, report.toString());
+        }
+    }
+
+    @Test
+    public void testDiamondIsWalkedOnce() {
+        List<List<Vertex>> diamond = new GraphScenario(() -> graph) {
+            @Override
+            public void createGraph() {
+            }
+
+            List<List<Vertex>> create() {
+                return addDiamondGroups("diamond", 6, 3);
+            }
+        }.create();
+        Vertex folder = g.addV("Folder").property("name", "Diamond").next();
+        diamond.get(0).forEach(group -> PermissionMask.addHasPermission(group, folder, "R"));
+        g.V(GraphScenarioTestUtils.vertex(graph, "User", "Ivan Investigator")).addE("MEMBER_OF").to(diamond.get(5).get(2)).iterate();
+
+        PermissionTraverser traverser = new PermissionTraverser(PermissionTraverser.EvaluationStrategy.GROUPS_DOWNWARD);
+        Assertions.assertTrue(traverser.canAccess(graph, "Diamond", "Ivan Investigator", "R"));
+        Assertions.assertFalse(traverser.canAccess(graph, "Diamond", "Sally Security", "R"));
+        AccessCheckReport.BranchStats groups = traverser.checkAccess(graph, "Diamond", "Sally Security", "R")
+                .getBranch(AccessCheckReport.Branch.GROUP_GRANT);
+        // the 3 granted groups, then 15 groups below them and Ivan, each reached over every edge into it but walked from
+        // once; without the visited set the bottom level alone is reached over 3^6 paths
+        Assertions.assertEquals(3 + 5 * 9 + 1, groups.getVertices(), groups.toString());
+        Assertions.assertEquals(5 * 9 + 1 - 16, groups.getPruned(), groups.toString());
+    }
+
+    @Test
+    public void testEvaluatorsAgreeOnContainerCycles() {
+        // a and b contain each other, and only a is also in d, on which u holds R; c hangs off the cycle
+        Graph cyclic = TinkerGraph.open();
+        GraphTraversalSource c = cyclic.traversal();
+        Vertex u = c.addV("User").property("name", "u").next();
+        Vertex a = c.addV("Folder").property("name", "a").next();
+        Vertex b = c.addV("Folder").property("name", "b").next();
+        Vertex d = c.addV("Folder").property("name", "d").next();
+        Vertex e = c.addV("Folder").property("name", "c").next();
+        a.addEdge("IN_FOLDER", b);
+        b.addEdge("IN_FOLDER", a);
+        a.addEdge("IN_FOLDER", d);
+        e.addEdge("IN_FOLDER", b);
+        PermissionMask.addHasPermission(u, d, "R");
+
+        List<String> folders = Arrays.asList("a", "b", "c", "d");
+        CompiledAclSnapshot compiled = CompiledAclSnapshot.compile(cyclic);
+        CsrAclSnapshot.Evaluator csr = CsrAclSnapshot.export(cyclic).newEvaluator();
+        for (String permission : Arrays.asList("R", "W")) {
+            boolean expected = permission.equals("R");
+            for (PermissionTraverser.EvaluationStrategy strategy : PermissionTraverser.EvaluationStrategy.values()) {
+                PermissionTraverser traverser = new PermissionTraverser(strategy);
+                for (List<String> order : Arrays.asList(folders, Arrays.asList("b", "c", "a", "d"))) {
+                    Map<String, Boolean> batch = traverser.hasAccess(cyclic, order, "u", permission);
+                    for (String folder : folders) {
+                        String message = String.format("%s with access %s (%s, batch of %s)", folder, permission, strategy, order);
+                        Assertions.assertEquals(expected, traverser.canAccess(cyclic, folder, "u", permission), message);
+                        Assertions.assertEquals(expected, traverser.hasAccess(cyclic, folder, "u", permission).hasNext(), message);
+                        Assertions.assertEquals(expected, batch.get(folder), message);
+                    }
+                }
+                Assertions.assertEquals(expected ? new HashSet<>(folders) : new HashSet<>(),
+                        traverser.hasAccess(c.V().hasLabel("Folder"), "u", permission).<String>values("name").toSet(), strategy.name());
+            }
+            for (String folder : folders) {
+                Assertions.assertEquals(expected, new PermissionTraverser().withCompiledAcl(compiled).canAccess(cyclic, folder, "u", permission),
+                        folder + " (compiled)");
+                Assertions.assertEquals(expected, csr.hasAccess(folder, "u", permission), folder + " (CSR)");
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LoadGeneratorTest {
+
+    private static List<Integer> draws(long seed) {
+        List<Integer> draws = Collections.synchronizedList(new ArrayList<>());
+        new LoadGenerator(seed)
+                .withThreads(1)
+                .withOperationsPerThread(100)
+                .withRead("small", 1, random -> draws.add(random.nextInt(10)))
+                .withRead("large", 1, random -> draws.add(100 + random.nextInt(10)))
+                .run();
+        return draws;
+    }
+
+    @Test
+    public void testSeededRunsRepeat() {
+        List<Integer> first = draws(7);
+        Assertions.assertEquals(100, first.size());
+        Assertions.assertEquals(first, draws(7));
+        Assertions.assertNotEquals(first, draws(8));
+    }
+
+    @Test
+    public void testMixAndPercentiles() {
+        LoadGenerator.Result result = new LoadGenerator(1)
+                .withThreads(4)
+                .withOperationsPerThread(1000)
+                .withRead("check", 9, random -> {
+                })
+                .withWrite("grant", 1, random -> {
+                    throw new IllegalStateException("no grants");
+                })
+                .run();
+        Assertions.assertEquals(4, result.getThreads());
+        Assertions.assertEquals(4000, result.getOperations());
+        Assertions.assertEquals(Arrays.asList("check", "grant"), result.getScenarioClasses());
+        long grants = result.getOperations("grant");
+        Assertions.assertTrue(grants > 250 && grants < 550, "Expected about a tenth to be grants, got " + grants);
+        // failures are counted against their class and still timed
+        Assertions.assertEquals(grants, result.getErrors("grant"));
+        Assertions.assertEquals(0, result.getErrors("check"));
+        Assertions.assertTrue(result.getThroughput() > 0);
+        HistogramAccessMetrics.LatencyHistogram latency = result.getLatency("check");
+        Assertions.assertTrue(latency.getPercentileNanos(50) <= latency.getPercentileNanos(99));
+        Assertions.assertTrue(latency.getPercentileNanos(99) <= latency.getPercentileNanos(99.9));
+    }
+
+    @Test
+    public void testWritesExcludeReads() {
+        AtomicInteger reading = new AtomicInteger();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        LoadGenerator.Result result = new LoadGenerator(3)
+                .withThreads(8)
+                .withOperationsPerThread(500)
+                .withRead("check", 5, random -> {
+                    reading.incrementAndGet();
+                    Thread.yield();
+                    reading.decrementAndGet();
+                })
+                .withWrite("grant", 1, random -> {
+                    if (reading.get() != 0) {
+                        overlapped.set(true);
+                    }
+                })
+                .run();
+        Assertions.assertEquals(0, result.getErrors());
+        Assertions.assertFalse(overlapped.get());
+    }
+}
@@ -0,0 +1,114 @@
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.__;
+import org.apache.tinkerpop.gremlin.process.traversal.strategy.decoration.EventStrategy;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class MembershipClosureIndexTest {
+
+    private Graph graph;
+    private MembershipClosureIndex index;
+    private GraphTraversalSource g;
+
+    @BeforeEach
+    public void setup() {
+        graph = GraphScenarioTestUtils.example2Graph();
+        index = MembershipClosureIndex.build(graph);
+        // mutations made through this source keep the index current
+        g = graph.traversal().withStrategies(EventStrategy.build().addListener(index).create());
+    }
+
+    private void assertAccess(String resourceId, String userId, String permission, boolean expected) {
+        try (GraphTraversal t = new PermissionTraverser(PermissionTraverser.EvaluationStrategy.USER_UPWARD)
+                .withMembershipIndex(index).hasAccess(graph, resourceId, userId, permission)) {
+            Assertions.assertEquals(expected, t.hasNext(), String.format("Failed for %s with access %s by %s", resourceId, permission, userId));
+        } catch (Exception x) {
+            throw new RuntimeException(x);
+        }
+    }
+
+    private void assertMatchesRebuild() {
+        MembershipClosureIndex rebuilt = MembershipClosureIndex.build(graph);
+        graph.traversal().V().hasLabel("User", "Group").forEachRemaining(v ->
+                Assertions.assertEquals(rebuilt.getPrincipalIds(v.id()), index.getPrincipalIds(v.id()), "Closure differs for " + v.value("name")));
+    }
+
+    @Test
+    public void testNestedGroupsAreInClosure() {
+        Vertex ivan = GraphScenarioTestUtils.vertex(graph, "User", "Ivan Investigator");
+        Assertions.assertTrue(index.isMemberOf(ivan.id(), GraphScenarioTestUtils.vertex(graph, "Group", "Forensics").id()));
+        Assertions.assertTrue(index.isMemberOf(ivan.id(), GraphScenarioTestUtils.vertex(graph, "Group", "Security").id()));
+        Assertions.assertFalse(index.isMemberOf(ivan.id(), GraphScenarioTestUtils.vertex(graph, "Group", "All devs").id()));
+        Assertions.assertEquals(3, index.getPrincipalIds(ivan.id()).size());
+    }
+
+    @Test
+    public void testSameAnswersAsTraversal() {
+        assertAccess("Security", "Ivan Investigator", "R", true);
+        assertAccess("Classified", "Ivan Investigator", "R", true);
+        assertAccess("Classified", "Sally Security", "R", false);
+        assertAccess("Finance", "Ivan Investigator", "R", false);
+        assertAccess("Encrypt", "Cally Coder", "R", true);
+    }
+
+    @Test
+    public void testMembershipAddedAndRemoved() {
+        assertAccess("Classified", "Ronny Researcher", "R", false);
+
+        g.V(GraphScenarioTestUtils.vertex(graph, "User", "Ronny Researcher")).addE("MEMBER_OF").to(GraphScenarioTestUtils.vertex(graph, "Group", "Forensics")).iterate();
+        assertAccess("Classified", "Ronny Researcher", "R", true);
+        assertMatchesRebuild();
+
+        g.V(GraphScenarioTestUtils.vertex(graph, "User", "Ronny Researcher")).outE("MEMBER_OF").where(__.inV().has("name", "Forensics")).drop().iterate();
+        assertAccess("Classified", "Ronny Researcher", "R", false);
+        assertMatchesRebuild();
+    }
+
+    @Test
+    public void testSuperGroupAddedAndRemoved() {
+        assertAccess("Security", "Derek Dev", "R", false);
+
+        g.V(GraphScenarioTestUtils.vertex(graph, "Group", "All devs")).addE("HAS_SUPERGROUP").to(GraphScenarioTestUtils.vertex(graph, "Group", "Security")).iterate();
+        assertAccess("Security", "Derek Dev", "R", true);
+        assertAccess("Intruder", "Mandy Manager", "R", true);
+        assertMatchesRebuild();
+
+        g.V(GraphScenarioTestUtils.vertex(graph, "Group", "Forensics")).outE("HAS_SUPERGROUP").drop().iterate();
+        assertAccess("Security", "Ivan Investigator", "R", false);
+        assertAccess("Security", "Derek Dev", "R", true);
+        assertMatchesRebuild();
+    }
+
+    @Test
+    public void testParallelEdges() {
+        Vertex ivan = GraphScenarioTestUtils.vertex(graph, "User", "Ivan Investigator");
+        Vertex forensics = GraphScenarioTestUtils.vertex(graph, "Group", "Forensics");
+        // one more MEMBER_OF before the index is built, and a HAS_SUPERGROUP between the same pair after
+        Object first = ivan.edges(Direction.OUT, "MEMBER_OF").next().id();
+        ivan.addEdge("MEMBER_OF", forensics);
+        index = MembershipClosureIndex.build(graph);
+        g = graph.traversal().withStrategies(EventStrategy.build().addListener(index).create());
+        g.V(ivan).addE("HAS_SUPERGROUP").to(forensics).iterate();
+
+        g.E(first).drop().iterate();
+        assertAccess("Classified", "Ivan Investigator", "R", true);
+        g.V(ivan).outE("HAS_SUPERGROUP").drop().iterate();
+        assertAccess("Classified", "Ivan Investigator", "R", true);
+        assertMatchesRebuild();
+        g.V(ivan).outE("MEMBER_OF").drop().iterate();
+        assertAccess("Classified", "Ivan Investigator", "R", false);
+        assertMatchesRebuild();
+    }
+
+    @Test
+    public void testGroupRemoved() {
+        g.V(GraphScenarioTestUtils.vertex(graph, "Group", "Security")).drop().iterate();
+        Assertions.assertEquals(2, index.getPrincipalIds(GraphScenarioTestUtils.vertex(graph, "User", "Ivan Investigator").id()).size());
+        assertMatchesRebuild();
+    }
+}
@@ -0,0 +1,80 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class OrdinalBitmapTest {
+
+    private static List<Integer> values(OrdinalBitmap bitmap) {
+        List<Integer> values = new ArrayList<>();
+        PrimitiveIterator.OfInt iterator = bitmap.iterator();
+        iterator.forEachRemaining((int value) -> values.add(value));
+        return values;
+    }
+
+    @Test
+    public void testMatchesTreeSet() {
+        Random random = new Random(21);
+        OrdinalBitmap bitmap = new OrdinalBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 50000; i++) {
+            // dense near zero, sparse further out
+            int value = i % 2 == 0 ? random.nextInt(20000) : random.nextInt(5_000_000);
+            Assertions.assertEquals(expected.add(value), bitmap.add(value));
+        }
+        Assertions.assertEquals(expected.size(), bitmap.cardinality());
+        Assertions.assertEquals(new ArrayList<>(expected), values(bitmap));
+        Assertions.assertTrue(bitmap.denseChunks() > 0);
+        for (int i = 0; i < 1000; i++) {
+            int value = random.nextInt(5_000_000);
+            Assertions.assertEquals(expected.contains(value), bitmap.contains(value));
+        }
+    }
+
+    @Test
+    public void testUnionOfOverlappingSets() {
+        Random random = new Random(7);
+        OrdinalBitmap union = new OrdinalBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        List<OrdinalBitmap> groups = new ArrayList<>();
+        for (int group = 0; group < 20; group++) {
+            OrdinalBitmap members = new OrdinalBitmap();
+            // sizes on both sides of the switch to a bit array
+            int size = group % 2 == 0 ? 300 : 6000;
+            for (int i = 0; i < size; i++) {
+                int value = random.nextInt(200_000);
+                members.add(value);
+                expected.add(value);
+            }
+            groups.add(members);
+        }
+        List<List<Integer>> before = new ArrayList<>();
+        groups.forEach(members -> before.add(values(members)));
+        groups.forEach(union::or);
+        Assertions.assertEquals(expected.size(), union.cardinality());
+        Assertions.assertEquals(new ArrayList<>(expected), values(union));
+        // the unioned bitmaps are left as they were
+        for (int group = 0; group < groups.size(); group++) {
+            Assertions.assertEquals(before.get(group), values(groups.get(group)));
+        }
+    }
+
+    @Test
+    public void testEmptyAndCopy() {
+        OrdinalBitmap empty = new OrdinalBitmap();
+        Assertions.assertTrue(empty.isEmpty());
+        Assertions.assertFalse(empty.iterator().hasNext());
+        Assertions.assertFalse(empty.contains(-1));
+        OrdinalBitmap bitmap = new OrdinalBitmap();
+        bitmap.add(3);
+        bitmap.add(70000);
+        OrdinalBitmap copy = bitmap.copy();
+        copy.add(4);
+        Assertions.assertEquals(List.of(3, 70000), values(bitmap));
+        Assertions.assertEquals(List.of(3, 4, 70000), values(copy));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> bitmap.add(-1));
+    }
+}
@@ -0,0 +1,188 @@
+import com.orientechnologies.orient.core.db.ODatabaseSession;
+import com.orientechnologies.orient.core.db.ODatabaseType;
+import com.orientechnologies.orient.core.db.OrientDB;
+import com.orientechnologies.orient.core.db.OrientDBConfig;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.sql.executor.OResultSet;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import org.apache.tinkerpop.gremlin.orientdb.OrientGraph;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class OrientAclStoreTest {
+
+    private static Graph graph;
+    private static OrientDB orient;
+    private static ODatabaseSession db;
+    private static OrientAclStore store;
+
+    @BeforeAll
+    public static void setup() {
+        graph = GraphScenarioTestUtils.example2Graph();
+
+        // embedded, in memory
+        orient = new OrientDB("memory:", OrientDBConfig.defaultConfig());
+        orient.create("acl", ODatabaseType.MEMORY);
+        db = orient.open("acl", "admin", "admin");
+        store = new OrientAclStore(db);
+        store.createSchema();
+        store.importGraph(graph);
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        db.close();
+        orient.close();
+    }
+
+    private static void assertAccess(String resourceId, String userId, String permission, boolean expected) {
+        Assertions.assertEquals(expected, store.hasAccess(resourceId, userId, permission),
+                String.format("Failed for %s with access %s by %s", resourceId, permission, userId));
+    }
+
+    @Test
+    public void testImport() {
+        Assertions.assertEquals(graph.traversal().V().count().next(), db.countClass("V"));
+        Assertions.assertEquals(graph.traversal().E().count().next(), db.countClass("E"));
+    }
+
+    @Test
+    public void testRules() {
+        assertAccess("Corporate", "Ronny Researcher", "R", true);
+        assertAccess("Corporate", "Ronny Researcher", "W", false);
+        assertAccess("Bond", "Ronny Researcher", "R", true);
+        assertAccess("Security", "Owen Owner", "W", true);
+        assertAccess("Intruder", "Ivan Investigator", "R", true);
+        // Classified has its own R grant, so Security's does not reach Hack
+        assertAccess("Hack", "Sally Security", "R", false);
+        assertAccess("Hack", "Ivan Investigator", "R", true);
+        assertAccess("Hack", "X", "R", true);
+        assertAccess("Key", "Derek Dev", "W", true);
+        assertAccess("Encrypt", "Derek Dev", "W", false);
+        assertAccess("Missing", "Derek Dev", "R", false);
+        assertAccess("Key", "Nobody", "R", false);
+    }
+
+    private static Object rid(String name) {
+        try (OResultSet result = db.query("SELECT FROM V WHERE name = ?", name)) {
+            return result.next().getIdentity().get();
+        }
+    }
+
+    @Test
+    public void testAppliesBatch() {
+        long edges = db.countClass("E");
+        AclBatch batch = new AclBatch()
+                .grant(rid("Ronny Researcher"), rid("Finance"), "W")
+                .addMember(rid("Cally Coder"), rid("Security"))
+                .addMember(rid("Derek Dev"), rid("All devs"))
+                .move(rid("Code"), rid("Finance"))
+                .setPublic(rid("Finance"), true);
+        Assertions.assertEquals(4, store.apply(batch));
+        assertAccess("Code", "Ronny Researcher", "W", true);
+        assertAccess("Intruder", "Cally Coder", "R", true);
+        assertAccess("Finance", "X", "R", true);
+        Assertions.assertEquals(edges + 1, db.countClass("E"));
+        Assertions.assertEquals(0, store.apply(batch));
+
+        // nothing of a batch naming a missing vertex is written
+        AclBatch failing = new AclBatch().revoke(rid("Ronny Researcher"), rid("Finance")).move(rid("Code"), "#999:0");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> store.apply(failing));
+        assertAccess("Code", "Ronny Researcher", "W", true);
+
+        // back to the scenario for the other tests
+        Assertions.assertEquals(4, store.apply(new AclBatch()
+                .grant(rid("Ronny Researcher"), rid("Finance"), "R")
+                .removeMember(rid("Cally Coder"), rid("Security"))
+                .move(rid("Code"), rid("Dev"))
+                .setPublic(rid("Finance"), false)));
+        Assertions.assertEquals(edges, db.countClass("E"));
+        assertAccess("Code", "Ronny Researcher", "W", false);
+        assertAccess("Bond", "Ronny Researcher", "R", true);
+    }
+
+    @Test
+    public void testMatchesTinkerGraph() {
+        List<Object> users = graph.traversal().V().hasLabel("User").values("name").toList();
+        List<Object> resources = graph.traversal().V().values("name").toList();
+        for (Object user : users) {
+            for (Object resource : resources) {
+                for (String permission : PermissionMask.LEVELS) {
+                    assertAccess((String) resource, (String) user, permission,
+                            GraphScenarioTestUtils.hasAccess(graph, (String) resource, (String) user, permission));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCreatesIndexesOnOrientGraph() {
+        OrientGraph orientGraph = OrientGraph.open("memory:indexes");
+        try {
+            PermissionTraverser.createIndexes(orientGraph);
+            PermissionTraverser.createIndexes(orientGraph);
+            Assertions.assertEquals(new HashSet<>(Arrays.asList("name", "public")), orientGraph.getVertexIndexedKeys("V"));
+            // the base class indexes cover vertices of every label
+            orientGraph.addVertex(T.label, "Folder", "name", "Finance", "public", true);
+            orientGraph.addVertex(T.label, "User", "name", "Ronny Researcher");
+            orientGraph.tx().commit();
+            ODatabaseDocument database = orientGraph.database();
+            try (OResultSet entries = database.query("SELECT FROM INDEX:V.name WHERE key IN ['Finance', 'Ronny Researcher']")) {
+                Assertions.assertEquals(2, entries.stream().count());
+            }
+            try (OResultSet entries = database.query("SELECT FROM INDEX:V.public WHERE key = true")) {
+                Assertions.assertEquals(1, entries.stream().count());
+            }
+        } finally {
+            orientGraph.close();
+            // the graph took over this thread's database
+            db.activateOnCurrentThread();
+        }
+    }
+
+    @Test
+    public void testUnmigratedGrantsGrantNothing() {
+        Graph legacy = GraphScenarioTestUtils.example2Graph();
+        legacy.traversal().E().hasLabel("HAS_PERMISSION").properties(PermissionMask.PROPERTY).drop().iterate();
+        Graph ungranted = GraphScenarioTestUtils.example2Graph();
+        ungranted.traversal().E().hasLabel("HAS_PERMISSION").drop().iterate();
+
+        orient.create("legacy", ODatabaseType.MEMORY);
+        try (ODatabaseSession legacyDb = orient.open("legacy", "admin", "admin")) {
+            OrientAclStore legacyStore = new OrientAclStore(legacyDb);
+            legacyStore.createSchema();
+            legacyStore.importGraph(legacy);
+            List<String> users = legacy.traversal().V().hasLabel("User").<String>values("name").toList();
+            List<String> resources = legacy.traversal().V().hasLabel("Folder", "Term").<String>values("name").toList();
+            // the access query reads the mask alone, so the imported grants count for nothing
+            for (String user : users) {
+                for (String resource : resources) {
+                    for (String permission : PermissionMask.LEVELS) {
+                        Assertions.assertEquals(GraphScenarioTestUtils.hasAccess(ungranted, resource, user, permission), legacyStore.hasAccess(resource, user, permission),
+                                String.format("Failed for %s with access %s by %s (unmigrated)", resource, permission, user));
+                    }
+                }
+            }
+            // until the schema is set up again, which migrates them
+            legacyStore.createSchema();
+            for (String user : users) {
+                for (String resource : resources) {
+                    for (String permission : PermissionMask.LEVELS) {
+                        Assertions.assertEquals(GraphScenarioTestUtils.hasAccess(graph, resource, user, permission), legacyStore.hasAccess(resource, user, permission),
+                                String.format("Failed for %s with access %s by %s (migrated)", resource, permission, user));
+                    }
+                }
+            }
+        } finally {
+            orient.drop("legacy");
+            db.activateOnCurrentThread();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import com.orientechnologies.orient.core.db.ODatabaseSession;
+import com.orientechnologies.orient.core.db.ODatabaseType;
+import com.orientechnologies.orient.core.db.OrientDB;
+import com.orientechnologies.orient.core.db.OrientDBConfig;
+import java.util.Collections;
+import java.util.List;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class OrientBulkLoaderTest {
+
+    private OrientDB orient;
+    private ODatabaseSession db;
+
+    @BeforeEach
+    public void setup() {
+        // embedded, in memory, with no classes of the scenario created yet
+        orient = new OrientDB("memory:", OrientDBConfig.defaultConfig());
+        orient.create("load", ODatabaseType.MEMORY);
+        db = orient.open("load", "admin", "admin");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+        orient.close();
+    }
+
+    @Test
+    public void testLoadMatchesTinkerGraph() {
+        Graph graph = GraphScenarioTestUtils.example2Graph();
+        // small batches, so the scenario spans many transactions
+        try (OrientBulkLoader loader = new OrientBulkLoader(db, 3)) {
+            new ACLExample2Test.Example2Scenario(loader).createGraph();
+            Assertions.assertEquals(graph.traversal().V().count().next(), loader.getVertexCount());
+            Assertions.assertEquals(graph.traversal().E().count().next(), loader.getEdgeCount());
+        }
+        Assertions.assertEquals(graph.traversal().V().count().next(), db.countClass("V"));
+        Assertions.assertEquals(graph.traversal().E().count().next(), db.countClass("E"));
+        for (String label : OrientAclStore.VERTEX_CLASSES) {
+            Assertions.assertEquals(graph.traversal().V().hasLabel(label).count().next(), db.countClass(label), label);
+        }
+        for (String label : OrientAclStore.EDGE_CLASSES) {
+            Assertions.assertEquals(graph.traversal().E().hasLabel(label).count().next(), db.countClass(label), label);
+        }
+
+        OrientAclStore store = new OrientAclStore(db);
+        List<String> users = graph.traversal().V().hasLabel("User").<String>values("name").toList();
+        List<String> resources = graph.traversal().V().hasLabel("Folder", "Term").<String>values("name").toList();
+        for (String user : users) {
+            for (String resource : resources) {
+                for (String permission : PermissionMask.LEVELS) {
+                    Assertions.assertEquals(GraphScenarioTestUtils.hasAccess(graph, resource, user, permission), store.hasAccess(resource, user, permission),
+                            String.format("Failed for %s with access %s by %s", resource, permission, user));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testUndeclaredClassKeepsBatchOpen() {
+        OrientBulkLoader loader = new OrientBulkLoader(db, 100, Collections.singletonList("User"), Collections.emptyList());
+        Vertex user = loader.addVertex("User", "name", "u");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> loader.addVertex("Folder", "name", "f"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> loader.addEdge(user, "MEMBER_OF", user));
+        // nothing was committed on the way
+        Assertions.assertTrue(db.getTransaction().isActive());
+        db.rollback();
+        Assertions.assertEquals(0, db.countClass("User"));
+        Assertions.assertFalse(db.getMetadata().getSchema().existsClass("Folder"));
+    }
+}
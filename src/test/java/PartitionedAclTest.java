@@ -0,0 +1,130 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PartitionedAclTest {
+
+    private Graph graph;
+    private List<Graph> partitions;
+    private PartitionedAcl acl;
+    private long[] sizes;
+
+    @BeforeEach
+    public void setup() {
+        graph = GraphScenarioTestUtils.example2Graph();
+        // two more top-level trees next to Corporate
+        Vertex archive = folder("Archive", null);
+        PermissionMask.addHasPermission(GraphScenarioTestUtils.vertex(graph, "Group", "Security"), folder("Old", archive), "W");
+        PermissionMask.addHasPermission(GraphScenarioTestUtils.vertex(graph, "User", "Mandy Manager"), archive, "R");
+        Vertex handbook = folder("Handbook", null);
+        handbook.property("public", true);
+        folder("Onboarding", handbook).addEdge("OWNED_BY", GraphScenarioTestUtils.vertex(graph, "User", "Cally Coder"));
+        // an edge between two trees, dropped when they land in different partitions
+        GraphScenarioTestUtils.vertex(graph, "Folder", "Code").addEdge("RELATED_TO", GraphScenarioTestUtils.vertex(graph, "Folder", "Onboarding"));
+
+        partitions = new ArrayList<>();
+        List<GraphBulkLoader> loaders = new ArrayList<>();
+        for (int p = 0; p < 3; p++) {
+            partitions.add(TinkerGraph.open());
+            loaders.add(new GraphBulkLoader(partitions.get(p)));
+        }
+        sizes = PartitionedAcl.split(graph, loaders);
+        acl = new PartitionedAcl(partitions);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        acl.close();
+    }
+
+    private Vertex folder(String name, Vertex parent) {
+        Vertex folder = graph.addVertex(T.label, "Folder", "name", name);
+        if (parent != null) {
+            folder.addEdge("IN_FOLDER", parent);
+        }
+        return folder;
+    }
+
+    @Test
+    public void testSplit() {
+        // Corporate's tree is the largest and goes first, then Archive and Handbook to the two emptier partitions
+        Assertions.assertEquals(12, sizes[0]);
+        Assertions.assertEquals(2, sizes[1]);
+        Assertions.assertEquals(2, sizes[2]);
+        long principals = graph.traversal().V().hasLabel("User", "Group").count().next();
+        long memberships = graph.traversal().E().hasLabel("MEMBER_OF", "HAS_SUPERGROUP").count().next();
+        for (Graph partition : partitions) {
+            Assertions.assertEquals(principals, partition.traversal().V().hasLabel("User", "Group").count().next());
+            Assertions.assertEquals(memberships, partition.traversal().E().hasLabel("MEMBER_OF", "HAS_SUPERGROUP").count().next());
+        }
+        Assertions.assertEquals(graph.traversal().V().count().next() + 2 * principals,
+                partitions.stream().mapToLong(partition -> partition.traversal().V().count().next()).sum());
+        Assertions.assertArrayEquals(new int[]{0}, acl.route("Hack"));
+        Assertions.assertEquals(1, acl.route("Old").length);
+        Assertions.assertEquals(0, acl.route("Nothing").length);
+        Assertions.assertEquals(0, partitions.stream().mapToLong(partition -> partition.traversal().E().hasLabel("RELATED_TO").count().next()).sum());
+    }
+
+    @Test
+    public void testChecksMatchSingleGraph() {
+        PermissionTraverser traverser = new PermissionTraverser();
+        List<String> resources = graph.traversal().V().hasLabel("Folder", "Term").<String>values("name").toList();
+        for (String user : graph.traversal().V().hasLabel("User").<String>values("name").toList()) {
+            for (String permission : Arrays.asList("R", "W")) {
+                Map<String, Boolean> batch = acl.hasAccess(resources, user, permission);
+                for (String resource : resources) {
+                    boolean expected = traverser.canAccess(graph, resource, user, permission);
+                    String message = String.format("Failed for %s with access %s by %s", resource, permission, user);
+                    Assertions.assertEquals(expected, acl.canAccess(resource, user, permission), message);
+                    Assertions.assertEquals(expected, batch.get(resource), message);
+                }
+            }
+        }
+        Assertions.assertFalse(acl.canAccess("Nothing", "Sally Security", "R"));
+    }
+
+    @Test
+    public void testListingMatchesSingleGraph() {
+        PermissionTraverser traverser = new PermissionTraverser();
+        for (String user : graph.traversal().V().hasLabel("User").<String>values("name").toList()) {
+            for (String permission : Arrays.asList("R", "W")) {
+                List<String> expected = names(traverser.listAccessible(graph, user, permission, null, 0, null).getResources());
+                for (int pageSize : Arrays.asList(1, 2, 5, 0)) {
+                    List<String> listed = new ArrayList<>();
+                    String cursor = null;
+                    do {
+                        AccessPage page = acl.listAccessible(user, permission, null, pageSize, cursor);
+                        Assertions.assertTrue(pageSize == 0 || page.getResources().size() <= pageSize);
+                        Assertions.assertTrue(page.getResources().size() == pageSize || !page.hasMore());
+                        listed.addAll(names(page.getResources()));
+                        cursor = page.getNextCursor();
+                    } while (cursor != null);
+                    String message = String.format("Listing with access %s by %s in pages of %d", permission, user, pageSize);
+                    Assertions.assertEquals(new HashSet<>(expected), new HashSet<>(listed), message);
+                    Assertions.assertEquals(expected.size(), listed.size(), message);
+                }
+            }
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> acl.listAccessible("Ivan Investigator", "R", null, 2,
+                AccessPage.encodeCursor(Arrays.asList("x", "c"))));
+    }
+
+    private static List<String> names(List<Vertex> resources) {
+        List<String> names = new ArrayList<>();
+        resources.forEach(resource -> names.add(resource.label() + " " + resource.value("name")));
+        Set<String> unique = new HashSet<>(names);
+        Assertions.assertEquals(unique.size(), names.size());
+        return names;
+    }
+}
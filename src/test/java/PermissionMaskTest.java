@@ -0,0 +1,90 @@
+import java.util.List;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PermissionMaskTest {
+
+    private static boolean hasAccess(Graph graph, String resourceId, String userId, String permission) {
+        try (GraphTraversal t = new PermissionTraverser().hasAccess(graph, resourceId, userId, permission)) {
+            return t.hasNext();
+        } catch (Exception x) {
+            throw new RuntimeException(x);
+        }
+    }
+
+    @Test
+    public void testImpliedPermissions() {
+        Assertions.assertTrue(PermissionMask.implies(PermissionMask.impliedMask("A"), "R"));
+        Assertions.assertTrue(PermissionMask.implies(PermissionMask.impliedMask("A"), "W"));
+        Assertions.assertTrue(PermissionMask.implies(PermissionMask.impliedMask("W"), "R"));
+        Assertions.assertFalse(PermissionMask.implies(PermissionMask.impliedMask("W"), "A"));
+        Assertions.assertFalse(PermissionMask.implies(PermissionMask.impliedMask("R"), "W"));
+        Assertions.assertFalse(PermissionMask.implies(PermissionMask.impliedMask("X"), "R"));
+    }
+
+    @Test
+    public void testCoversPredicate() {
+        Assertions.assertTrue(PermissionMask.covers("R").test(PermissionMask.impliedMask("W")));
+        Assertions.assertFalse(PermissionMask.covers("W").test(PermissionMask.impliedMask("R")));
+        Assertions.assertFalse(PermissionMask.covers("R").test(null));
+    }
+
+    @Test
+    public void testMigrateLegacyEdges() {
+        Graph graph = GraphScenarioTestUtils.example2Graph();
+        // edges written before the mask existed only carry the permission string
+        graph.traversal().E().hasLabel("HAS_PERMISSION").properties(PermissionMask.PROPERTY).drop().iterate();
+        Assertions.assertFalse(hasAccess(graph, "Finance", "Ronny Researcher", "R"));
+        Assertions.assertEquals(0, PermissionMask.of(graph.traversal().E().hasLabel("HAS_PERMISSION").next()));
+
+        Assertions.assertEquals(7, PermissionMask.migrate(graph));
+        Assertions.assertEquals(0, PermissionMask.migrate(graph));
+
+        Assertions.assertTrue(hasAccess(graph, "Finance", "Ronny Researcher", "R"));
+        Assertions.assertTrue(hasAccess(graph, "Hack", "X", "R"));
+        Assertions.assertTrue(hasAccess(graph, "Hack", "X", "W"));
+        Assertions.assertFalse(hasAccess(graph, "Hack", "Ivan Investigator", "W"));
+        Assertions.assertFalse(hasAccess(graph, "Finance", "Ivan Investigator", "R"));
+    }
+
+    @Test
+    public void testUnmigratedGrantsGrantNothing() {
+        // edges that only carry the permission string answer as if there were no grants, leaving public and owners
+        Graph legacy = GraphScenarioTestUtils.example2Graph();
+        legacy.traversal().E().hasLabel("HAS_PERMISSION").properties(PermissionMask.PROPERTY).drop().iterate();
+        Graph ungranted = GraphScenarioTestUtils.example2Graph();
+        ungranted.traversal().E().hasLabel("HAS_PERMISSION").drop().iterate();
+
+        CompiledAclSnapshot compiled = CompiledAclSnapshot.compile(legacy);
+        CsrAclSnapshot.Evaluator csr = CsrAclSnapshot.export(legacy).newEvaluator();
+        List<String> resourceIds = legacy.traversal().V().hasLabel("Folder", "Term").<String>values("name").toList();
+        for (String userId : legacy.traversal().V().hasLabel("User").<String>values("name").toList()) {
+            for (String permission : PermissionMask.LEVELS) {
+                for (String resourceId : resourceIds) {
+                    boolean expected = GraphScenarioTestUtils.hasAccess(ungranted, resourceId, userId, permission);
+                    String message = String.format("Failed for %s with access %s by %s", resourceId, permission, userId);
+                    for (PermissionTraverser.EvaluationStrategy strategy : PermissionTraverser.EvaluationStrategy.values()) {
+                        Assertions.assertEquals(expected, GraphScenarioTestUtils.hasAccess(legacy, resourceId, userId, permission, strategy), message);
+                        Assertions.assertEquals(expected, GraphScenarioTestUtils.canAccess(legacy, resourceId, userId, permission, strategy), message);
+                    }
+                    Assertions.assertEquals(expected, GraphScenarioTestUtils.hasAccess(legacy, resourceId, userId, permission, compiled), message);
+                    Assertions.assertEquals(expected, csr.hasAccess(resourceId, userId, permission), message);
+                }
+            }
+        }
+        Assertions.assertTrue(GraphScenarioTestUtils.hasAccess(legacy, "Security", "Owen Owner", "W"));
+        Assertions.assertFalse(GraphScenarioTestUtils.hasAccess(legacy, "Finance", "Ronny Researcher", "R"));
+    }
+
+    @Test
+    public void testCreateIndexesMigrates() {
+        Graph graph = GraphScenarioTestUtils.example2Graph();
+        graph.traversal().E().hasLabel("HAS_PERMISSION").properties(PermissionMask.PROPERTY).drop().iterate();
+        PermissionTraverser.createIndexes(graph);
+        Assertions.assertEquals(0, PermissionMask.migrate(graph));
+        Assertions.assertTrue(hasAccess(graph, "Finance", "Ronny Researcher", "R"));
+        Assertions.assertTrue(hasAccess(graph, "Hack", "X", "W"));
+    }
+}
@@ -0,0 +1,108 @@
+import java.util.Arrays;
+import java.util.List;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.__;
+import org.apache.tinkerpop.gremlin.process.traversal.strategy.decoration.EventStrategy;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SupernodeMembershipTest {
+
+    private Graph graph;
+
+    @BeforeEach
+    public void setup() {
+        graph = GraphScenarioTestUtils.indexedExample2Graph();
+    }
+
+    @Test
+    public void testBuild() {
+        // Security has Sally and Dave, All devs has three members, Forensics only Ivan
+        SupernodeMembership membership = SupernodeMembership.build(graph, 2);
+        Assertions.assertEquals(2, membership.size());
+        Assertions.assertTrue(membership.isSupernode(GraphScenarioTestUtils.vertex(graph, "Group", "Security").id()));
+        Assertions.assertTrue(membership.isSupernode(GraphScenarioTestUtils.vertex(graph, "Group", "All devs").id()));
+        Assertions.assertFalse(membership.isSupernode(GraphScenarioTestUtils.vertex(graph, "Group", "Forensics").id()));
+
+        Vertex security = GraphScenarioTestUtils.vertex(graph, "Group", "Security");
+        Assertions.assertTrue(membership.reaches(security, GraphScenarioTestUtils.vertex(graph, "User", "Sally Security")));
+        // through the Forensics subgroup, which is not compressed
+        Assertions.assertTrue(membership.reaches(security, GraphScenarioTestUtils.vertex(graph, "User", "Ivan Investigator")));
+        Assertions.assertFalse(membership.reaches(security, GraphScenarioTestUtils.vertex(graph, "User", "Cally Coder")));
+        Assertions.assertTrue(membership.reaches(GraphScenarioTestUtils.vertex(graph, "Group", "All devs"), GraphScenarioTestUtils.vertex(graph, "User", "Cally Coder")));
+    }
+
+    @Test
+    public void testSameAnswersAsEdges() throws Exception {
+        List<String> resources = graph.traversal().V().hasLabel("Folder", "Term").<String>values("name").toList();
+        List<String> users = graph.traversal().V().hasLabel("User").<String>values("name").toList();
+        PermissionTraverser plain = new PermissionTraverser(PermissionTraverser.EvaluationStrategy.GROUPS_DOWNWARD);
+        for (int threshold : new int[]{1, 2, 3}) {
+            PermissionTraverser compressed = new PermissionTraverser(PermissionTraverser.EvaluationStrategy.GROUPS_DOWNWARD)
+                    .withSupernodeMembership(SupernodeMembership.build(graph, threshold));
+            for (String user : users) {
+                for (String permission : Arrays.asList("R", "W")) {
+                    Assertions.assertEquals(plain.hasAccess(graph, resources, user, permission), compressed.hasAccess(graph, resources, user, permission));
+                    for (String resource : resources) {
+                        Assertions.assertEquals(plain.hasAccess(graph, resource, user, permission).hasNext(),
+                                compressed.hasAccess(graph, resource, user, permission).hasNext(),
+                                String.format("Failed for %s with access %s by %s (threshold %d)", resource, permission, user, threshold));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testKeptCurrent() {
+        SupernodeMembership membership = SupernodeMembership.build(graph, 3);
+        GraphTraversalSource g = graph.traversal().withStrategies(EventStrategy.build().addListener(membership).create());
+        Vertex security = GraphScenarioTestUtils.vertex(graph, "Group", "Security");
+        Vertex cally = GraphScenarioTestUtils.vertex(graph, "User", "Cally Coder");
+        Assertions.assertFalse(membership.isSupernode(security.id()));
+
+        // the third member makes Security a supernode
+        g.V(cally).addE("MEMBER_OF").to(security).iterate();
+        Assertions.assertTrue(membership.isSupernode(security.id()));
+        Assertions.assertTrue(membership.reaches(security, cally));
+        Assertions.assertTrue(membership.reaches(security, GraphScenarioTestUtils.vertex(graph, "User", "Sally Security")));
+
+        g.V(cally).outE("MEMBER_OF").where(__.inV().is(security)).drop().iterate();
+        Assertions.assertFalse(membership.reaches(security, cally));
+
+        Vertex sally = GraphScenarioTestUtils.vertex(graph, "User", "Sally Security");
+        g.V(sally).drop().iterate();
+        Assertions.assertFalse(membership.reaches(security, sally));
+        Assertions.assertTrue(membership.reaches(security, GraphScenarioTestUtils.vertex(graph, "User", "Dave Defender")));
+    }
+
+    @Test
+    public void testParallelEdges() {
+        Vertex security = GraphScenarioTestUtils.vertex(graph, "Group", "Security");
+        Vertex forensics = GraphScenarioTestUtils.vertex(graph, "Group", "Forensics");
+        Vertex sally = GraphScenarioTestUtils.vertex(graph, "User", "Sally Security");
+        Vertex ivan = GraphScenarioTestUtils.vertex(graph, "User", "Ivan Investigator");
+        // a second edge from Sally makes Security a supernode when built, two more from Ivan make Forensics one after
+        sally.addEdge("MEMBER_OF", security);
+        SupernodeMembership membership = SupernodeMembership.build(graph, 3);
+        GraphTraversalSource g = graph.traversal().withStrategies(EventStrategy.build().addListener(membership).create());
+        g.V(sally).addE("MEMBER_OF").to(security).iterate();
+        g.V(ivan).addE("MEMBER_OF").to(forensics).iterate();
+        g.V(ivan).addE("MEMBER_OF").to(forensics).iterate();
+        Assertions.assertTrue(membership.isSupernode(security.id()));
+        Assertions.assertTrue(membership.isSupernode(forensics.id()));
+
+        for (Vertex[] pair : new Vertex[][]{{sally, security}, {ivan, forensics}}) {
+            List<Object> edges = g.V(pair[0]).outE("MEMBER_OF").where(__.inV().is(pair[1])).id().toList();
+            Assertions.assertEquals(3, edges.size());
+            for (Object edge : edges) {
+                Assertions.assertTrue(membership.reaches(pair[1], pair[0]));
+                g.E(edge).drop().iterate();
+            }
+            Assertions.assertFalse(membership.reaches(pair[1], pair[0]));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.apache.tinkerpop.gremlin.process.traversal.strategy.decoration.EventStrategy;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class VertexIdCacheTest {
+
+    private Graph graph;
+    private VertexIdCache cache;
+    private GraphTraversalSource g;
+
+    @BeforeEach
+    public void setup() {
+        graph = GraphScenarioTestUtils.indexedExample2Graph();
+        cache = new VertexIdCache(4);
+        // mutations made through this source invalidate the cache
+        g = graph.traversal().withStrategies(EventStrategy.build().addListener(cache).create());
+    }
+
+    private boolean hasAccess(String resourceId, String userId, String permission) {
+        try (GraphTraversal t = new PermissionTraverser().withVertexIdCache(cache).hasAccess(graph, resourceId, userId, permission)) {
+            return t.hasNext();
+        } catch (Exception x) {
+            throw new RuntimeException(x);
+        }
+    }
+
+    @Test
+    public void testCachedLookupsGiveSameAnswers() {
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertTrue(hasAccess("Security", "Ivan Investigator", "R"));
+            Assertions.assertTrue(hasAccess("Bond", "Ronny Researcher", "R"));
+            Assertions.assertFalse(hasAccess("Bond", "Ronny Researcher", "W"));
+        }
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        hasAccess("Security", "Ivan Investigator", "R");
+        hasAccess("Bond", "Ronny Researcher", "R");
+        hasAccess("Hack", "X", "W");
+        Assertions.assertEquals(4, cache.size());
+    }
+
+    @Test
+    public void testRemovedVertexIsInvalidated() {
+        Assertions.assertTrue(hasAccess("Finance", "Ronny Researcher", "R"));
+
+        g.V().hasLabel("Folder").has("name", "Finance").drop().iterate();
+        Assertions.assertFalse(hasAccess("Finance", "Ronny Researcher", "R"));
+
+        // a replacement with the same name must be picked up, not the removed vertex
+        g.addV("Folder").property("name", "Finance").iterate();
+        Assertions.assertFalse(hasAccess("Finance", "Ronny Researcher", "R"));
+        g.V().hasLabel("User").has("name", "Ronny Researcher").addE("HAS_PERMISSION").to(graph.traversal().V().hasLabel("Folder").has("name", "Finance").next())
+                .property("permission", "R").property(PermissionMask.PROPERTY, PermissionMask.impliedMask("R")).iterate();
+        Assertions.assertTrue(hasAccess("Finance", "Ronny Researcher", "R"));
+    }
+
+    @Test
+    public void testVertexRemovedWithoutEventsIsReloaded() {
+        Assertions.assertTrue(hasAccess("Bond", "Ronny Researcher", "R"));
+        graph.traversal().V().hasLabel("User").has("name", "Ronny Researcher").next().remove();
+        graph.addVertex("User").property("name", "Ronny Researcher");
+        Assertions.assertFalse(hasAccess("Bond", "Ronny Researcher", "R"));
+    }
+
+    @Test
+    public void testOnlyNameChangesInvalidate() {
+        g.addV("Folder").iterate();
+        hasAccess("Finance", "Ronny Researcher", "R");
+        Assertions.assertEquals(2, cache.size());
+        // a new property that isn't the name leaves the entries alone, even when its value is a cached name
+        g.V().hasLabel("Folder").has("name", "Code").property("alias", "Finance").iterate();
+        g.V().hasLabel("Folder").has("name", "Code").property("public", true).iterate();
+        Assertions.assertEquals(2, cache.size());
+
+        // naming a vertex that had no name drops the entry for that name
+        g.V().hasLabel("Folder").hasNot("name").property("name", "Finance").iterate();
+        Assertions.assertEquals(1, cache.size());
+        // renaming drops both the old and the new name
+        hasAccess("Finance", "Ronny Researcher", "R");
+        hasAccess("Code", "Ronny Researcher", "R");
+        Assertions.assertEquals(3, cache.size());
+        g.V().hasLabel("Folder").has("name", "Code").property("name", "Finance").iterate();
+        Assertions.assertEquals(1, cache.size());
+    }
+}